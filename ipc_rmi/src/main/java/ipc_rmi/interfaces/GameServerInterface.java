@@ -14,5 +14,9 @@ public interface GameServerInterface extends Remote {
 
     String getPlayerDetails(int id) throws RemoteException;
 
+    String getPlayerDetailsIfChanged(int id, int version) throws RemoteException;
+
+    String scanPokemons(int id, int radius) throws RemoteException;
+
     String getBoardDetails() throws RemoteException;
 }
@@ -232,19 +232,64 @@ public class ClientServer implements ClientServerInterface {
                             break;
                         }
 
-                        String showUsgMsg = "Command Usage: show";
-                        if (commandParts.length != 1) {
+                        String showUsgMsg = "Command Usage: show [version]\n" +
+                                            "               version: last version shown, positive integer";
+
+                        // Check if optional version argument is a positive integer
+                        int version = 0;
+                        if (commandParts.length == 2) {
+                            try {
+                                version = Integer.parseInt(commandParts[1]);
+                            } catch (NumberFormatException e) { }
+                        }
+                        if (commandParts.length > 2 || (commandParts.length == 2 && version <= 0)) {
                             System.out.println(showUsgMsg);
                             break;
                         }
 
                         callStart = System.nanoTime();
 
-                        String playerDetails = gameServerStub.getPlayerDetails(playerID);
+                        String playerDetails = version == 0 ? gameServerStub.getPlayerDetails(playerID) :
+                                               gameServerStub.getPlayerDetailsIfChanged(playerID, version);
+
+                        callEnd = System.nanoTime();
+
+                        System.out.println(playerDetails != null ? playerDetails : "Player unchanged");
+
+                        responseTime = (callEnd - callStart) / 1000000;
+                        responseTimes.add(responseTime);
+                        System.out.println("Call Time: " + responseTime + " ms");
+                        break;
+
+                    case "scan":
+                        // Check if player has joined a game
+                        if (playerID == -1) {
+                            System.out.println("Join a game before using this command");
+                            break;
+                        }
+
+                        String scanUsgMsg = "Command Usage: scan <radius>\n" +
+                                            "               radius: non-negative integer";
+
+                        // Check if radius argument is a non-negative integer
+                        int radius = -1;
+                        if (commandParts.length == 2) {
+                            try {
+                                radius = Integer.parseInt(commandParts[1]);
+                            } catch (NumberFormatException e) { }
+                        }
+                        if (radius < 0) {
+                            System.out.println(scanUsgMsg);
+                            break;
+                        }
+
+                        callStart = System.nanoTime();
+
+                        String scanDetails = gameServerStub.scanPokemons(playerID, radius);
 
                         callEnd = System.nanoTime();
 
-                        System.out.println(playerDetails);
+                        System.out.println(scanDetails);
 
                         responseTime = (callEnd - callStart) / 1000000;
                         responseTimes.add(responseTime);
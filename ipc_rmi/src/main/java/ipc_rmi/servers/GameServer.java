@@ -3,6 +3,9 @@ package ipc_rmi.servers;
 import ipc_rmi.interfaces.ClientServerInterface;
 import ipc_rmi.interfaces.GameServerInterface;
 import ipc_rmi.utils.GameBoard;
+import ipc_rmi.utils.PlayerSnapshot;
+import ipc_rmi.utils.PlayerTable;
+import ipc_rmi.utils.PokemonCatalog;
 import ipc_rmi.utils.Position;
 import ipc_rmi.utils.Utils;
 
@@ -10,9 +13,11 @@ import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 import java.rmi.server.UnicastRemoteObject;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
 
 public class GameServer implements GameServerInterface {
     /**
@@ -25,11 +30,29 @@ public class GameServer implements GameServerInterface {
      */
     public static final int SERVER_PORT = 4001;
 
+    /**
+     * Command line usage.
+     */
+    private static final String USAGE = "Usage: ./server [-seed number] [-respawn millis]";
+
     /**
      * Game board of a server.
      */
     private GameBoard gameBoard;
 
+    /**
+     * Thread respawning captured pokemons, null if they do not respawn.
+     */
+    private RespawnThread respawner;
+
+    /**
+     * Lock guarding the game board. Joins and leaves take it exclusively.
+     * Moves and captures share it and lock only the board regions they
+     * touch. Player detail queries read optimistically and only take the
+     * read lock if a join or leave got in the way.
+     */
+    private final StampedLock boardLock;
+
     /**
      * Count of active players.
      */
@@ -43,23 +66,47 @@ public class GameServer implements GameServerInterface {
     /**
      * Map of client and their stub.
      */
-    private Map<Integer, ClientServerInterface> clientServerStubs;
+    private PlayerTable<ClientServerInterface> clientServerStubs;
 
     /**
      * Default constructor.
      */
     public GameServer() {
+        this(ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Constructor taking the seed of the game board.
+     *
+     * @param seed - Seed of pokemon layout and player spawn positions
+     */
+    public GameServer(long seed) {
         playerCount = 0;
         nextPlayerID = 1;
-        clientServerStubs = new HashMap<>();
-        initGameBoard();
+        clientServerStubs = new PlayerTable<>();
+        boardLock = new StampedLock();
+        initGameBoard(seed);
     }
 
     /**
      * Initializes game board.
+     *
+     * @param seed - Seed of pokemon layout and player spawn positions
+     */
+    private void initGameBoard(long seed) {
+        gameBoard = new GameBoard(GameBoard.DEFAULT_WIDTH, GameBoard.DEFAULT_HEIGHT, seed);
+    }
+
+    /**
+     * Starts respawning a new pokemon some time after each capture. Must
+     * be called before the server is exported.
+     *
+     * @param delayMillis - Delay between a capture and its respawn
+     * @param seed - Seed of respawn positions and pokemons
      */
-    private void initGameBoard() {
-        gameBoard = new GameBoard();
+    public void startRespawns(int delayMillis, long seed) {
+        respawner = new RespawnThread(this, gameBoard, delayMillis, seed);
+        respawner.start();
     }
 
     /**
@@ -75,7 +122,13 @@ public class GameServer implements GameServerInterface {
             playerCount++;
 
             // Add player to game board
-            gameBoard.addPlayer(ret);
+            long stamp = boardLock.writeLock();
+            try {
+                gameBoard.addPlayer(ret);
+            }
+            finally {
+                boardLock.unlockWrite(stamp);
+            }
 
             // Add client stub to map.
             clientServerStubs.put(ret, clientServerStub);
@@ -91,7 +144,14 @@ public class GameServer implements GameServerInterface {
     public void removePlayer(int id) {
         synchronized (this) {
             playerCount--;
-            gameBoard.removePlayer(id);
+            long stamp = boardLock.writeLock();
+            try {
+                gameBoard.removePlayer(id);
+            }
+            finally {
+                boardLock.unlockWrite(stamp);
+            }
+            clientServerStubs.remove(id);
         }
     }
 
@@ -109,9 +169,14 @@ public class GameServer implements GameServerInterface {
      */
     public int movePlayer(int id, String direction, int spaces) {
         int ret = 1;
-        synchronized (gameBoard) {
+        // Shared, the board locks the regions touched
+        long stamp = boardLock.readLock();
+        try {
             ret = gameBoard.move(id, direction, spaces);
         }
+        finally {
+            boardLock.unlockRead(stamp);
+        }
 
         return ret;
     }
@@ -125,40 +190,178 @@ public class GameServer implements GameServerInterface {
      */
     public int capturePokemon(int id) {
         int ret = 1;
-        synchronized (gameBoard) {
+        // Shared, the board locks the regions touched
+        long stamp = boardLock.readLock();
+        try {
             ret = gameBoard.capturePokemon(id);
+        }
+        finally {
+            boardLock.unlockRead(stamp);
+        }
+
+        // Every captured pokemon is replaced after the respawn delay
+        if (ret != 1 && respawner != null) {
+            respawner.schedule();
+        }
 
-            if (ret == 2) {
-                // Terminate all other clients.
-                for (Map.Entry<Integer, ClientServerInterface> entry : clientServerStubs.entrySet()) {
-                    if (!entry.getKey().equals(id)) {
-                        try {
-                            entry.getValue().terminate("Player-" + ret + " has won the game. Thank you for playing.");
-                        }
-                        catch (RemoteException e) { }
+        // Remote calls to other clients happen outside the board lock
+        if (ret == 2) {
+            // Terminate all other clients.
+            final String msg = "Player-" + ret + " has won the game. Thank you for playing.";
+            PlayerTable<ClientServerInterface> stubs = new PlayerTable<>();
+            synchronized (this) {
+                clientServerStubs.forEach(stubs::put);
+            }
+            stubs.forEach((playerID, stub) -> {
+                if (playerID != id) {
+                    try {
+                        stub.terminate(msg);
                     }
+                    catch (RemoteException e) { }
                 }
-            }
+            });
         }
         return ret;
     }
 
+    /**
+     * Puts a pokemon in an empty cell. Called by the respawn thread.
+     *
+     * @param x - x coordinate value
+     * @param y - y coordinate value
+     * @param pokemon - Catalog ID
+     * @return boolean - false if the cell is not empty or beyond board
+     */
+    boolean spawnPokemon(int x, int y, short pokemon) {
+        // Shared, the board locks the region touched
+        long stamp = boardLock.readLock();
+        try {
+            return gameBoard.spawnPokemon(x, y, pokemon);
+        }
+        finally {
+            boardLock.unlockRead(stamp);
+        }
+    }
+
     /**
      * Returns current state of a player.
      * @param id - Player ID
      * @return String - Player details
      */
     public String getPlayerDetails(int id) {
-        String ret = "";
-        synchronized (gameBoard) {
-            Position playerPos = gameBoard.getPlayerPos(id);
-            List<String> playerPokemons = gameBoard.getPlayerPokemons(id);
-            ret = "Player ID: " + id + "\n" +
-                    "Position: " + playerPos.toString() + "\n" +
-                    "Captured Pokemons: " + playerPokemons.toString() + "\n" +
-                    "Pokemon at current position: " + gameBoard.getPokemon(playerPos);
+        return readBoard(() -> readPlayerDetails(id));
+    }
+
+    /**
+     * Returns current state of a player, unless the caller already knows
+     * its current version.
+     *
+     * @param id - Player ID
+     * @param version - Version of the players state known to the caller
+     * @return String - Player details, null if still at given version
+     */
+    public String getPlayerDetailsIfChanged(int id, int version) {
+        return readBoard(() -> version == gameBoard.getPlayerVersion(id) ? null : readPlayerDetails(id));
+    }
+
+    /**
+     * Returns the pokemons at most radius cells away from a player along
+     * both axes.
+     *
+     * @param id - Player ID
+     * @param radius - Greatest distance along each axis, not negative
+     * @return String - Position and name of each pokemon
+     */
+    public String scanPokemons(int id, int radius) {
+        return readBoard(() -> readScan(id, radius));
+    }
+
+    /**
+     * Runs a read only query on the game board. Optimistic read first, so
+     * queries never wait behind moves. Only joins and leaves, which change
+     * the player tables, invalidate it.
+     *
+     * Moves, captures and respawns share the board lock, so neither the
+     * optimistic read nor the read lock keeps them out. Queries therefore
+     * read players only through their immutable snapshots, and cells and
+     * the pokemon index one value or bucket at a time. A scan is
+     * consistent per bucket, not across the whole board.
+     *
+     * @param query - Query reading the board
+     * @return T - Result of query
+     */
+    private <T> T readBoard(Supplier<T> query) {
+        long stamp = boardLock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                T ret = query.get();
+                if (boardLock.validate(stamp)) {
+                    return ret;
+                }
+            }
+            catch (RuntimeException e) {
+                if (boardLock.validate(stamp)) {
+                    throw e;
+                }
+            }
+        }
+
+        // A writer got in the way, whatever was read is discarded
+        stamp = boardLock.readLock();
+        try {
+            return query.get();
+        }
+        finally {
+            boardLock.unlockRead(stamp);
         }
-        return ret;
+    }
+
+    /**
+     * Formats current state of a player. Callers either hold the board
+     * lock or validate an optimistic read afterwards.
+     *
+     * @param id - Player ID
+     * @return String - Player details
+     */
+    private String readPlayerDetails(int id) {
+        PlayerSnapshot player = gameBoard.getPlayerSnapshot(id);
+        Position playerPos = new Position(player.getX(), player.getY());
+        PokemonCatalog catalog = gameBoard.getCatalog();
+        int[] pokemonIDs = player.getPokemonIDs();
+        List<String> playerPokemons = new ArrayList<>(pokemonIDs.length);
+        for (int pokemonID : pokemonIDs) {
+            playerPokemons.add(catalog.getName(pokemonID));
+        }
+        return "Player ID: " + id + "\n" +
+                "Position: " + playerPos.toString() + "\n" +
+                "Captured Pokemons: " + playerPokemons.toString() + "\n" +
+                "Pokemon at current position: " + catalog.getName(gameBoard.getPokemon(playerPos)) + "\n" +
+                "Version: " + player.getVersion();
+    }
+
+    /**
+     * Formats the pokemons around a player. Callers either hold the board
+     * lock or validate an optimistic read afterwards.
+     *
+     * @param id - Player ID
+     * @param radius - Greatest distance along each axis
+     * @return String - Position and name of each pokemon
+     */
+    private String readScan(int id, int radius) {
+        PlayerSnapshot player = gameBoard.getPlayerSnapshot(id);
+        Position playerPos = new Position(player.getX(), player.getY());
+        PokemonCatalog catalog = gameBoard.getCatalog();
+        List<String> pokemons = new ArrayList<>();
+        gameBoard.scanPokemons(playerPos.getX(), playerPos.getY(), radius,
+                               (x, y, pokemon) -> pokemons.add("(" + x + ", " + y + ") " + catalog.getName(pokemon)));
+
+        StringBuilder ret = new StringBuilder();
+        ret.append("Pokemons within ").append(radius).append(" of ").append(playerPos.toString())
+           .append(": ").append(pokemons.size());
+        for (String pokemon : pokemons) {
+            ret.append("\n").append(pokemon);
+        }
+        return ret.toString();
     }
 
     /**
@@ -173,10 +376,34 @@ public class GameServer implements GameServerInterface {
     /**
      * Main function.
      *
-     * @param args
+     * @param args - See USAGE
      */
     public static void main(String[] args) {
-        GameServer gameServer = new GameServer();
+        long seed = ThreadLocalRandom.current().nextLong();
+        String seedOption = Utils.getOption(args, "-seed", null);
+        if (seedOption != null) {
+            try {
+                seed = Long.parseLong(seedOption);
+            }
+            catch (NumberFormatException e) {
+                System.out.println(USAGE);
+                System.exit(1);
+            }
+        }
+
+        int respawnMillis = 0;
+        try {
+            respawnMillis = Integer.parseInt(Utils.getOption(args, "-respawn", "0"));
+        }
+        catch (NumberFormatException e) {
+            System.out.println(USAGE);
+            System.exit(1);
+        }
+
+        GameServer gameServer = new GameServer(seed);
+        if (respawnMillis > 0) {
+            gameServer.startRespawns(respawnMillis, seed);
+        }
         GameServerInterface gameServerStub = null;
         Registry registry = null;
         try {
@@ -189,6 +416,7 @@ public class GameServer implements GameServerInterface {
 
             System.out.println("Game server ready");
             System.out.println("IP Addresses: " + Utils.getAddress());
+            System.out.println("Board seed: " + seed);
         }
         catch (RemoteException e) {
             System.out.println("ERROR: " + e.getMessage());
@@ -0,0 +1,156 @@
+package ipc_rmi.servers;
+
+import ipc_rmi.utils.GameBoard;
+import ipc_rmi.utils.SpawnTable;
+import ipc_rmi.utils.TimerWheel;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Puts a new pokemon on the board some time after each capture, so a
+ * long running game never drains.
+ *
+ * Pending respawns wait in a timer wheel turned by this thread once per
+ * tick. When one is due the thread draws a pokemon from the spawn table
+ * and tries a few random cells for an empty one; if the board is too
+ * crowded the respawn is put back on the wheel.
+ */
+class RespawnThread extends Thread {
+    /**
+     * Length of a wheel tick in milliseconds.
+     */
+    public static final int TICK_MILLIS = 100;
+
+    /**
+     * Number of wheel slots, one revolution is about 51 seconds.
+     */
+    private static final int WHEEL_SLOTS = 512;
+
+    /**
+     * Number of random cells tried per respawn.
+     */
+    private static final int SPAWN_ATTEMPTS = 16;
+
+    /**
+     * Associated game server.
+     */
+    private final GameServer gameServer;
+
+    /**
+     * Respawn delay in ticks.
+     */
+    private final long delayTicks;
+
+    /**
+     * Pending respawns.
+     */
+    private final TimerWheel wheel;
+
+    /**
+     * Weighted choice of the pokemon to spawn.
+     */
+    private final SpawnTable spawnTable;
+
+    /**
+     * Random source of respawn positions and pokemons, only used by this
+     * thread.
+     */
+    private final SplittableRandom random;
+
+    /*
+     * Board size.
+     */
+    private final int width;
+    private final int height;
+
+    /**
+     * Task of every pending respawn.
+     */
+    private final Runnable respawn;
+
+    /**
+     * Constructor.
+     *
+     * @param gameServer - Game server to respawn pokemons on
+     * @param board - Game board of the server
+     * @param delayMillis - Delay between a capture and its respawn
+     * @param seed - Seed of respawn positions and pokemons
+     */
+    RespawnThread(GameServer gameServer, GameBoard board, int delayMillis, long seed) {
+        this.gameServer = gameServer;
+        this.delayTicks = (delayMillis + TICK_MILLIS - 1) / TICK_MILLIS;
+        this.wheel = new TimerWheel(WHEEL_SLOTS);
+        this.spawnTable = board.getCatalog().getSpawnTable();
+        this.random = new SplittableRandom(seed).split();
+        this.width = board.getWidth();
+        this.height = board.getHeight();
+        this.respawn = this::respawnOrRetry;
+        setName("respawn");
+        setDaemon(true);
+    }
+
+    /**
+     * Schedules a respawn after the respawn delay.
+     */
+    public void schedule() {
+        wheel.schedule(delayTicks, respawn);
+    }
+
+    /**
+     * Returns number of pending respawns.
+     *
+     * @return int
+     */
+    public int getPending() {
+        return wheel.size();
+    }
+
+    @Override
+    public void run() {
+        long tickNanos = TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS);
+        long nextTick = System.nanoTime() + tickNanos;
+        while (true) {
+            long delay;
+            while ((delay = nextTick - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, delay);
+            }
+
+            // Ticks missed meanwhile run back to back, timers must not be skipped
+            wheel.advance();
+            nextTick += tickNanos;
+        }
+    }
+
+    /**
+     * Runs a respawn, putting it back on the wheel if it fails, so an
+     * unexpected error neither ends this thread nor drops the respawn.
+     */
+    private void respawnOrRetry() {
+        try {
+            respawn();
+        }
+        catch (RuntimeException e) {
+            System.out.println("ERROR: Respawn failed: " + e.getMessage());
+            schedule();
+        }
+    }
+
+    /**
+     * Puts a new pokemon in a random empty cell, or tries again later if
+     * none was found.
+     */
+    private void respawn() {
+        short pokemon = spawnTable.sample(random);
+        for (int i = 0; i < SPAWN_ATTEMPTS; i++) {
+            // Pokemons spawn from 1 to width and 1 to height
+            int x = random.nextInt(width) + 1;
+            int y = random.nextInt(height) + 1;
+            if (gameServer.spawnPokemon(x, y, pokemon)) {
+                return;
+            }
+        }
+        schedule();
+    }
+}
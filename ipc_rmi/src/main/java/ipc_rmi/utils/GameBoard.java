@@ -1,9 +1,12 @@
 package ipc_rmi.utils;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class GameBoard {
     /**
@@ -17,14 +20,20 @@ public class GameBoard {
     public static final int DEFAULT_HEIGHT = 30;
 
     /**
-     * Number of pokemons to capture to win.
+     * Number of pokemons to capture to win. Every capture counts, also of
+     * a pokemon already in the sack.
      */
     public static final int WINNER_POKEMONS = 5;
 
     /**
-     * Path of csv holding list of pokemons.
+     * Width and height in cells of a locking region.
      */
-    public static final String POKEMON_CSV_FILEPATH = "src/main/resources/ipc_server/pokemon.csv";
+    public static final int REGION_SIZE = 8;
+
+    /**
+     * Odd constant spreading player IDs over spawn streams of the seed.
+     */
+    private static final long SPAWN_STREAM_MULTIPLIER = 0xC2B2AE3D27D4EB4FL;
 
     /**
      * Width of board.
@@ -36,25 +45,72 @@ public class GameBoard {
      */
     private int height;
 
+    /**
+     * Seed the pokemon layout and player spawn positions are drawn from.
+     */
+    private final long seed;
+
     /**
      * Positions of players active on this board.
      */
-    private Map<Integer, Position> playerPositions;
+    private PlayerTable<Position> playerPositions;
+
+    /**
+     * Pokemons captured by each active player.
+     */
+    private PlayerTable<PokemonSack> playerPokemons;
+
+    /**
+     * Immutable state of each active player, swapped for a new version by
+     * the players own moves and captures, for readers holding no lock.
+     */
+    private PlayerTable<AtomicReference<PlayerSnapshot>> playerSnapshots;
+
+    /**
+     * Number of players on each cell of the board, indexed by cell().
+     */
+    private int[] occupancy;
+
+    /**
+     * Number of locking regions across the board.
+     */
+    private int regionColumns;
 
     /**
-     * List of pokemons captured by each active player.
+     * Lock guarding the cells of each region, indexed by region(). Moves
+     * and captures lock only the regions they touch, so they may run in
+     * parallel. Adding and removing players changes the player tables, so
+     * callers must keep every other board operation out meanwhile.
      */
-    private Map<Integer, List<String>> playerPokemons;
+    private Lock[] regionLocks;
 
     /**
-     * Positions of pokemons on game board.
+     * Catalog ID of the pokemon on each cell of the board, indexed by
+     * cell(). NO_POKEMON if none.
      */
-    private Map<Position, String> pokemonPositions;
+    private short[] pokemonPositions;
 
     /**
-     * Flag to indicate winner found.
+     * Spatial index of pokemonPositions, updated along with it.
      */
-    private boolean winnerFound;
+    private PokemonIndex pokemonIndex;
+
+    /**
+     * Number of pokemons left on the board, counting each copy of a
+     * pokemon spawned more than once.
+     */
+    private AtomicInteger pokemonCount;
+
+    /**
+     * Catalog of all pokemons.
+     */
+    private PokemonCatalog catalog;
+
+    /**
+     * Flag to indicate winner found. Volatile so it can be checked
+     * without the board lock.
+     */
+    private volatile boolean winnerFound;
 
     /**
      * Default constructor.
@@ -69,38 +125,103 @@ public class GameBoard {
      * @param height - height
      */
     public GameBoard(int width, int height) {
+        this(width, height, ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Constructor that initializes board of width * height size. Boards of
+     * the same size and seed have the same layout and spawn players in
+     * the same positions.
+     *
+     * @param width - width
+     * @param height - height
+     * @param seed - Seed of pokemon layout and player spawn positions
+     * @throws IllegalArgumentException - If the board is empty, too large or too small for the pokemons
+     */
+    public GameBoard(int width, int height, long seed) {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("Board " + width + "x" + height + " has no cells");
+        }
         this.width       = width;
         this.height      = height;
+        this.seed        = seed;
         winnerFound      = false;
-        playerPositions  = new HashMap<>();
-        pokemonPositions = new HashMap<>();
-        playerPokemons   = new HashMap<>();
+        playerPositions  = new PlayerTable<>();
+        occupancy        = new int[cellCount(width, height)];
+        pokemonPositions = new short[occupancy.length];
+        pokemonIndex     = new PokemonIndex(width, height);
+        pokemonCount     = new AtomicInteger();
+        regionColumns    = width / REGION_SIZE + 1;
+        regionLocks      = new Lock[regionColumns * (height / REGION_SIZE + 1)];
+        for (int i = 0; i < regionLocks.length; i++) {
+            regionLocks[i] = new ReentrantLock();
+        }
+        playerPokemons   = new PlayerTable<>();
+        playerSnapshots  = new PlayerTable<>();
+        Arrays.fill(pokemonPositions, PokemonCatalog.NO_POKEMON);
         initPokemonPositions();
     }
 
     /**
-     * Places pokemons in random positions of the board.
+     * Returns number of cells of the arrays indexed by cell().
+     *
+     * @param width - Width of board
+     * @param height - Height of board
+     * @return int
+     * @throws IllegalArgumentException - If the cells do not fit an array
+     */
+    private static int cellCount(int width, int height) {
+        try {
+            return Math.multiplyExact(Math.addExact(width, 1), Math.addExact(height, 1));
+        }
+        catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Board " + width + "x" + height + " too large");
+        }
+    }
+
+    /**
+     * Spawns as many pokemons as there are in the catalog, in distinct
+     * random positions of the board, in time and memory linear in the
+     * number of pokemons. Each spawn picks a pokemon weighted by its base
+     * experience, so common pokemons may spawn more than once and rare
+     * ones not at all. The board still starts with catalog size pokemons,
+     * copies included, and a player wins on capturing WINNER_POKEMONS of
+     * them whether or not they are distinct.
+     *
+     * @throws IllegalArgumentException - If the board has fewer cells than pokemons
      */
     public void initPokemonPositions() {
-        List<String> pokemons = Utils.readPokemons(POKEMON_CSV_FILEPATH);
-        if (pokemons != null) {
-            for (String pokemon : pokemons) {
-                boolean positionFound = false;
-                while (!positionFound) {
-                    // Get random locations on game board
-                    int x = (int) (Math.random() * width + 1);
-                    int y = (int) (Math.random() * height + 1);
-                    Position tmp = new Position(x, y);
-
-                    // Check if position already occupied
-                    if (!pokemonPositions.containsKey(tmp)) {
-                        positionFound = true;
-                        pokemonPositions.put(tmp, pokemon);
-//                        if (Math.random() >= 0.5)
-//                            System.out.println("Position: " + tmp.toString() + ", Pokemon: " + pokemon);
-                    }
-                }
+        catalog = PokemonCatalog.getInstance();
+        if (catalog != null) {
+            int pokemons = catalog.size();
+
+            // Partial Fisher-Yates shuffle of the cells pokemons spawn on,
+            // each pokemon takes the next cell drawn so none is retried.
+            // Only swapped entries are kept, keyed by index, every other
+            // entry still holds its own index
+            int spawnCells = Math.multiplyExact(width, height);
+            if (pokemons > spawnCells) {
+                throw new IllegalArgumentException("Board too small for " + pokemons + " pokemons");
+            }
+            PlayerTable<Integer> swapped = new PlayerTable<>(pokemons);
+
+            SpawnTable spawnTable = catalog.getSpawnTable();
+            SplittableRandom random = new SplittableRandom(seed);
+            for (int i = 0; i < pokemons; i++) {
+                int j = i + random.nextInt(spawnCells - i);
+                Integer atJ = swapped.get(j);
+                Integer atI = swapped.get(i);
+                int spawn = atJ != null ? atJ : j;
+                swapped.put(j, atI != null ? atI : i);
+
+                // Pokemons spawn from 1 to width and 1 to height
+                int x = spawn % width + 1;
+                int y = spawn / width + 1;
+                short pokemon = spawnTable.sample(random);
+                pokemonPositions[cell(x, y)] = pokemon;
+                pokemonIndex.update(x, y, pokemon);
             }
+            pokemonCount.addAndGet(pokemons);
         }
         else {
             System.exit(1);
@@ -119,22 +240,15 @@ public class GameBoard {
      */
     public int moveUp(int id, int spaces) {
         int ret = 1;
-        Position playerPos = this.playerPositions.getOrDefault(id, null);
+        Position playerPos = this.playerPositions.get(id);
 
         if (playerPos != null) {
             ret = 2;
             int newY = playerPos.getY() + spaces;
 
             // Check if new position within board
-            if (newY <= height) {
-                ret = 3;
-                Position newPos = new Position(playerPos.getX(), newY);
-
-                // Check if new position already occupied
-                if (!playerPositions.containsValue(newPos)) {
-                    playerPos.incrementY(spaces);
-                    ret = 0;
-                }
+            if (newY >= 0 && newY <= height) {
+                ret = relocate(playerPos, 0, spaces);
             }
         }
 
@@ -153,22 +267,15 @@ public class GameBoard {
      */
     public int moveDown(int id, int spaces) {
         int ret = 1;
-        Position playerPos = this.playerPositions.getOrDefault(id, null);
+        Position playerPos = this.playerPositions.get(id);
 
         if (playerPos != null) {
             ret = 2;
             int newY = playerPos.getY() - spaces;
 
             // Check if new position within board
-            if (newY >= 0) {
-                ret = 3;
-                Position newPos = new Position(playerPos.getX(), newY);
-
-                // Check if new position already occupied
-                if (!playerPositions.containsValue(newPos)) {
-                    playerPos.decrementY(spaces);
-                    ret = 0;
-                }
+            if (newY >= 0 && newY <= height) {
+                ret = relocate(playerPos, 0, -spaces);
             }
         }
 
@@ -187,22 +294,15 @@ public class GameBoard {
      */
     public int moveLeft(int id, int spaces) {
         int ret = 1;
-        Position playerPos = this.playerPositions.getOrDefault(id, null);
+        Position playerPos = this.playerPositions.get(id);
 
         if (playerPos != null) {
             ret = 2;
             int newX = playerPos.getX() - spaces;
 
             // Check if new position is within the board
-            if (newX >= 0) {
-                ret = 3;
-                Position newPos = new Position(newX, playerPos.getY());
-
-                // Check if new position already occupied
-                if (!playerPositions.containsValue(newPos)) {
-                    playerPos.decrementX(spaces);
-                    ret = 0;
-                }
+            if (newX >= 0 && newX <= width) {
+                ret = relocate(playerPos, -spaces, 0);
             }
         }
 
@@ -221,28 +321,88 @@ public class GameBoard {
      */
     public int moveRight(int id, int spaces) {
         int ret = 1;
-        Position playerPos = this.playerPositions.getOrDefault(id, null);
+        Position playerPos = this.playerPositions.get(id);
 
         if (playerPos != null) {
             int newX = playerPos.getX() + spaces;
             ret = 2;
 
             // Check if new position within board
-            if (newX <= width) {
-                ret = 3;
-                Position newPos = new Position(newX, playerPos.getY());
-
-                // Check if new position already occupied
-                if (!playerPositions.containsValue(newPos)) {
-                    playerPos.incrementX(spaces);
-                    ret = 0;
-                }
+            if (newX >= 0 && newX <= width) {
+                ret = relocate(playerPos, spaces, 0);
             }
         }
 
         return ret;
     }
 
+    /**
+     * Moves a player by given offsets if the new position is free. The
+     * regions holding the old and new positions are locked in index order,
+     * so moves crossing each other cannot deadlock.
+     *
+     * @param playerPos - Position of player, within board
+     * @param dx - Offset along x, new position must be within board
+     * @param dy - Offset along y, new position must be within board
+     * @return int - 0 - Success
+     *               3 - New position occupied by another player
+     */
+    private int relocate(Position playerPos, int dx, int dy) {
+        int oldX = playerPos.getX();
+        int oldY = playerPos.getY();
+        int from = region(oldX, oldY);
+        int to = region(oldX + dx, oldY + dy);
+        Lock first = regionLocks[Math.min(from, to)];
+        Lock second = regionLocks[Math.max(from, to)];
+
+        first.lock();
+        if (second != first) {
+            second.lock();
+        }
+        try {
+            int newCell = cell(oldX + dx, oldY + dy);
+
+            // Check if new position already occupied
+            if (occupancy[newCell] != 0) {
+                return 3;
+            }
+            occupancy[cell(oldX, oldY)]--;
+            occupancy[newCell]++;
+            playerPos.incrementX(dx);
+            playerPos.incrementY(dy);
+            return 0;
+        }
+        finally {
+            if (second != first) {
+                second.unlock();
+            }
+            first.unlock();
+        }
+    }
+
+    /**
+     * Returns index of the locking region holding given position.
+     *
+     * @param x - x coordinate value
+     * @param y - y coordinate value
+     * @return int
+     */
+    private int region(int x, int y) {
+        return (y / REGION_SIZE) * regionColumns + x / REGION_SIZE;
+    }
+
+    /**
+     * Returns index of given position in the occupancy grid. Positions run
+     * from 0 to width and 0 to height inclusive.
+     *
+     * @param x - x coordinate value
+     * @param y - y coordinate value
+     * @return int
+     */
+    private int cell(int x, int y) {
+        return y * (width + 1) + x;
+    }
+
     /**
      * Moves a player in given direction by spaces.
      *
@@ -272,88 +432,236 @@ public class GameBoard {
                 break;
         }
 
+        if (ret == 0) {
+            Position playerPos = playerPositions.get(id);
+            AtomicReference<PlayerSnapshot> snapshot = playerSnapshots.get(id);
+            snapshot.set(snapshot.get().moved(playerPos.getX(), playerPos.getY()));
+        }
         return ret;
     }
 
     /**
-     * Captures a pokemon and adds to players sack.
+     * Captures a pokemon and adds to players sack. Only the region holding
+     * the player is locked.
      *
      * @param id - Player ID
      * @return int - 0 - Success
      *               1 - Failure
      */
-    public synchronized int capturePokemon(int id) {
+    public int capturePokemon(int id) {
         int ret = 1;
-        Position playerPos = this.playerPositions.getOrDefault(id, null);
+        Position playerPos = this.playerPositions.get(id);
 
         if (playerPos != null) {
-            String pokemonAtPos = this.pokemonPositions.getOrDefault(playerPos, null);
-
-            if (pokemonAtPos != null) {
-                List<String> playerPokemons = this.playerPokemons.getOrDefault(id, new ArrayList<>());
-                playerPokemons.add(pokemonAtPos);
-                this.playerPokemons.put(id, playerPokemons);
-
-                // Remove capture pokemon from board
-                pokemonPositions.remove(playerPos);
+            Lock lock = regionLocks[region(playerPos.getX(), playerPos.getY())];
+            lock.lock();
+            try {
+                int cell = cell(playerPos.getX(), playerPos.getY());
+                short pokemonAtPos = pokemonPositions[cell];
+
+                if (pokemonAtPos != PokemonCatalog.NO_POKEMON) {
+                    PokemonSack playerPokemons = this.playerPokemons.get(id);
+                    playerPokemons.add(pokemonAtPos);
+
+                    // Remove capture pokemon from board
+                    pokemonPositions[cell] = PokemonCatalog.NO_POKEMON;
+                    pokemonIndex.update(playerPos.getX(), playerPos.getY(), PokemonCatalog.NO_POKEMON);
+                    pokemonCount.decrementAndGet();
+
+                    if (playerPokemons.size() == WINNER_POKEMONS) {
+                        winnerFound = true;
+                        ret = 2;
+                    }
+                    else {
+                        ret = 0;
+                    }
+                    AtomicReference<PlayerSnapshot> snapshot = playerSnapshots.get(id);
+                    snapshot.set(snapshot.get().captured(pokemonAtPos));
 
-                if (playerPokemons.size() == WINNER_POKEMONS) {
-                    winnerFound = true;
-                    ret = 2;
-                }
-                else {
-                    ret = 0;
                 }
-
+            }
+            finally {
+                lock.unlock();
             }
         }
 
         return ret;
     }
 
+    /**
+     * Puts a pokemon in an empty cell, one holding neither a pokemon nor
+     * a player.
+     *
+     * @param x - x coordinate value
+     * @param y - y coordinate value
+     * @param pokemon - Catalog ID
+     * @return boolean - false if the cell is not empty or beyond board
+     */
+    public boolean spawnPokemon(int x, int y, short pokemon) {
+        if (x < 0 || x > width || y < 0 || y > height) {
+            return false;
+        }
+
+        Lock lock = regionLocks[region(x, y)];
+        lock.lock();
+        try {
+            int cell = cell(x, y);
+            if (pokemonPositions[cell] != PokemonCatalog.NO_POKEMON || occupancy[cell] != 0) {
+                return false;
+            }
+            pokemonPositions[cell] = pokemon;
+            pokemonIndex.update(x, y, pokemon);
+            pokemonCount.incrementAndGet();
+            return true;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
     /**
      * Returns a players position.
      * @param id - Player ID
      * @return Position - null - Failure
      */
     public Position getPlayerPos(int id) {
-        return playerPositions.getOrDefault(id, null);
+        return playerPositions.get(id);
     }
 
     /**
      * Returns pokemons captured by a player.
      *
      * @param id - Player ID
-     * @return List<String>
+     * @return PokemonSack
+     */
+    public PokemonSack getPlayerPokemons(int id) {
+        PokemonSack ret = playerPokemons.get(id);
+        return ret != null ? ret : new PokemonSack();
+    }
+
+    /**
+     * Returns version of a players state. It starts at 1 when the player
+     * joins and goes up with every move and capture of the player.
+     *
+     * @param id - Player ID
+     * @return int - 0 if the player does not exist
      */
-    public List<String> getPlayerPokemons(int id) {
-        return playerPokemons.getOrDefault(id, new ArrayList<>());
+    public int getPlayerVersion(int id) {
+        PlayerSnapshot ret = getPlayerSnapshot(id);
+        return ret != null ? ret.getVersion() : 0;
+    }
+
+    /**
+     * Returns immutable state of a player, safe to read alongside moves
+     * and captures of the player.
+     *
+     * @param id - Player ID
+     * @return PlayerSnapshot - null if player does not exist
+     */
+    public PlayerSnapshot getPlayerSnapshot(int id) {
+        AtomicReference<PlayerSnapshot> ret = playerSnapshots.get(id);
+        return ret != null ? ret.get() : null;
     }
 
     /**
      * Rerturns pokemon at given position if any.
      *
      * @param pos - Players current position
-     * @return String
+     * @return int - Catalog ID, NO_POKEMON if there is none
      */
-    public String getPokemon(Position pos) {
-        String ret = "-";
-        if (pokemonPositions.containsKey(pos)) {
-            ret = pokemonPositions.get(pos);
+    public int getPokemon(Position pos) {
+        return getPokemon(pos.getX(), pos.getY());
+    }
+
+    /**
+     * Returns pokemon at given coordinates if any.
+     *
+     * @param x - x coordinate value
+     * @param y - y coordinate value
+     * @return int - Catalog ID, NO_POKEMON if there is none
+     */
+    public int getPokemon(int x, int y) {
+        int ret = PokemonCatalog.NO_POKEMON;
+        if (x >= 0 && x <= width && y >= 0 && y <= height) {
+            ret = pokemonPositions[cell(x, y)];
         }
         return ret;
     }
 
+    /**
+     * Visits the pokemons at most radius cells away from a position along
+     * both axes, looked up in a spatial index rather than the whole board.
+     * No region is locked, the index locks its own buckets.
+     *
+     * @param x - x coordinate value
+     * @param y - y coordinate value
+     * @param radius - Greatest distance along each axis, not negative
+     * @param visitor - Receives each pokemon found
+     */
+    public void scanPokemons(int x, int y, int radius, PokemonIndex.Visitor visitor) {
+        pokemonIndex.scan(x, y, radius, visitor);
+    }
+
+    /**
+     * Returns width of the board.
+     *
+     * @return int
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns height of the board.
+     *
+     * @return int
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns catalog of all pokemons.
+     *
+     * @return PokemonCatalog
+     */
+    public PokemonCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * Returns the position a player spawns in. Each player ID draws from
+     * its own stream of the board seed, so spawn positions do not depend
+     * on the order players join in and joins share no random state.
+     *
+     * @param id - Player ID
+     * @return Position
+     */
+    public Position getSpawnPosition(int id) {
+        SplittableRandom random = new SplittableRandom(seed ^ (id * SPAWN_STREAM_MULTIPLIER));
+        return new Position(random.nextInt(width) + 1, random.nextInt(height) + 1);
+    }
+
+    /**
+     * Returns the seed of the pokemon layout and player spawn positions.
+     *
+     * @return long
+     */
+    public long getSeed() {
+        return seed;
+    }
+
     /**
      * Adds given player at mentioned position.
      *
      * @param id - Player ID
      */
     public void addPlayer(int id) {
-        int x = (int) (Math.random() * width + 1);
-        int y = (int) (Math.random() * height + 1);
-        Position pos = new Position(x, y);
+        Position pos = getSpawnPosition(id);
         playerPositions.put(id, pos);
+        playerPokemons.put(id, new PokemonSack());
+        playerSnapshots.put(id, new AtomicReference<>(new PlayerSnapshot(pos.getX(), pos.getY())));
+        occupancy[cell(pos.getX(), pos.getY())]++;
     }
 
     /**
@@ -362,8 +670,12 @@ public class GameBoard {
      * @param id - Player ID
      */
     public void removePlayer(int id) {
-        playerPositions.remove(id);
+        Position pos = playerPositions.remove(id);
+        if (pos != null) {
+            occupancy[cell(pos.getX(), pos.getY())]--;
+        }
         playerPokemons.remove(id);
+        playerSnapshots.remove(id);
     }
 
     /**
@@ -374,7 +686,7 @@ public class GameBoard {
     @Override
     public String toString() {
         return "Board size: (" + width + ", " + height + ")\n" +
-               "Number of pokemons: " + pokemonPositions.size() + "\n" +
+               "Number of pokemons: " + pokemonCount.get() + "\n" +
                "First player to capture " + WINNER_POKEMONS + " pokemons wins! Good luck";
     }
 }
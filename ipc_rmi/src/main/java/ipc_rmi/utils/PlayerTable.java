@@ -0,0 +1,235 @@
+package ipc_rmi.utils;
+
+/**
+ * Map from player ID to a value, keyed by primitive int so lookups do not
+ * box the ID.
+ *
+ * Entries live in two parallel arrays probed linearly from the slot the
+ * ID hashes to. Removal shifts later entries of the probe run back, so no
+ * tombstones build up as players come and go. Not thread safe, callers
+ * guard the table with their own lock.
+ *
+ * @param <V> - Type of value held per player
+ */
+public class PlayerTable<V> {
+    /**
+     * Default number of slots.
+     */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * Player ID of each slot.
+     */
+    private int[] keys;
+
+    /**
+     * Value of each slot, null if slot is free.
+     */
+    private Object[] values;
+
+    /**
+     * Number of players in table.
+     */
+    private int size;
+
+    /**
+     * Callback for iterating over a table.
+     *
+     * @param <V> - Type of value held per player
+     */
+    public interface Visitor<V> {
+        /**
+         * Visits one player.
+         *
+         * @param id - Player ID
+         * @param value - Value held for player
+         */
+        void visit(int id, V value);
+    }
+
+    /**
+     * Default constructor.
+     */
+    public PlayerTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor sizing table for expected number of players.
+     *
+     * @param expected - Expected number of players
+     */
+    public PlayerTable(int expected) {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity < expected * 2) {
+            capacity <<= 1;
+        }
+        keys = new int[capacity];
+        values = new Object[capacity];
+        size = 0;
+    }
+
+    /**
+     * Returns value held for a player.
+     *
+     * @param id - Player ID
+     * @return V - null if player is not in table
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int id) {
+        int slot = find(id);
+        return slot == -1 ? null : (V) values[slot];
+    }
+
+    /**
+     * Checks if a player is in table.
+     *
+     * @param id - Player ID
+     * @return boolean
+     */
+    public boolean containsKey(int id) {
+        return find(id) != -1;
+    }
+
+    /**
+     * Sets value held for a player.
+     *
+     * @param id - Player ID
+     * @param value - Value to hold, must not be null
+     * @return V - Previous value, null if none
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int id, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("PlayerTable values must not be null");
+        }
+
+        int mask = keys.length - 1;
+        for (int slot = home(id, mask); ; slot = (slot + 1) & mask) {
+            if (values[slot] == null) {
+                keys[slot] = id;
+                values[slot] = value;
+                if (++size * 2 > keys.length) {
+                    resize(keys.length << 1);
+                }
+                return null;
+            }
+            if (keys[slot] == id) {
+                V ret = (V) values[slot];
+                values[slot] = value;
+                return ret;
+            }
+        }
+    }
+
+    /**
+     * Removes a player.
+     *
+     * @param id - Player ID
+     * @return V - Removed value, null if player was not in table
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int id) {
+        int slot = find(id);
+        if (slot == -1) {
+            return null;
+        }
+
+        V ret = (V) values[slot];
+        values[slot] = null;
+        size--;
+
+        // Shift back entries that probed past the freed slot
+        int mask = keys.length - 1;
+        int free = slot;
+        for (int next = (free + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+            int home = home(keys[next], mask);
+            boolean reachable = free <= next ? (home <= free || home > next)
+                                             : (home <= free && home > next);
+            if (reachable) {
+                keys[free] = keys[next];
+                values[free] = values[next];
+                values[next] = null;
+                free = next;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Returns number of players in table.
+     *
+     * @return int
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Visits every player in table, in no particular order. The table must
+     * not be changed while visiting.
+     *
+     * @param visitor - Callback for each player
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(Visitor<V> visitor) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (values[slot] != null) {
+                visitor.visit(keys[slot], (V) values[slot]);
+            }
+        }
+    }
+
+    /**
+     * Returns slot holding a player.
+     *
+     * @param id - Player ID
+     * @return int - -1 if player is not in table
+     */
+    private int find(int id) {
+        int mask = keys.length - 1;
+        for (int slot = home(id, mask); values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == id) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Moves every entry into arrays of given number of slots.
+     *
+     * @param capacity - New number of slots, a power of two
+     */
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[capacity];
+        values = new Object[capacity];
+
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = home(oldKeys[i], mask);
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Returns the slot a player ID hashes to. Sequential IDs are spread
+     * out by multiplying with the golden ratio.
+     *
+     * @param id - Player ID
+     * @param mask - Number of slots minus one
+     * @return int
+     */
+    private static int home(int id, int mask) {
+        int h = id * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
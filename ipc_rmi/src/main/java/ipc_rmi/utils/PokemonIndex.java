@@ -0,0 +1,222 @@
+package ipc_rmi.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Spatial index of the pokemons on a board, a uniform grid of square
+ * buckets each listing the pokemons inside it. A scan only visits the
+ * buckets overlapping its square, so it costs about the number of
+ * pokemons found rather than the size of the board.
+ *
+ * Each bucket keeps its pokemons in a dense array and every cell
+ * remembers its slot in there, so adding or removing a pokemon is O(1).
+ * Each bucket has its own ReentrantLock, locked one at a time, so the
+ * index may be updated and scanned from any thread, virtual threads
+ * included, without pinning their carrier.
+ */
+public class PokemonIndex {
+    /**
+     * Width and height in cells of a bucket.
+     */
+    public static final int BUCKET_SIZE = 8;
+
+    /**
+     * Receives the pokemons found by a scan.
+     */
+    public interface Visitor {
+        /**
+         * Called once per pokemon found, with its bucket locked.
+         *
+         * @param x - x coordinate value
+         * @param y - y coordinate value
+         * @param pokemon - Catalog ID
+         */
+        void visit(int x, int y, short pokemon);
+    }
+
+    /**
+     * Pokemons inside one bucket.
+     */
+    private static final class Bucket {
+        /**
+         * Cell of each pokemon, first size entries are used.
+         */
+        int[] cells;
+
+        /**
+         * Catalog ID of each pokemon, parallel to cells.
+         */
+        short[] pokemons;
+
+        /**
+         * Number of pokemons in the bucket.
+         */
+        int size;
+
+        /**
+         * Constructor.
+         *
+         * @param capacity - Number of cells in the bucket
+         */
+        Bucket(int capacity) {
+            cells = new int[capacity];
+            pokemons = new short[capacity];
+            size = 0;
+        }
+    }
+
+    /**
+     * Width of board.
+     */
+    private final int width;
+
+    /**
+     * Height of board.
+     */
+    private final int height;
+
+    /**
+     * Number of buckets across the board.
+     */
+    private final int bucketColumns;
+
+    /**
+     * Buckets indexed by bucket().
+     */
+    private final Bucket[] buckets;
+
+    /**
+     * Lock guarding each bucket, parallel to buckets.
+     */
+    private final Lock[] bucketLocks;
+
+    /**
+     * Slot of each cells pokemon in its bucket, -1 if the cell holds none.
+     * Guarded by the lock of the bucket holding the cell.
+     */
+    private final int[] slots;
+
+    /**
+     * Constructor of an empty index.
+     *
+     * @param width - Width of board
+     * @param height - Height of board
+     */
+    public PokemonIndex(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.bucketColumns = width / BUCKET_SIZE + 1;
+        this.buckets = new Bucket[bucketColumns * (height / BUCKET_SIZE + 1)];
+        this.bucketLocks = new Lock[buckets.length];
+        this.slots = new int[(width + 1) * (height + 1)];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new Bucket(BUCKET_SIZE * BUCKET_SIZE);
+            bucketLocks[i] = new ReentrantLock();
+        }
+        Arrays.fill(slots, -1);
+    }
+
+    /**
+     * Records the pokemon now on a cell, replacing any recorded before.
+     *
+     * @param x - x coordinate value, within board
+     * @param y - y coordinate value, within board
+     * @param pokemon - Catalog ID, NO_POKEMON if the cell is now empty
+     */
+    public void update(int x, int y, short pokemon) {
+        int index = bucket(x, y);
+        bucketLocks[index].lock();
+        try {
+            set(buckets[index], y * (width + 1) + x, pokemon);
+        }
+        finally {
+            bucketLocks[index].unlock();
+        }
+    }
+
+    /**
+     * Visits every pokemon at most radius cells away from a position along
+     * both axes, bucket by bucket.
+     *
+     * @param x - x coordinate value
+     * @param y - y coordinate value
+     * @param radius - Greatest distance along each axis, not negative
+     * @param visitor - Receives each pokemon found
+     */
+    public void scan(int x, int y, int radius, Visitor visitor) {
+        // Clamp the square to the board, radius may be anything
+        int minX = (int) Math.max(0, (long) x - radius);
+        int maxX = (int) Math.min(width, (long) x + radius);
+        int minY = (int) Math.max(0, (long) y - radius);
+        int maxY = (int) Math.min(height, (long) y + radius);
+        if (minX > maxX || minY > maxY) {
+            return;
+        }
+
+        for (int by = minY / BUCKET_SIZE; by <= maxY / BUCKET_SIZE; by++) {
+            for (int bx = minX / BUCKET_SIZE; bx <= maxX / BUCKET_SIZE; bx++) {
+                int index = by * bucketColumns + bx;
+                Bucket bucket = buckets[index];
+
+                // Buckets fully inside the square need no check per pokemon
+                boolean inside = bx * BUCKET_SIZE >= minX && (bx + 1) * BUCKET_SIZE - 1 <= maxX &&
+                                 by * BUCKET_SIZE >= minY && (by + 1) * BUCKET_SIZE - 1 <= maxY;
+                bucketLocks[index].lock();
+                try {
+                    for (int i = 0; i < bucket.size; i++) {
+                        int cellX = bucket.cells[i] % (width + 1);
+                        int cellY = bucket.cells[i] / (width + 1);
+                        if (inside || (cellX >= minX && cellX <= maxX && cellY >= minY && cellY <= maxY)) {
+                            visitor.visit(cellX, cellY, bucket.pokemons[i]);
+                        }
+                    }
+                }
+                finally {
+                    bucketLocks[index].unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds, replaces or removes the pokemon of a cell. Bucket must be
+     * locked.
+     *
+     * @param bucket - Bucket holding the cell
+     * @param cell - Cell index
+     * @param pokemon - Catalog ID, NO_POKEMON to remove
+     */
+    private void set(Bucket bucket, int cell, short pokemon) {
+        int slot = slots[cell];
+        if (pokemon != PokemonCatalog.NO_POKEMON) {
+            if (slot == -1) {
+                slot = bucket.size++;
+                bucket.cells[slot] = cell;
+                slots[cell] = slot;
+            }
+            bucket.pokemons[slot] = pokemon;
+        }
+        else if (slot != -1) {
+            // Move the last pokemon of the bucket into the freed slot
+            int last = --bucket.size;
+            int lastCell = bucket.cells[last];
+            bucket.cells[slot] = lastCell;
+            bucket.pokemons[slot] = bucket.pokemons[last];
+            slots[lastCell] = slot;
+            slots[cell] = -1;
+        }
+    }
+
+    /**
+     * Returns index of the bucket holding given position.
+     *
+     * @param x - x coordinate value
+     * @param y - y coordinate value
+     * @return int
+     */
+    private int bucket(int x, int y) {
+        return (y / BUCKET_SIZE) * bucketColumns + x / BUCKET_SIZE;
+    }
+}
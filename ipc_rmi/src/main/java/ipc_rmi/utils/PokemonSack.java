@@ -0,0 +1,67 @@
+package ipc_rmi.utils;
+
+import java.util.Arrays;
+
+/**
+ * Pokemons captured by a player, as catalog IDs in capture order. Not
+ * thread safe, a players sack only changes through that players own
+ * commands.
+ */
+public class PokemonSack {
+    /**
+     * Default number of pokemons held before growing.
+     */
+    private static final int DEFAULT_CAPACITY = GameBoard.WINNER_POKEMONS;
+
+    /**
+     * Catalog IDs of captured pokemons.
+     */
+    private short[] pokemons;
+
+    /**
+     * Number of captured pokemons.
+     */
+    private int size;
+
+    /**
+     * Default constructor.
+     */
+    public PokemonSack() {
+        pokemons = new short[DEFAULT_CAPACITY];
+        size = 0;
+    }
+
+    /**
+     * Adds a captured pokemon.
+     *
+     * @param id - Catalog ID
+     */
+    public void add(short id) {
+        if (size == pokemons.length) {
+            pokemons = Arrays.copyOf(pokemons, size * 2);
+        }
+        pokemons[size++] = id;
+    }
+
+    /**
+     * Returns number of captured pokemons.
+     *
+     * @return int
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns catalog IDs of captured pokemons in capture order.
+     *
+     * @return int[]
+     */
+    public int[] toIDs() {
+        int[] ret = new int[size];
+        for (int i = 0; i < size; i++) {
+            ret[i] = pokemons[i];
+        }
+        return ret;
+    }
+}
@@ -101,7 +101,7 @@ public class Position {
      */
     @Override
     public int hashCode() {
-        return x + y;
+        return 31 * x + y;
     }
 
     /**
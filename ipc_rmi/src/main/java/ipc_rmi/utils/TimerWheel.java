@@ -0,0 +1,170 @@
+package ipc_rmi.utils;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hashed timer wheel. Timers hash by their deadline tick into one of a
+ * fixed number of slots, so scheduling is O(1) however many timers are
+ * pending. Each advance only looks at the timers of the slot the wheel
+ * turned to; timers further out than one revolution stay in their slot
+ * until the wheel comes round to their deadline.
+ *
+ * Timers may be scheduled from any thread. The wheel is advanced by a
+ * single owner thread, which also runs the expired tasks.
+ */
+public class TimerWheel {
+    /**
+     * A pending timer, linked into the list of its slot.
+     */
+    private static final class Timer {
+        /**
+         * Tick at which the timer expires.
+         */
+        final long deadline;
+
+        /**
+         * Task run on expiry.
+         */
+        final Runnable task;
+
+        /**
+         * Next timer of the same slot or of an expired chain.
+         */
+        Timer next;
+
+        /**
+         * Constructor.
+         *
+         * @param deadline - Tick at which the timer expires
+         * @param task - Task run on expiry
+         */
+        Timer(long deadline, Runnable task) {
+            this.deadline = deadline;
+            this.task = task;
+        }
+    }
+
+    /**
+     * First timer of each slot, null if slot is empty.
+     */
+    private final Timer[] slots;
+
+    /**
+     * Number of slots minus one, number of slots is a power of two.
+     */
+    private final int mask;
+
+    /**
+     * Current tick.
+     */
+    private long tick;
+
+    /**
+     * Number of pending timers.
+     */
+    private int size;
+
+    /**
+     * Lock guarding slots, tick and size.
+     */
+    private final Lock lock;
+
+    /**
+     * Constructor.
+     *
+     * @param slotCount - Number of slots, rounded up to a power of two
+     */
+    public TimerWheel(int slotCount) {
+        int size = Integer.highestOneBit(Math.max(slotCount - 1, 1)) << 1;
+        this.slots = new Timer[size];
+        this.mask = size - 1;
+        this.tick = 0;
+        this.size = 0;
+        this.lock = new ReentrantLock();
+    }
+
+    /**
+     * Schedules a task to run after given number of ticks.
+     *
+     * @param delay - Number of ticks from now, at least 1
+     * @param task - Task to run
+     */
+    public void schedule(long delay, Runnable task) {
+        lock.lock();
+        try {
+            Timer timer = new Timer(tick + Math.max(delay, 1), task);
+            int slot = (int) timer.deadline & mask;
+            timer.next = slots[slot];
+            slots[slot] = timer;
+            size++;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Moves the wheel on by one tick and runs every task expiring at it.
+     * Tasks run outside the lock, so they may schedule new timers. A task
+     * throwing ends the advance and drops the other tasks expiring at this
+     * tick, so tasks handle their own errors.
+     *
+     * @return int - Number of tasks run
+     */
+    public int advance() {
+        Timer expired = null;
+        lock.lock();
+        try {
+            tick++;
+            int slot = (int) tick & mask;
+
+            // Unlink expired timers, keeping the ones due in later revolutions
+            Timer previous = null;
+            Timer timer = slots[slot];
+            while (timer != null) {
+                Timer next = timer.next;
+                if (timer.deadline <= tick) {
+                    if (previous == null) {
+                        slots[slot] = next;
+                    }
+                    else {
+                        previous.next = next;
+                    }
+                    timer.next = expired;
+                    expired = timer;
+                    size--;
+                }
+                else {
+                    previous = timer;
+                }
+                timer = next;
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+
+        int ret = 0;
+        for (Timer timer = expired; timer != null; timer = timer.next) {
+            timer.task.run();
+            ret++;
+        }
+        return ret;
+    }
+
+    /**
+     * Returns number of pending timers.
+     *
+     * @return int
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+}
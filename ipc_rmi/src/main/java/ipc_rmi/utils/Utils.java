@@ -1,53 +1,27 @@
 package ipc_rmi.utils;
 
-import java.io.*;
 import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.net.InterfaceAddress;
 import java.net.NetworkInterface;
-import java.util.ArrayList;
 import java.util.Enumeration;
-import java.util.List;
 
 public class Utils {
     /**
-     * Reads a list of pokemons from give file path.
+     * Returns value following option name in command line arguments.
      *
-     * @param filePath - Path to file containing pokemon list.
-     * @return List<String>
+     * @param args - Command line arguments
+     * @param name - Option name, e.g. -seed
+     * @param defaultValue - Value returned when option is absent
+     * @return String
      */
-    public static List<String> readPokemons(String filePath) {
-        FileReader fr = null;
-        try {
-            fr = new FileReader(filePath);
-        }
-        catch (FileNotFoundException e) {
-            System.out.println("ERROR: " + e.getMessage());
-        }
-
-        List<String> pokemons = null;
-        if (fr != null) {
-            pokemons = new ArrayList<>();
-            BufferedReader br = new BufferedReader(fr);
-
-            String line = "";
-            do {
-                try {
-                    line = br.readLine();
-                } catch (IOException e) {
-                    System.out.println("ERROR: " + e.getMessage());
-                }
-
-                if (line != null) {
-                    line = line.trim();
-                    String pokemonName = line.split(",")[1];
-                    pokemons.add(pokemonName);
-                }
+    public static String getOption(String[] args, String name, String defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(name)) {
+                return args[i + 1];
             }
-            while (line != null);
         }
-
-        return pokemons;
+        return defaultValue;
     }
 
     /**
@@ -0,0 +1,53 @@
+package ipc_rmi.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class GameBoardTest {
+    /**
+     * Checksum of the default board built from seed 42, the same as the
+     * socket server's.
+     */
+    private static final long SEED_42_CHECKSUM = 4764452040032635724L;
+
+    @Test
+    public void sameSeedBuildsSameBoard() {
+        GameBoard board = new GameBoard(GameBoard.DEFAULT_WIDTH, GameBoard.DEFAULT_HEIGHT, 42);
+        GameBoard again = new GameBoard(GameBoard.DEFAULT_WIDTH, GameBoard.DEFAULT_HEIGHT, 42);
+        GameBoard other = new GameBoard(GameBoard.DEFAULT_WIDTH, GameBoard.DEFAULT_HEIGHT, 43);
+        assertEquals(checksum(board), checksum(again));
+        assertNotEquals(checksum(board), checksum(other));
+        for (int id = 1; id <= 100; id++) {
+            assertEquals(board.getSpawnPosition(id).toString(), again.getSpawnPosition(id).toString());
+        }
+    }
+
+    @Test
+    public void seedLayoutMatchesSocketServer() {
+        assertEquals(SEED_42_CHECKSUM, checksum(new GameBoard(GameBoard.DEFAULT_WIDTH, GameBoard.DEFAULT_HEIGHT, 42)));
+    }
+
+    /**
+     * Returns a checksum of the pokemon on every cell of a board and the
+     * spawn positions of its first players.
+     *
+     * @param board - Board, as laid out by its seed
+     * @return long
+     */
+    private static long checksum(GameBoard board) {
+        long ret = 0;
+        for (int y = 0; y <= board.getHeight(); y++) {
+            for (int x = 0; x <= board.getWidth(); x++) {
+                ret = ret * 31 + board.getPokemon(x, y);
+            }
+        }
+        for (int id = 1; id <= 10; id++) {
+            Position spawn = board.getSpawnPosition(id);
+            ret = ret * 31 + spawn.getX();
+            ret = ret * 31 + spawn.getY();
+        }
+        return ret;
+    }
+}
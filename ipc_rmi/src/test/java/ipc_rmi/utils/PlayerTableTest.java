@@ -0,0 +1,106 @@
+package ipc_rmi.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PlayerTableTest {
+    @Test
+    public void putsGetsAndReplaces() {
+        PlayerTable<String> table = new PlayerTable<>();
+        assertNull(table.put(7, "a"));
+        assertNull(table.put(-3, "b"));
+        assertEquals("a", table.put(7, "c"));
+        assertEquals(2, table.size());
+        assertEquals("c", table.get(7));
+        assertEquals("b", table.get(-3));
+        assertNull(table.get(8));
+        assertTrue(table.containsKey(-3));
+        assertFalse(table.containsKey(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNullValues() {
+        new PlayerTable<String>().put(1, null);
+    }
+
+    @Test
+    public void removesAndShiftsBackAcrossTheWrap() {
+        // Three IDs hashing to the last slot fill it and wrap round to the
+        // first two, pushing an ID hashing to the first slot on to the third
+        List<Integer> last = idsHashingTo(15, 3);
+        int first = idsHashingTo(0, 1).get(0);
+        PlayerTable<Integer> table = new PlayerTable<>(1);
+        for (int id : last) {
+            table.put(id, id);
+        }
+        table.put(first, first);
+
+        // Freeing the last slot must pull every later entry of the run back
+        assertEquals(last.get(0), table.remove(last.get(0)));
+        assertNull(table.remove(last.get(0)));
+        assertEquals(3, table.size());
+        assertEquals(last.get(1), table.get(last.get(1)));
+        assertEquals(last.get(2), table.get(last.get(2)));
+        assertEquals(first, (int) table.get(first));
+
+        assertEquals(last.get(2), table.remove(last.get(2)));
+        assertEquals(last.get(1), table.get(last.get(1)));
+        assertEquals(first, (int) table.get(first));
+        assertEquals(first, (int) table.remove(first));
+        assertEquals(last.get(1), table.get(last.get(1)));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    public void matchesHashMapThroughGrowthAndRemovals() {
+        PlayerTable<Integer> table = new PlayerTable<>();
+        Map<Integer, Integer> expected = new HashMap<>();
+        SplittableRandom random = new SplittableRandom(1);
+        for (int i = 0; i < 100000; i++) {
+            int id = random.nextInt(200);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(id), table.remove(id));
+            }
+            else {
+                assertEquals(expected.put(id, i), table.put(id, i));
+            }
+            assertEquals(expected.size(), table.size());
+        }
+
+        Map<Integer, Integer> visited = new HashMap<>();
+        table.forEach(visited::put);
+        assertEquals(expected, visited);
+        for (int id = 0; id < 200; id++) {
+            assertEquals(expected.get(id), table.get(id));
+        }
+    }
+
+    /**
+     * Returns IDs hashing to a slot of a table of 16 slots, the fewest it
+     * has, hashed the way the table does.
+     *
+     * @param slot - Slot
+     * @param count - Number of IDs
+     * @return List<Integer>
+     */
+    private static List<Integer> idsHashingTo(int slot, int count) {
+        List<Integer> ret = new ArrayList<>();
+        for (int id = 1; ret.size() < count; id++) {
+            int h = id * 0x9E3779B9;
+            if (((h ^ (h >>> 16)) & 15) == slot) {
+                ret.add(id);
+            }
+        }
+        return ret;
+    }
+}
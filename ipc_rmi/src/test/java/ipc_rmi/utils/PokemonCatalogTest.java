@@ -0,0 +1,91 @@
+package ipc_rmi.utils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class PokemonCatalogTest {
+    @Test
+    public void binaryCatalogRoundTrips() throws IOException {
+        PokemonCatalog csv = PokemonCatalog.load(PokemonCatalog.POKEMON_CSV_FILEPATH);
+        assertNotNull(csv);
+        PokemonCatalog binary = PokemonCatalog.read(new ByteArrayInputStream(toBytes(csv)));
+        assertNotNull(binary);
+        assertSameCatalog(csv, binary);
+    }
+
+    @Test
+    public void classpathCatalogMatchesCsv() {
+        assertSameCatalog(PokemonCatalog.load(PokemonCatalog.POKEMON_CSV_FILEPATH), PokemonCatalog.getInstance());
+    }
+
+    @Test
+    public void looksUpNamesAndIDs() {
+        PokemonCatalog catalog = PokemonCatalog.getInstance();
+        for (int id = 0; id < catalog.size(); id++) {
+            assertEquals(id, catalog.getID(catalog.getName(id)));
+        }
+
+        // First row of the csv is ID 0, pikachu is on row 25
+        assertEquals("bulbasaur", catalog.getName(0));
+        int pikachu = catalog.getID("pikachu");
+        assertEquals(24, pikachu);
+        assertEquals(25, catalog.getSpeciesID(pikachu));
+        assertEquals(112, catalog.getBaseExperience(pikachu));
+        assertArrayEquals("pikachu".getBytes(StandardCharsets.UTF_8), catalog.getNameBytes(pikachu));
+
+        assertEquals(-1, catalog.getID("missingno"));
+        assertEquals("-", catalog.getName(PokemonCatalog.NO_POKEMON));
+    }
+
+    @Test
+    public void rejectsMalformedCatalogs() throws IOException {
+        byte[] bytes = toBytes(PokemonCatalog.getInstance());
+        assertNull(PokemonCatalog.read(ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length - 1))));
+
+        bytes[0] ^= 1;
+        assertNull(PokemonCatalog.read(ByteBuffer.wrap(bytes)));
+    }
+
+    /**
+     * Writes a catalog in its binary format.
+     *
+     * @param catalog - Catalog to write
+     * @return byte[]
+     * @throws IOException - If write fails
+     */
+    private static byte[] toBytes(PokemonCatalog catalog) throws IOException {
+        ByteArrayOutputStream ret = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(ret);
+        catalog.write(out);
+        out.flush();
+        return ret.toByteArray();
+    }
+
+    /**
+     * Checks two catalogs hold the same pokemons under the same IDs.
+     *
+     * @param expected - Catalog expected
+     * @param actual - Catalog checked
+     */
+    private static void assertSameCatalog(PokemonCatalog expected, PokemonCatalog actual) {
+        assertEquals(expected.getNames(), actual.getNames());
+        for (int id = 0; id < expected.size(); id++) {
+            assertEquals(expected.getSpeciesID(id), actual.getSpeciesID(id));
+            assertEquals(expected.getHeight(id), actual.getHeight(id));
+            assertEquals(expected.getWeight(id), actual.getWeight(id));
+            assertEquals(expected.getBaseExperience(id), actual.getBaseExperience(id));
+        }
+    }
+}
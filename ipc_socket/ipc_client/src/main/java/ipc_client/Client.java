@@ -1,23 +1,102 @@
 package ipc_client;
 
+import ipc_client.protocol.BinaryProtocol;
 import ipc_client.threads.ClientThread;
 
 import java.io.*;
 import java.net.Socket;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Client {
-    public static long startTime;
-
-    public static long endTime;
+    /**
+     * Send time of each request in flight, keyed by request ID.
+     */
+    public static Map<Integer, Long> startTimes;
 
     public static List<Long> responseTimes;
 
+    /**
+     * ID to be assigned to next request.
+     */
+    private static int nextRequestID = 1;
+
+    /**
+     * Binary protocol state, null when using the text protocol.
+     */
+    private static BinaryProtocol binaryProtocol;
+
+    /**
+     * Queues a validated command to the server in the negotiated protocol,
+     * tagged with a new request ID. Commands are only sent on flush, so
+     * several can be pipelined in one write.
+     *
+     * @param os - Buffered socket output stream for the binary protocol
+     * @param socketBW - Socket writer for the text protocol
+     * @param command - Command line
+     * @throws IOException - If write fails
+     */
+    private static void sendCommand(OutputStream os, BufferedWriter socketBW, String command) throws IOException {
+        int requestID = nextRequestID++;
+        startTimes.put(requestID, System.nanoTime());
+
+        if (binaryProtocol != null) {
+            os.write(BinaryProtocol.encodeCommand(command.split(" "), requestID));
+        }
+        else {
+            socketBW.write("#" + requestID + " " + command + "\n");
+        }
+    }
+
+    /**
+     * Sends all queued commands to the server.
+     *
+     * @param os - Buffered socket output stream for the binary protocol
+     * @param socketBW - Socket writer for the text protocol
+     * @throws IOException - If write fails
+     */
+    private static void flushCommands(OutputStream os, BufferedWriter socketBW) throws IOException {
+        socketBW.flush();
+        os.flush();
+    }
+
+    /**
+     * Switches the connection to the binary protocol and fetches the
+     * pokemon catalog used to resolve pokemon IDs in replies.
+     *
+     * @param serverSocket - Connection to server
+     * @param socketBW - Socket writer for the text protocol
+     * @throws IOException - If negotiation fails
+     */
+    private static void negotiateBinary(Socket serverSocket, BufferedWriter socketBW) throws IOException {
+        socketBW.write(BinaryProtocol.NEGOTIATE_LINE + "\n");
+        socketBW.flush();
+
+        // Read acknowledgement unbuffered so no frame bytes are consumed
+        InputStream is = serverSocket.getInputStream();
+        StringBuilder ack = new StringBuilder();
+        int b;
+        while ((b = is.read()) != -1 && b != '\n') {
+            ack.append((char) b);
+        }
+        if (!ack.toString().equals(BinaryProtocol.NEGOTIATE_LINE)) {
+            throw new IOException("Server does not support the binary protocol");
+        }
+
+        binaryProtocol = new BinaryProtocol();
+        OutputStream os = serverSocket.getOutputStream();
+        os.write(BinaryProtocol.encodeCatalogRequest());
+        os.flush();
+        binaryProtocol.readReply(new DataInputStream(is));
+    }
+
     public static void main(String[] args) {
         // Check if server ip provided
-        if (args.length != 1) {
-            System.out.println("Usage: ./client <server-ip>");
+        if (args.length < 1 || args.length > 2 ||
+            (args.length == 2 && !args[1].equals("text") && !args[1].equals("binary"))) {
+            System.out.println("Usage: ./client <server-ip> [text|binary]");
             System.exit(1);
         }
 
@@ -45,17 +124,30 @@ public class Client {
         }
         OutputStreamWriter osw = new OutputStreamWriter(os);
         BufferedWriter socketBW = new BufferedWriter(osw);
+        BufferedOutputStream socketBOS = new BufferedOutputStream(os);
+
+        // Negotiate binary protocol if asked for
+        if (args.length == 2 && args[1].equals("binary")) {
+            try {
+                negotiateBinary(serverSocket, socketBW);
+            }
+            catch (IOException e) {
+                System.out.println("ERROR: " + e.getMessage());
+                System.exit(1);
+            }
+        }
 
         // Setup system input streams
         InputStreamReader isr = new InputStreamReader(System.in);
         BufferedReader br = new BufferedReader(isr);
-        String command = "";
+        String line = "";
 
         // Steup response times list
         responseTimes = new ArrayList<>();
+        startTimes = new ConcurrentHashMap<>();
 
         // Start client receiver thread
-        ClientThread clientThread = new ClientThread(serverSocket);
+        ClientThread clientThread = new ClientThread(serverSocket, binaryProtocol);
         clientThread.start();
 
         System.out.println("Client Started");
@@ -63,152 +155,204 @@ public class Client {
         while (true) {
 
             try {
-                command = br.readLine().trim();
+                line = br.readLine().trim();
             }
             catch (Exception e) {
                 System.out.println("ERROR: " + e.getMessage() + " Try again!");
             }
 
-            String[] commandParts = command.split(" ");
-            String socketSendErrorMsg = "Failed to send command. Try again!";
+            // Commands separated by ';' are pipelined in a single write
+            for (String command : line.split(";")) {
+                command = command.trim();
+                String[] commandParts = command.split(" ");
+                String socketSendErrorMsg = "Failed to send command. Try again!";
+
+                switch (commandParts[0]) {
+                    case "move":
+                        // Usage message for move
+                        String moveUsgMsg = "Command Usage: move <direction> <steps>\n" +
+                                            "               direction: left|right|up|down\n" +
+                                            "               steps: integer";
+
+                        // Check if appropriate number of arguments are passed
+                        if (commandParts.length != 3) {
+                            System.out.println(moveUsgMsg);
+                            System.out.print("\ncommand > ");
+                            break;
+                        }
 
-            switch (commandParts[0]) {
-                case "move":
-                    // Usage message for move
-                    String moveUsgMsg = "Command Usage: move <direction> <steps>\n" +
-                                        "               direction: left|right|up|down\n" +
-                                        "               steps: integer";
+                        boolean directionValid = false;
+                        boolean stepsValid = false;
+
+                        // Check if direction arugment is among left, right, top, down
+                        String direction = commandParts[1];
+                        switch (direction) {
+                            case "down":
+                            case "up":
+                            case "right":
+                            case "left":
+                                directionValid = true;
+                                break;
+                        }
 
-                    // Check if appropriate number of arguments are passed
-                    if (commandParts.length != 3) {
-                        System.out.println(moveUsgMsg);
-                        System.out.print("\ncommand > ");
+                        // Check if steps argument is an integer
+                        int steps;
+                        try {
+                            steps = Integer.parseInt(commandParts[2]);
+                            stepsValid = true;
+                        } catch (NumberFormatException e) { }
+
+                        if (directionValid && stepsValid) {
+
+                            try {
+                                sendCommand(socketBOS, socketBW, command);
+                            } catch (IOException e) {
+                                System.out.println(socketSendErrorMsg);
+                                System.out.print("\ncommand > ");
+                            }
+                        } else {
+                            System.out.println(moveUsgMsg);
+                            System.out.print("\ncommand > ");
+                        }
                         break;
-                    }
-
-                    boolean directionValid = false;
-                    boolean stepsValid = false;
-
-                    // Check if direction arugment is among left, right, top, down
-                    String direction = commandParts[1];
-                    switch (direction) {
-                        case "down":
-                        case "up":
-                        case "right":
-                        case "left":
-                            directionValid = true;
-                            break;
-                    }
-
-                    // Check if steps argument is an integer
-                    int steps;
-                    try {
-                        steps = Integer.parseInt(commandParts[2]);
-                        stepsValid = true;
-                    } catch (NumberFormatException e) { }
 
-                    if (directionValid && stepsValid) {
-                        startTime = System.nanoTime();
+                    case "capture":
+                        String captureUsgMsg = "Command usage: capture";
+                        if (commandParts.length != 1) {
+                            System.out.println(captureUsgMsg);
+                            System.out.print("\ncommand > ");
+                            break;
+                        }
 
                         try {
-                            socketBW.write(command + "\n");
-                            socketBW.flush();
-                        } catch (IOException e) {
+                            sendCommand(socketBOS, socketBW, command);
+                        }
+                        catch (IOException e) {
                             System.out.println(socketSendErrorMsg);
                             System.out.print("\ncommand > ");
+                            break;
                         }
-                    } else {
-                        System.out.println(moveUsgMsg);
-                        System.out.print("\ncommand > ");
-                    }
-                    break;
-
-                case "capture":
-                    String captureUsgMsg = "Command usage: capture";
-                    if (commandParts.length != 1) {
-                        System.out.println(captureUsgMsg);
-                        System.out.print("\ncommand > ");
                         break;
-                    }
 
-                    startTime = System.nanoTime();
+                    case "show":
+                        String showUsgMsg = "Command Usage: show [version]\n" +
+                                            "               version: last version shown, positive integer";
 
-                    try {
-                        socketBW.write(command + "\n");
-                        socketBW.flush();
-                    }
-                    catch (IOException e) {
-                        System.out.println(socketSendErrorMsg);
-                        System.out.print("\ncommand > ");
-                        break;
-                    }
-                    break;
+                        // Check if optional version argument is a positive integer
+                        boolean versionValid = commandParts.length == 1;
+                        if (commandParts.length == 2) {
+                            try {
+                                versionValid = Integer.parseInt(commandParts[1]) > 0;
+                            } catch (NumberFormatException e) { }
+                        }
 
-                case "show":
-                    String showUsgMsg = "Command Usage: show";
-                    if (commandParts.length != 1) {
-                        System.out.println(showUsgMsg);
-                        System.out.print("\ncommand > ");
+                        if (!versionValid) {
+                            System.out.println(showUsgMsg);
+                            System.out.print("\ncommand > ");
+                            break;
+                        }
+
+                        try {
+                            sendCommand(socketBOS, socketBW, command);
+                        }
+                        catch (IOException e) {
+                            System.out.println(socketSendErrorMsg);
+                            System.out.print("\ncommand > ");
+                        }
                         break;
-                    }
 
-                    startTime = System.nanoTime();
+                    case "scan":
+                        String scanUsgMsg = "Command Usage: scan <radius>\n" +
+                                            "               radius: non-negative integer";
 
-                    try {
-                        socketBW.write(command + "\n");
-                        socketBW.flush();
-                    }
-                    catch (IOException e) {
-                        System.out.println(socketSendErrorMsg);
-                        System.out.print("\ncommand > ");
-                    }
-                    break;
+                        // Check if radius argument is a non-negative integer
+                        boolean radiusValid = false;
+                        if (commandParts.length == 2) {
+                            try {
+                                radiusValid = Integer.parseInt(commandParts[1]) >= 0;
+                            } catch (NumberFormatException e) { }
+                        }
 
-                case "join":
-                    String joinUsgMsg = "Command Usage: join";
+                        if (!radiusValid) {
+                            System.out.println(scanUsgMsg);
+                            System.out.print("\ncommand > ");
+                            break;
+                        }
 
-                    if (commandParts.length != 1) {
-                        System.out.println(joinUsgMsg);
-                        System.out.print("\ncommand > ");
+                        try {
+                            sendCommand(socketBOS, socketBW, command);
+                        }
+                        catch (IOException e) {
+                            System.out.println(socketSendErrorMsg);
+                            System.out.print("\ncommand > ");
+                        }
                         break;
-                    }
 
-                    startTime = System.nanoTime();
+                    case "subscribe":
+                        String subscribeUsgMsg = "Command Usage: subscribe";
+                        if (commandParts.length != 1) {
+                            System.out.println(subscribeUsgMsg);
+                            System.out.print("\ncommand > ");
+                            break;
+                        }
 
-                    try {
-                        socketBW.write(command + "\n");
-                        socketBW.flush();
-                    } catch (IOException e) {
-                        System.out.println(socketSendErrorMsg);
-                        System.out.print("\ncommand > ");
-                    }
-                    break;
+                        try {
+                            sendCommand(socketBOS, socketBW, command);
+                        }
+                        catch (IOException e) {
+                            System.out.println(socketSendErrorMsg);
+                            System.out.print("\ncommand > ");
+                        }
+                        break;
 
-                case "leave":
-                    String leaveUsgMsg= "Command Usage: leave";
-                    if (commandParts.length != 1) {
-                        System.out.println(leaveUsgMsg);
-                        System.out.print("\ncommand > ");
+                    case "join":
+                        String joinUsgMsg = "Command Usage: join";
+
+                        if (commandParts.length != 1) {
+                            System.out.println(joinUsgMsg);
+                            System.out.print("\ncommand > ");
+                            break;
+                        }
+
+                        try {
+                            sendCommand(socketBOS, socketBW, command);
+                        } catch (IOException e) {
+                            System.out.println(socketSendErrorMsg);
+                            System.out.print("\ncommand > ");
+                        }
                         break;
-                    }
 
-                    startTime = System.nanoTime();
+                    case "leave":
+                        String leaveUsgMsg= "Command Usage: leave";
+                        if (commandParts.length != 1) {
+                            System.out.println(leaveUsgMsg);
+                            System.out.print("\ncommand > ");
+                            break;
+                        }
 
-                    try {
-                        socketBW.write(command + "\n");
-                        socketBW.flush();
-                    }
-                    catch (IOException e) {
-                        System.out.println(socketSendErrorMsg);
+                        try {
+                            sendCommand(socketBOS, socketBW, command);
+                        }
+                        catch (IOException e) {
+                            System.out.println(socketSendErrorMsg);
+                            System.out.print("\ncommand > ");
+                            break;
+                        }
+                        break;
+
+                    default:
+                        System.out.println("Command " + commandParts[0] + " not supported.");
                         System.out.print("\ncommand > ");
                         break;
-                    }
-                    break;
+                }
+            }
 
-                default:
-                    System.out.println("Command " + commandParts[0] + " not supported.");
-                    System.out.print("\ncommand > ");
-                    break;
+            try {
+                flushCommands(socketBOS, socketBW);
+            }
+            catch (IOException e) {
+                System.out.println("Failed to send command. Try again!");
+                System.out.print("\ncommand > ");
             }
         }
     }
@@ -0,0 +1,428 @@
+package ipc_client.protocol;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Client side of the binary wire protocol. Mirrors ipc_server.protocol.Protocol:
+ *
+ *   opcode (1 byte) | payload length (varint) | payload
+ *
+ * Every payload starts with a varint request ID, 0 for server pushes.
+ */
+public class BinaryProtocol {
+    /**
+     * Text line used to switch a connection to the binary protocol.
+     */
+    public static final String NEGOTIATE_LINE = "protocol binary";
+
+    /*
+     * Request opcodes.
+     */
+    public static final int OP_JOIN    = 0x01;
+    public static final int OP_LEAVE   = 0x02;
+    public static final int OP_MOVE    = 0x03;
+    public static final int OP_CAPTURE = 0x04;
+    public static final int OP_SHOW    = 0x05;
+    public static final int OP_CATALOG = 0x06;
+    public static final int OP_SCAN    = 0x07;
+    public static final int OP_SUBSCRIBE = 0x08;
+
+    /*
+     * Reply opcodes.
+     */
+    public static final int OP_STATUS        = 0x40;
+    public static final int OP_DETAILS       = 0x41;
+    public static final int OP_JOIN_REPLY    = 0x42;
+    public static final int OP_MESSAGE       = 0x43;
+    public static final int OP_CATALOG_REPLY = 0x44;
+    public static final int OP_SCAN_REPLY    = 0x45;
+    public static final int OP_SNAPSHOT      = 0x46;
+    public static final int OP_DELTA         = 0x47;
+
+    /*
+     * Kinds of board change carried by deltas.
+     */
+    public static final int DELTA_JOINED   = 0;
+    public static final int DELTA_LEFT     = 1;
+    public static final int DELTA_MOVED    = 2;
+    public static final int DELTA_CAPTURED = 3;
+    public static final int DELTA_SPAWNED  = 4;
+
+    /*
+     * Reply status codes.
+     */
+    public static final int STATUS_OK             = 0;
+    public static final int STATUS_NO_PLAYER      = 1;
+    public static final int STATUS_BEYOND_BOARD   = 2;
+    public static final int STATUS_OCCUPIED       = 3;
+    public static final int STATUS_NO_POKEMON     = 4;
+    public static final int STATUS_WINNER         = 5;
+    public static final int STATUS_NOT_JOINED     = 6;
+    public static final int STATUS_ALREADY_JOINED = 7;
+    public static final int STATUS_LEFT           = 8;
+    public static final int STATUS_GAME_OVER      = 9;
+    public static final int STATUS_UNSUPPORTED    = 10;
+    public static final int STATUS_MOVE_FAILED    = 11;
+    public static final int STATUS_NOT_MODIFIED   = 12;
+
+    /**
+     * Pokemon names indexed by pokemon ID, received from the server.
+     */
+    private List<String> pokemonNames;
+
+    /**
+     * Request ID of the last reply read.
+     */
+    private int lastRequestID;
+
+    /**
+     * Constructor.
+     */
+    public BinaryProtocol() {
+        pokemonNames = new ArrayList<>();
+        lastRequestID = 0;
+    }
+
+    /**
+     * Encodes a validated client command as a frame.
+     *
+     * @param commandParts - Command split on spaces
+     * @param requestID - ID echoed by the server in the reply
+     * @return byte[]
+     */
+    public static byte[] encodeCommand(String[] commandParts, int requestID) {
+        int opcode;
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        writeVarInt(payload, requestID);
+        switch (commandParts[0]) {
+            case "move":
+                opcode = OP_MOVE;
+                payload.write(directionByte(commandParts[1]));
+                writeVarInt(payload, Integer.parseInt(commandParts[2]));
+                break;
+
+            case "scan":
+                opcode = OP_SCAN;
+                writeVarInt(payload, Integer.parseInt(commandParts[1]));
+                break;
+
+            case "show":
+                opcode = OP_SHOW;
+                if (commandParts.length > 1) {
+                    writeVarInt(payload, Integer.parseInt(commandParts[1]));
+                }
+                break;
+
+            case "capture": opcode = OP_CAPTURE; break;
+            case "subscribe": opcode = OP_SUBSCRIBE; break;
+            case "join": opcode = OP_JOIN; break;
+            case "leave": opcode = OP_LEAVE; break;
+            default: throw new IllegalArgumentException("Unknown command " + commandParts[0]);
+        }
+        return frame(opcode, payload);
+    }
+
+    /**
+     * Encodes the request for the pokemon catalog.
+     *
+     * @return byte[]
+     */
+    public static byte[] encodeCatalogRequest() {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        writeVarInt(payload, 0);
+        return frame(OP_CATALOG, payload);
+    }
+
+    /**
+     * Returns request ID of the last reply read, 0 for pushes.
+     *
+     * @return int
+     */
+    public int getLastRequestID() {
+        return lastRequestID;
+    }
+
+    /**
+     * Reads one frame and renders it as the text protocol would.
+     *
+     * @param in - Stream from server
+     * @return String - null at end of stream
+     * @throws IOException - If read fails
+     */
+    public String readReply(DataInputStream in) throws IOException {
+        int opcode = in.read();
+        if (opcode == -1) {
+            return null;
+        }
+        byte[] payload = new byte[readVarInt(in)];
+        in.readFully(payload);
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        lastRequestID = getVarInt(buffer);
+
+        switch (opcode) {
+            case OP_STATUS:
+                return statusMessage(buffer.get());
+
+            case OP_DETAILS:
+                return renderDetails(buffer);
+
+            case OP_JOIN_REPLY:
+                int width = getVarInt(buffer);
+                int height = getVarInt(buffer);
+                int pokemonCount = getVarInt(buffer);
+                int winnerPokemons = getVarInt(buffer);
+                return "Board size: (" + width + ", " + height + ")\n" +
+                       "Number of pokemons: " + pokemonCount + "\n" +
+                       "First player to capture " + winnerPokemons + " pokemons wins! Good luck\n" +
+                       renderDetails(buffer);
+
+            case OP_MESSAGE:
+                return new String(payload, buffer.position(), buffer.remaining(), StandardCharsets.UTF_8);
+
+            case OP_SCAN_REPLY:
+                int center = getVarInt(buffer);
+                int radius = getVarInt(buffer);
+                int found = getVarInt(buffer);
+                StringBuilder scan = new StringBuilder("Pokemons within " + radius + " of (" +
+                                                      (center >>> 16) + ", " + (center & 0xFFFF) + "): " + found);
+                for (int i = 0; i < found; i++) {
+                    int position = getVarInt(buffer);
+                    scan.append("\n(").append(position >>> 16).append(", ").append(position & 0xFFFF).append(") ")
+                        .append(pokemonName(getVarInt(buffer)));
+                }
+                return scan.toString();
+
+            case OP_SNAPSHOT:
+                StringBuilder snapshot = new StringBuilder("Board version: " + getVarLong(buffer));
+                snapshot.append("\nBoard size: (").append(getVarInt(buffer)).append(", ").append(getVarInt(buffer))
+                        .append(")");
+                int pokemons = getVarInt(buffer);
+                snapshot.append("\nPokemons: ").append(pokemons);
+                for (int i = 0; i < pokemons; i++) {
+                    int position = getVarInt(buffer);
+                    snapshot.append("\n(").append(position >>> 16).append(", ").append(position & 0xFFFF).append(") ")
+                            .append(pokemonName(getVarInt(buffer)));
+                }
+                int players = getVarInt(buffer);
+                snapshot.append("\nPlayers: ").append(players);
+                for (int i = 0; i < players; i++) {
+                    int id = getVarInt(buffer);
+                    int position = getVarInt(buffer);
+                    snapshot.append("\nPlayer-").append(id).append(" (").append(position >>> 16).append(", ")
+                            .append(position & 0xFFFF).append(")");
+                }
+                return snapshot.toString();
+
+            case OP_DELTA:
+                return renderDelta(buffer);
+
+            case OP_CATALOG_REPLY:
+                int count = getVarInt(buffer);
+                List<String> names = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    byte[] name = new byte[getVarInt(buffer)];
+                    buffer.get(name);
+                    names.add(new String(name, StandardCharsets.UTF_8));
+                }
+                pokemonNames = names;
+                return "Pokemon catalog: " + count + " pokemons";
+
+            default:
+                return "Unknown reply " + opcode;
+        }
+    }
+
+    /**
+     * Renders player details.
+     *
+     * @param buffer - Payload positioned at details
+     * @return String
+     */
+    private String renderDetails(ByteBuffer buffer) {
+        int status = buffer.get();
+        int id = getVarInt(buffer);
+        int position = getVarInt(buffer);
+        int count = getVarInt(buffer);
+        List<String> pokemons = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            pokemons.add(pokemonName(getVarInt(buffer)));
+        }
+        int pokemonAtPos = getVarInt(buffer) - 1;
+        int version = getVarInt(buffer);
+
+        String ret = "Player ID: " + id + "\n" +
+                     "Position: (" + (position >>> 16) + ", " + (position & 0xFFFF) + ")\n" +
+                     "Captured Pokemons: " + pokemons.toString() + "\n" +
+                     "Pokemon at current position: " + (pokemonAtPos == -1 ? "-" : pokemonName(pokemonAtPos)) + "\n" +
+                     "Version: " + version;
+        if (status == STATUS_WINNER) {
+            ret += "\n" + "You have won the game! Congratulations!";
+        }
+        return ret;
+    }
+
+    /**
+     * Renders a board change as "@<version> <kind> ...".
+     *
+     * @param buffer - Payload positioned at version
+     * @return String
+     */
+    private String renderDelta(ByteBuffer buffer) {
+        long version = getVarLong(buffer);
+        int kind = buffer.get();
+        if (kind == DELTA_SPAWNED) {
+            int position = getVarInt(buffer);
+            return "@" + version + " spawned (" + (position >>> 16) + ", " + (position & 0xFFFF) + ") " +
+                   pokemonName(getVarInt(buffer));
+        }
+
+        int id = getVarInt(buffer);
+        if (kind == DELTA_LEFT) {
+            return "@" + version + " left " + id;
+        }
+
+        int position = getVarInt(buffer);
+        String verb = kind == DELTA_JOINED ? "joined" : kind == DELTA_MOVED ? "moved" : "captured";
+        return "@" + version + " " + verb + " " + id + " (" + (position >>> 16) + ", " + (position & 0xFFFF) + ")";
+    }
+
+    /**
+     * Returns name of pokemon with given ID.
+     *
+     * @param id - Pokemon ID
+     * @return String
+     */
+    private String pokemonName(int id) {
+        return id < pokemonNames.size() ? pokemonNames.get(id) : "#" + id;
+    }
+
+    /**
+     * Returns text of a status only reply.
+     *
+     * @param status - Status code
+     * @return String
+     */
+    private static String statusMessage(int status) {
+        switch (status) {
+            case STATUS_NO_PLAYER: return "Player does not exist.";
+            case STATUS_BEYOND_BOARD: return "Can't move there. Position beyond board limits.";
+            case STATUS_OCCUPIED: return "Can't move there. Position occupied by another player.";
+            case STATUS_NO_POKEMON: return "No pokemon at position";
+            case STATUS_NOT_JOINED: return "Join a game before using this command";
+            case STATUS_ALREADY_JOINED: return "Player already joined";
+            case STATUS_LEFT: return "Player left";
+            case STATUS_GAME_OVER: return "Games over on this server. Please wait for server to restart.";
+            case STATUS_UNSUPPORTED: return "Server does not support this command yet";
+            case STATUS_NOT_MODIFIED: return "Player unchanged";
+            default: return "Can't move to this position.";
+        }
+    }
+
+    /**
+     * Returns direction byte of a direction.
+     *
+     * @param direction - up|down|left|right
+     * @return int
+     */
+    private static int directionByte(String direction) {
+        switch (direction) {
+            case "up": return 0;
+            case "down": return 1;
+            case "left": return 2;
+            default: return 3;
+        }
+    }
+
+    /**
+     * Wraps payload into a frame.
+     *
+     * @param opcode - Frame opcode
+     * @param payload - Frame payload
+     * @return byte[]
+     */
+    private static byte[] frame(int opcode, ByteArrayOutputStream payload) {
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(payload.size() + 6);
+        frame.write(opcode);
+        writeVarInt(frame, payload.size());
+        frame.write(payload.toByteArray(), 0, payload.size());
+        return frame.toByteArray();
+    }
+
+    /**
+     * Writes value as varint.
+     *
+     * @param out - Destination stream
+     * @param value - Value to write
+     */
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Reads a varint.
+     *
+     * @param buffer - Source buffer
+     * @return int
+     */
+    private static int getVarInt(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        }
+        while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * Reads a varint too large for an int.
+     *
+     * @param buffer - Source buffer
+     * @return long
+     */
+    private static long getVarLong(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        }
+        while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * Reads a varint from a stream.
+     *
+     * @param in - Source stream
+     * @return int
+     * @throws IOException - If stream ends or fails
+     */
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        }
+        while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -1,8 +1,11 @@
 package ipc_client.threads;
 
 import ipc_client.Client;
+import ipc_client.protocol.BinaryProtocol;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -14,13 +17,20 @@ public class ClientThread extends Thread {
      */
     private Socket serverSocket;
 
+    /**
+     * Binary protocol state, null when using the text protocol.
+     */
+    private BinaryProtocol binaryProtocol;
+
     /**
      * Constructor.
      *
      * @param serverSocket - Server socket associated with client
+     * @param binaryProtocol - Binary protocol state, null for text protocol
      */
-    public ClientThread(Socket serverSocket) {
+    public ClientThread(Socket serverSocket, BinaryProtocol binaryProtocol) {
         this.serverSocket = serverSocket;
+        this.binaryProtocol = binaryProtocol;
     }
 
     @Override
@@ -33,32 +43,56 @@ public class ClientThread extends Thread {
             System.out.println("ERROR: " + e.getMessage());
             System.exit(1);
         }
-        InputStreamReader isr = new InputStreamReader(is);
-        BufferedReader br = new BufferedReader(isr);
+        BufferedReader br = null;
+        DataInputStream dis = null;
+        if (binaryProtocol != null) {
+            dis = new DataInputStream(new BufferedInputStream(is));
+        }
+        else {
+            br = new BufferedReader(new InputStreamReader(is));
+        }
 
 
         String recvdMsg = "";
         do {
+            int requestID = 0;
             try {
-                recvdMsg = br.readLine();
+                if (binaryProtocol != null) {
+                    recvdMsg = binaryProtocol.readReply(dis);
+                    requestID = binaryProtocol.getLastRequestID();
+                }
+                else {
+                    recvdMsg = br.readLine();
+                    if (recvdMsg != null) {
+                        // Strip "#<id> " prefix of replies to requests
+                        if (recvdMsg.startsWith("#")) {
+                            int end = recvdMsg.indexOf(' ');
+                            requestID = Integer.parseInt(recvdMsg.substring(1, end));
+                            recvdMsg = recvdMsg.substring(end + 1);
+                        }
+                        recvdMsg = recvdMsg.replaceAll("~", "\n");
+                    }
+                }
             }
             catch (IOException e) {
                 System.out.println("ERROR: " + e.getMessage());
             }
 
-            Client.endTime = System.nanoTime();
+            long endTime = System.nanoTime();
 
-            recvdMsg = recvdMsg.replaceAll("~", "\n");
+            // Server closed the connection
+            if (recvdMsg == null) {
+                System.out.println("Server closed the connection.");
+                break;
+            }
             System.out.println(recvdMsg);
 
-            long responseTime = (Client.endTime - Client.startTime) / 1000000;
-            if (Client.startTime > 0) {
+            // Pushes, e.g. when a winner was found, have no matching request
+            Long startTime = Client.startTimes.remove(requestID);
+            if (startTime != null) {
+                long responseTime = (endTime - startTime) / 1000000;
                 Client.responseTimes.add(responseTime);
                 System.out.println("Response Time: " + responseTime + " ms");
-
-                // Set start time as negative to know whether a call was made
-                // or are we being terminated because a winner was found
-                Client.startTime = -1;
             }
 
             if (!recvdMsg.equalsIgnoreCase("Player left") &&
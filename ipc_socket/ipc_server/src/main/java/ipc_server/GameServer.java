@@ -1,17 +1,43 @@
 package ipc_server;
 
+import ipc_server.interfaces.Board;
+import ipc_server.interfaces.PlayerConnection;
 import ipc_server.threads.GameServerThread;
+import ipc_server.threads.RespawnThread;
+import ipc_server.threads.SelectorServerThread;
+import ipc_server.threads.SequencerThread;
+import ipc_server.threads.TickEngineThread;
+import ipc_server.utils.AtomicGameBoard;
+import ipc_server.utils.BoardDelta;
+import ipc_server.utils.BoardDetails;
+import ipc_server.utils.BoardSnapshot;
+import ipc_server.utils.DeltaStream;
 import ipc_server.utils.GameBoard;
+import ipc_server.utils.InterestGrid;
+import ipc_server.utils.OutboundQueue;
+import ipc_server.utils.PlayerDetails;
+import ipc_server.utils.PlayerSnapshot;
+import ipc_server.utils.PlayerTable;
+import ipc_server.utils.PokemonCatalog;
+import ipc_server.utils.PokemonSack;
 import ipc_server.utils.Position;
+import ipc_server.utils.ScanDetails;
 import ipc_server.utils.ServerUtils;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
 
 public class GameServer {
     /**
@@ -24,16 +50,78 @@ public class GameServer {
      */
     public static final int SERVER_PORT = 4001;
 
+    /**
+     * Command line usage.
+     */
+    private static final String USAGE =
+            "Usage: ./server [-mode thread|virtual|nio] [-loops count]\n" +
+            "                [-queue capacity] [-slow drop|disconnect|coalesce]\n" +
+            "                [-board locked|cas] [-engine direct|sequencer|tick]\n" +
+            "                [-ring size] [-tick millis] [-width cells] [-height cells]\n" +
+            "                [-seed number] [-respawn millis] [-aoi blocks]\n" +
+            "                [-deltas on|off]";
+
     /**
      * Game board of a server.
      */
-    private GameBoard gameBoard;
+    private Board gameBoard;
+
+    /**
+     * Flag set when the game board is lock free and needs no board lock.
+     */
+    private final boolean lockFree;
+
+    /**
+     * Engine applying all board commands on one thread, null if board
+     * commands run on the calling thread.
+     */
+    private SequencerThread sequencer;
+
+    /**
+     * Engine resolving moves and captures in batches once per tick, null
+     * if they run on the calling thread.
+     */
+    private TickEngineThread tickEngine;
 
     /**
-     * Server threads that are currently active for
+     * Thread respawning captured pokemons, null if they do not respawn.
+     */
+    private RespawnThread respawner;
+
+    /**
+     * Players grouped by board area, for pushing move and capture events
+     * to the players near them. Null if no events are pushed.
+     */
+    private InterestGrid interestGrid;
+
+    /**
+     * Versioned stream of board changes pushed to subscribers, null if
+     * subscriptions are not offered.
+     */
+    private DeltaStream deltaStream;
+
+    /**
+     * Lock guarding the game board. Joins and leaves take it exclusively.
+     * Moves and captures share it and lock only the board regions they
+     * touch. Queries read optimistically and only take the read lock if a
+     * join or leave got in the way. Unused with a lock free board.
+     *
+     * Lock order is the board lock, then playersLock. The players lock may
+     * be taken with the board locked, never the other way round.
+     */
+    private final StampedLock boardLock;
+
+    /**
+     * Lock guarding player bookkeeping. Never held while taking the board
+     * lock, see boardLock.
+     */
+    private final Lock playersLock;
+
+    /**
+     * Connections that are currently active for
      * each player.
      */
-    private Map<Integer, GameServerThread> serverThreadsMap;
+    private PlayerTable<PlayerConnection> serverThreadsMap;
 
     /**
      * Count of active players.
@@ -45,41 +133,227 @@ public class GameServer {
      */
     private int nextPlayerID;
 
+    /**
+     * Number of queued messages per client before pushes are subject
+     * to the slow consumer policy.
+     */
+    private final int outboundCapacity;
+
+    /**
+     * Slow consumer policy for pushes.
+     */
+    private final OutboundQueue.Policy slowConsumerPolicy;
+
     /**
      * Default constructor.
      */
     public GameServer() {
+        this(OutboundQueue.DEFAULT_CAPACITY, OutboundQueue.Policy.DROP, false,
+             GameBoard.DEFAULT_WIDTH, GameBoard.DEFAULT_HEIGHT, ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Constructor configuring per client outbound queues and the kind and
+     * size of game board.
+     *
+     * @param outboundCapacity - Number of queued messages per client
+     * @param slowConsumerPolicy - Policy for pushes to clients with a full queue
+     * @param lockFree - Use the experimental CAS based board instead of the locked one
+     * @param width - Width of game board
+     * @param height - Height of game board
+     * @param seed - Seed of pokemon layout and player spawn positions
+     */
+    public GameServer(int outboundCapacity, OutboundQueue.Policy slowConsumerPolicy, boolean lockFree,
+                      int width, int height, long seed) {
+        this.outboundCapacity = outboundCapacity;
+        this.slowConsumerPolicy = slowConsumerPolicy;
+        this.lockFree = lockFree;
         playerCount = 0;
         nextPlayerID = 1;
-        serverThreadsMap = new HashMap<>();
-        initGameBoard();
+        serverThreadsMap = new PlayerTable<>();
+        boardLock = new StampedLock();
+        playersLock = new ReentrantLock();
+        initGameBoard(width, height, seed);
     }
 
     /**
      * Initializes game board.
+     *
+     * @param width - Width of game board
+     * @param height - Height of game board
+     * @param seed - Seed of pokemon layout and player spawn positions
+     */
+    private void initGameBoard(int width, int height, long seed) {
+        GameBoard board = new GameBoard(width, height, seed);
+        gameBoard = lockFree ? new AtomicGameBoard(board) : board;
+    }
+
+    /**
+     * Starts applying every board command on a single sequencer thread.
+     * Must be called before clients connect.
+     *
+     * @param ringSize - Number of commands that can be in flight
      */
-    private void initGameBoard() {
-        gameBoard = new GameBoard();
+    public void startSequencer(int ringSize) {
+        sequencer = new SequencerThread(this, ringSize);
+        sequencer.start();
     }
 
     /**
-     * Adds a player to player list along with the server thread that
+     * Starts resolving moves and captures in batches once per tick, the
+     * board regions of a batch in parallel. Must be called before clients
+     * connect.
+     *
+     * @param tickMillis - Length of a tick in milliseconds
+     * @param parallelism - Number of threads resolving regions in parallel
+     */
+    public void startTickEngine(int tickMillis, int parallelism) {
+        tickEngine = new TickEngineThread(this, tickMillis, parallelism);
+        tickEngine.start();
+    }
+
+    /**
+     * Starts respawning a new pokemon some time after each capture. Must
+     * be called before clients connect.
+     *
+     * @param delayMillis - Delay between a capture and its respawn
+     * @param seed - Seed of respawn positions and pokemons
+     */
+    public void startRespawns(int delayMillis, long seed) {
+        respawner = new RespawnThread(this, delayMillis, seed);
+        respawner.start();
+    }
+
+    /**
+     * Starts pushing every move and capture to the players near it. Must
+     * be called before clients connect.
+     *
+     * @param reach - Number of blocks of cells away from their own players hear events from
+     */
+    public void startEvents(int reach) {
+        BoardDetails board = gameBoard.getDetails();
+        interestGrid = new InterestGrid(board.getWidth(), board.getHeight(), reach);
+    }
+
+    /**
+     * Starts offering subscriptions to a versioned stream of board
+     * changes. Must be called before clients connect.
+     */
+    public void startDeltas() {
+        deltaStream = new DeltaStream(gameBoard.getCatalog());
+    }
+
+    /**
+     * Checks if a move or capture has to be queued for the next tick,
+     * that is the tick engine is running and this is not its thread.
+     *
+     * @return boolean
+     */
+    private boolean isTicked() {
+        return tickEngine != null && !tickEngine.isEngine();
+    }
+
+    /**
+     * Checks if board commands are issued by the tick engine, which holds
+     * the board lock for them.
+     *
+     * @return boolean
+     */
+    private boolean isBatched() {
+        return tickEngine != null && tickEngine.isEngine();
+    }
+
+    /**
+     * Runs a batch of board commands under one exclusive board lock. Board
+     * commands issued by the batch take no lock of their own, and leave
+     * announcing winners to the caller once the lock is released.
+     *
+     * @param batch - Commands to run, on the tick engine thread
+     */
+    public void runExclusive(Runnable batch) {
+        long stamp = lockFree ? 0 : boardLock.writeLock();
+        try {
+            batch.run();
+        }
+        finally {
+            unlockBoard(stamp);
+        }
+    }
+
+    /**
+     * Returns the board region a players move stays within. Called by the
+     * tick engine with the board locked exclusively.
+     *
+     * @param id - Player ID
+     * @param direction - Direction of a move, null for the region holding the player
+     * @param spaces - Number of spaces of a move
+     * @return int - -1 if the player does not exist or the move crosses into another region
+     */
+    public int getRegion(int id, String direction, int spaces) {
+        return gameBoard.getRegion(id, direction, spaces);
+    }
+
+    /**
+     * Checks if a board command has to be handed to the sequencer, that is
+     * the sequencer is running and this is not its thread.
+     *
+     * @return boolean
+     */
+    private boolean isSequenced() {
+        return sequencer != null && !sequencer.isEngine();
+    }
+
+    /**
+     * Creates an outbound queue for a new client connection.
+     *
+     * @return OutboundQueue
+     */
+    public OutboundQueue newOutboundQueue() {
+        return new OutboundQueue(outboundCapacity, slowConsumerPolicy);
+    }
+
+    /**
+     * Adds a player to player list along with the connection that
      * provides service.
      *
-     * @param gameServerThread - Thread servicing a client
+     * @param connection - Connection servicing a client
      * @return int - Player ID
      */
-    public int addPlayer(GameServerThread gameServerThread) {
+    public int addPlayer(PlayerConnection connection) {
+        if (isSequenced()) {
+            return sequencer.call(SequencerThread.OP_ADD_PLAYER, 0, null, 0, connection);
+        }
+
         int ret;
-        synchronized (this) {
+        playersLock.lock();
+        try {
             ret = nextPlayerID++;
             playerCount++;
-            serverThreadsMap.put(ret, gameServerThread);
+            serverThreadsMap.put(ret, connection);
+        }
+        finally {
+            playersLock.unlock();
         }
 
         // Add player to game board
-        synchronized (gameBoard) {
+        int x;
+        int y;
+        long stamp = lockBoard(true);
+        try {
             gameBoard.addPlayer(ret);
+            Position playerPos = gameBoard.getPlayerPos(ret);
+            x = playerPos.getX();
+            y = playerPos.getY();
+            if (interestGrid != null) {
+                interestGrid.add(ret, x, y, connection);
+            }
+        }
+        finally {
+            unlockBoard(stamp);
+        }
+
+        if (deltaStream != null) {
+            deltaStream.publish(BoardDelta.JOINED, ret, x, y, PokemonCatalog.NO_POKEMON);
         }
         return ret;
     }
@@ -90,14 +364,35 @@ public class GameServer {
      * @param id - Player ID
      */
     public void removePlayer(int id) {
-        synchronized (this) {
+        if (isSequenced()) {
+            sequencer.call(SequencerThread.OP_REMOVE_PLAYER, id, null, 0, null);
+            return;
+        }
+
+        playersLock.lock();
+        try {
             playerCount--;
             serverThreadsMap.remove(id);
+        }
+        finally {
+            playersLock.unlock();
+        }
 
-            // Remove player from game board
-            synchronized (gameBoard) {
-                gameBoard.removePlayer(id);
+        // Remove player from game board, after the players lock is released
+        long stamp = lockBoard(true);
+        try {
+            Position playerPos = gameBoard.getPlayerPos(id);
+            if (interestGrid != null && playerPos != null) {
+                interestGrid.remove(id, playerPos.getX(), playerPos.getY());
             }
+            gameBoard.removePlayer(id);
+        }
+        finally {
+            unlockBoard(stamp);
+        }
+
+        if (deltaStream != null) {
+            deltaStream.publish(BoardDelta.LEFT, id, 0, 0, PokemonCatalog.NO_POKEMON);
         }
     }
 
@@ -114,11 +409,46 @@ public class GameServer {
      *               3 - New position occupied by another player
      */
     public int movePlayer(int id, String direction, int spaces) {
+        if (isSequenced()) {
+            return sequencer.call(SequencerThread.OP_MOVE, id, direction, spaces, null);
+        }
+        if (isTicked()) {
+            return tickEngine.submit(TickEngineThread.OP_MOVE, id, direction, spaces);
+        }
+
         int ret = 1;
-        synchronized (gameBoard) {
+        int oldX = 0;
+        int oldY = 0;
+        int newX = 0;
+        int newY = 0;
+        // Shared, the board locks the regions touched
+        long stamp = lockBoard(false);
+        try {
+            // Only this players own commands move it, so its position holds still around the move
+            Position playerPos = gameBoard.getPlayerPos(id);
+            if (playerPos != null) {
+                oldX = playerPos.getX();
+                oldY = playerPos.getY();
+            }
             ret = gameBoard.move(id, direction, spaces);
+            if (ret == 0) {
+                newX = playerPos.getX();
+                newY = playerPos.getY();
+            }
+        }
+        finally {
+            unlockBoard(stamp);
         }
 
+        // Players near either end of the move hear of it
+        if (ret == 0 && interestGrid != null) {
+            interestGrid.move(id, oldX, oldY, newX, newY);
+            interestGrid.publish(id, oldX, oldY, newX, newY,
+                                 "Player-" + id + " moved to (" + newX + ", " + newY + ")");
+        }
+        if (ret == 0 && deltaStream != null) {
+            deltaStream.publish(BoardDelta.MOVED, id, newX, newY, PokemonCatalog.NO_POKEMON);
+        }
         return ret;
     }
 
@@ -131,37 +461,161 @@ public class GameServer {
      *               2 - Winner
      */
     public int capturePokemon(int id) {
+        if (isSequenced()) {
+            return sequencer.call(SequencerThread.OP_CAPTURE, id, null, 0, null);
+        }
+        if (isTicked()) {
+            return tickEngine.submit(TickEngineThread.OP_CAPTURE, id, null, 0);
+        }
+
         int ret = 1;
-        synchronized (gameBoard) {
-            ret = gameBoard.capturePokemon(id);
-
-            if (gameBoard.isWinnerFound()) {
-                ret = 2;
-                List<Integer> tmp = new ArrayList<>();
-                for (Map.Entry<Integer, GameServerThread> entry : serverThreadsMap.entrySet()) {
-                    if (!entry.getKey().equals(id)) {
-                        entry.getValue().sendMsg("Player-" + id + " has won the game. Thank you for playing!");
-
-                        tmp.add(entry.getKey());
-                    }
-                }
+        String event = null;
+        Position playerPos = null;
+        // Shared, the board locks the regions touched
+        long stamp = lockBoard(false);
+        try {
+            // Position stays put meanwhile, only the players own commands move it
+            Position capturePos = deltaStream != null ? gameBoard.getPlayerPos(id) : null;
+            if (capturePos != null) {
+                ret = deltaStream.commit(capturePos.getX(), capturePos.getY(), () -> capture(id));
+            }
+            else {
+                ret = capture(id);
+            }
+
+            if (ret != 1 && interestGrid != null) {
+                PokemonSack pokemons = gameBoard.getPlayerPokemons(id);
+                playerPos = gameBoard.getPlayerPos(id);
+                event = "Player-" + id + " captured " +
+                        gameBoard.getCatalog().getName(pokemons.get(pokemons.size() - 1)) +
+                        " at " + playerPos.toString();
             }
         }
+        finally {
+            unlockBoard(stamp);
+        }
+
+        // Players near the capture hear of it
+        if (event != null) {
+            interestGrid.publish(id, playerPos.getX(), playerPos.getY(), event);
+        }
+
+        // Every captured pokemon is replaced after the respawn delay
+        if (ret != 1 && respawner != null) {
+            respawner.schedule();
+        }
+
+        // Pushes only queue messages, but stay outside the board lock anyway.
+        // A batch holds it throughout, so the tick engine announces later
+        if (ret == 2 && !isBatched()) {
+            announceWinner(id);
+        }
+        return ret;
+    }
+
+    /**
+     * Captures a pokemon present at a players position and publishes the
+     * emptied cell. Called with the board locked as needed.
+     *
+     * @param id - Player ID
+     * @return int - 0 - Success
+     *               1 - Failure
+     *               2 - Winner
+     */
+    private int capture(int id) {
+        int ret = gameBoard.capturePokemon(id);
+
+        // Only the capture completing the players sack wins, others may
+        // run alongside it
+        if (ret == 0 && gameBoard.getPlayerPokemons(id).size() == GameBoard.WINNER_POKEMONS) {
+            ret = 2;
+        }
+
+        if (ret != 1 && deltaStream != null) {
+            Position playerPos = gameBoard.getPlayerPos(id);
+            deltaStream.publish(BoardDelta.CAPTURED, id, playerPos.getX(), playerPos.getY(),
+                                PokemonCatalog.NO_POKEMON);
+        }
         return ret;
     }
 
+    /**
+     * Tells every other player that a player has won. Must not be called
+     * with the board locked.
+     *
+     * @param id - ID of winning player
+     */
+    public void announceWinner(int id) {
+        broadcast(id, "Player-" + id + " has won the game. Thank you for playing!");
+    }
+
+    /**
+     * Pushes a message to every player except one.
+     *
+     * @param excludeID - Player not to send to
+     * @param msg - Message to send
+     */
+    private void broadcast(int excludeID, String msg) {
+        final List<PlayerConnection> connections = new ArrayList<>();
+        playersLock.lock();
+        try {
+            serverThreadsMap.forEach((id, connection) -> {
+                if (id != excludeID) {
+                    connections.add(connection);
+                }
+            });
+        }
+        finally {
+            playersLock.unlock();
+        }
+
+        for (PlayerConnection connection : connections) {
+            connection.sendMsg(msg);
+        }
+    }
+
     /**
      * Return true if winner has been found.
      *
      * @return - boolean
      */
     public boolean isWinnerFound() {
-        boolean ret;
-        synchronized (gameBoard) {
-            ret = gameBoard.isWinnerFound();
+        // Winner flag is volatile, checking it never waits for writers
+        return gameBoard.isWinnerFound();
+    }
 
+    /**
+     * Puts a pokemon in an empty cell. Called by the respawn thread.
+     *
+     * @param x - x coordinate value
+     * @param y - y coordinate value
+     * @param pokemon - Catalog ID
+     * @return boolean - false if the cell is not empty or beyond board
+     */
+    public boolean spawnPokemon(int x, int y, short pokemon) {
+        // The sequencer is the only writer, respawns queue up like moves
+        if (isSequenced()) {
+            return sequencer.call(SequencerThread.OP_SPAWN, pokemon, null, x << 16 | y, null) != 0;
+        }
+
+        // Shared, the board locks the region touched
+        long stamp = lockBoard(false);
+        try {
+            if (deltaStream == null) {
+                return gameBoard.spawnPokemon(x, y, pokemon);
+            }
+
+            return deltaStream.commit(x, y, () -> {
+                boolean spawned = gameBoard.spawnPokemon(x, y, pokemon);
+                if (spawned) {
+                    deltaStream.publish(BoardDelta.SPAWNED, 0, x, y, pokemon);
+                }
+                return spawned;
+            });
+        }
+        finally {
+            unlockBoard(stamp);
         }
-        return ret;
     }
 
     /**
@@ -170,16 +624,201 @@ public class GameServer {
      * @return String - Player details
      */
     public String getPlayerDetails(int id) {
-        String ret = "";
-        synchronized (gameBoard) {
-            Position playerPos = gameBoard.getPlayerPos(id);
-            List<String> playerPokemons = gameBoard.getPlayerPokemons(id);
-            ret = "Player ID: " + id + "\n" +
-                  "Position: " + playerPos.toString() + "\n" +
-                  "Captured Pokemons: " + playerPokemons.toString() + "\n" +
-                  "Pokemon at current position: " + gameBoard.getPokemon(playerPos);
+        return getPlayerState(id).toString();
+    }
+
+    /**
+     * Returns current state of a player, read from the immutable snapshot
+     * its moves and captures swap in.
+     *
+     * @param id - Player ID
+     * @return PlayerDetails
+     */
+    public PlayerDetails getPlayerState(int id) {
+        if (isSequenced()) {
+            return (PlayerDetails) sequencer.query(SequencerThread.OP_PLAYER_STATE, id);
+        }
+
+        return readBoard(() -> {
+            PlayerSnapshot player = gameBoard.getPlayerSnapshot(id);
+            Position playerPos = new Position(player.getX(), player.getY());
+            return new PlayerDetails(id, player.getX(), player.getY(), player.getPokemonIDs(),
+                                     gameBoard.getPokemon(playerPos), gameBoard.getCatalog(),
+                                     player.getVersion());
+        });
+    }
+
+    /**
+     * Returns version of a players state, so a client knowing it can be
+     * told the state is unchanged instead of being sent it again.
+     *
+     * @param id - Player ID
+     * @return int - 0 if the player does not exist
+     */
+    public int getPlayerVersion(int id) {
+        if (isSequenced()) {
+            return sequencer.call(SequencerThread.OP_PLAYER_VERSION, id, null, 0, null);
+        }
+
+        return readBoard(() -> gameBoard.getPlayerVersion(id));
+    }
+
+    /**
+     * Returns the pokemons at most radius cells away from a player along
+     * both axes.
+     *
+     * @param id - Player ID
+     * @param radius - Greatest distance along each axis, not negative
+     * @return ScanDetails
+     */
+    public ScanDetails scanPokemons(int id, int radius) {
+        if (isSequenced()) {
+            return (ScanDetails) sequencer.query(SequencerThread.OP_SCAN, id, radius);
+        }
+
+        return readBoard(() -> {
+            PlayerSnapshot player = gameBoard.getPlayerSnapshot(id);
+            return gameBoard.scanPokemons(player.getX(), player.getY(), radius);
+        });
+    }
+
+    /**
+     * Subscribes a connection to the delta stream. The connection is
+     * registered before the board is read, so every change the snapshot
+     * may miss is pushed after it.
+     *
+     * @param connection - Connection deltas are pushed on
+     * @return BoardSnapshot - Board the deltas follow, null if subscriptions are not offered
+     */
+    public BoardSnapshot subscribe(PlayerConnection connection) {
+        if (deltaStream == null) {
+            return null;
+        }
+
+        deltaStream.subscribe(connection);
+        if (isSequenced()) {
+            return (BoardSnapshot) sequencer.query(SequencerThread.OP_SNAPSHOT, 0);
+        }
+        return readBoard(this::getSnapshot);
+    }
+
+    /**
+     * Stops pushing deltas to a connection.
+     *
+     * @param connection - Connection deltas were pushed on
+     */
+    public void unsubscribe(PlayerConnection connection) {
+        if (deltaStream != null) {
+            deltaStream.unsubscribe(connection);
+        }
+    }
+
+    /**
+     * Returns the whole board along with the version of the last delta
+     * published. The version is read first, so every change the board
+     * read misses is published above it. The players are listed after it
+     * too, under the players lock taken inside the board lock.
+     *
+     * @return BoardSnapshot
+     */
+    public BoardSnapshot getSnapshot() {
+        long version = deltaStream.getVersion();
+        BoardDetails board = gameBoard.getDetails();
+        ScanDetails pokemons = gameBoard.scanPokemons(0, 0, Integer.MAX_VALUE);
+
+        final List<Integer> ids = new ArrayList<>();
+        playersLock.lock();
+        try {
+            serverThreadsMap.forEach((id, connection) -> ids.add(id));
+        }
+        finally {
+            playersLock.unlock();
+        }
+
+        // Players leaving meanwhile are left out, their leave is published later
+        int count = 0;
+        int[] playerIDs = new int[ids.size()];
+        int[] playerPositions = new int[ids.size()];
+        for (int id : ids) {
+            PlayerSnapshot player = gameBoard.getPlayerSnapshot(id);
+            if (player != null) {
+                playerIDs[count] = id;
+                playerPositions[count] = (player.getX() << 16) | player.getY();
+                count++;
+            }
+        }
+        return new BoardSnapshot(version, board, pokemons, Arrays.copyOf(playerIDs, count),
+                                 Arrays.copyOf(playerPositions, count));
+    }
+
+    /**
+     * Takes the board lock, unless the board is lock free, only ever
+     * touched by the sequencer, or already locked by the tick engine.
+     *
+     * @param exclusive - Take the lock exclusively instead of shared
+     * @return long - Stamp to unlock with, 0 if no lock was taken
+     */
+    private long lockBoard(boolean exclusive) {
+        if (lockFree || sequencer != null || isBatched()) {
+            return 0;
+        }
+        return exclusive ? boardLock.writeLock() : boardLock.readLock();
+    }
+
+    /**
+     * Releases the board lock taken by lockBoard.
+     *
+     * @param stamp - Stamp returned by lockBoard
+     */
+    private void unlockBoard(long stamp) {
+        if (stamp != 0) {
+            boardLock.unlock(stamp);
+        }
+    }
+
+    /**
+     * Runs a read only query on the game board. The query first runs
+     * without locking and is rerun under the read lock only if a join or
+     * leave changed the player tables meanwhile, in which case whatever it
+     * saw, or any exception that caused, is discarded.
+     *
+     * Moves, captures and respawns share the board lock, so they validate
+     * neither the optimistic read nor the read lock against queries.
+     * Queries therefore read players only through their immutable
+     * snapshots, and cells and the pokemon index one value or bucket at a
+     * time. A scan or snapshot is consistent per player and per bucket,
+     * not across the whole board.
+     *
+     * @param query - Query reading the board
+     * @return T - Result of query
+     */
+    private <T> T readBoard(Supplier<T> query) {
+        if (lockFree || sequencer != null) {
+            return query.get();
+        }
+
+        long stamp = boardLock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                T ret = query.get();
+                if (boardLock.validate(stamp)) {
+                    return ret;
+                }
+            }
+            catch (RuntimeException e) {
+                if (boardLock.validate(stamp)) {
+                    throw e;
+                }
+            }
+        }
+
+        stamp = boardLock.readLock();
+        try {
+            return query.get();
+        }
+        finally {
+            boardLock.unlockRead(stamp);
         }
-        return ret;
     }
 
     /**
@@ -192,14 +831,34 @@ public class GameServer {
     }
 
     /**
-     * Main function.
+     * Returns details of game board.
      *
-     * @param args
+     * @return BoardDetails
      */
-    public static void main(String[] args) {
-        // Initialize game server
-        GameServer gameServer = new GameServer();
+    public BoardDetails getBoardState() {
+        if (isSequenced()) {
+            return (BoardDetails) sequencer.query(SequencerThread.OP_BOARD_STATE, 0);
+        }
+
+        return readBoard(gameBoard::getDetails);
+    }
+
+    /**
+     * Returns catalog of all pokemons.
+     *
+     * @return PokemonCatalog
+     */
+    public PokemonCatalog getCatalog() {
+        return gameBoard.getCatalog();
+    }
 
+    /**
+     * Accepts clients and services each one on a dedicated thread.
+     *
+     * @param gameServer - Game server to service
+     * @param virtual - Service clients on virtual threads instead of platform threads
+     */
+    private static void runThreadPerClient(GameServer gameServer, boolean virtual) {
         ServerSocket ss = null;
         // Initialize a server socket
         try {
@@ -210,10 +869,7 @@ public class GameServer {
             System.exit(1);
         }
 
-        System.out.println("Game server started");
-
-        String ipAddresses = ServerUtils.getAddress();
-        System.out.println("System IP addresses: " + ipAddresses);
+        printStartup();
 
         while(true) {
             Socket s = null;
@@ -222,10 +878,175 @@ public class GameServer {
             }
             catch (IOException e) {
                 System.out.println("ERROR: Failed to accept client connection");
+                continue;
             }
 
-            new GameServerThread(s, gameServer).start();
+            GameServerThread serverThread = new GameServerThread(s, gameServer, virtual);
+            if (!virtual || !ServerUtils.startVirtualThread(serverThread)) {
+                new Thread(serverThread).start();
+            }
         }
+    }
 
+    /**
+     * Accepts clients and hands them round robin to a fixed set of
+     * selector event loops.
+     *
+     * @param gameServer - Game server to service
+     * @param loopCount - Number of event loop threads
+     */
+    private static void runEventLoops(GameServer gameServer, int loopCount) {
+        ServerSocketChannel ssc = null;
+        SelectorServerThread[] loops = new SelectorServerThread[loopCount];
+        try {
+            ssc = ServerSocketChannel.open();
+            ssc.bind(new InetSocketAddress(SERVER_PORT));
+
+            for (int i = 0; i < loopCount; i++) {
+                loops[i] = new SelectorServerThread(gameServer);
+                loops[i].start();
+            }
+        }
+        catch (IOException e) {
+            System.out.println("ERROR: Failed to init server socket");
+            System.exit(1);
+        }
+
+        printStartup();
+        System.out.println("Event loops: " + loopCount);
+
+        int next = 0;
+        while(true) {
+            SocketChannel channel = null;
+            try {
+                channel = ssc.accept();
+            }
+            catch (IOException e) {
+                System.out.println("ERROR: Failed to accept client connection");
+                continue;
+            }
+
+            loops[next].register(channel);
+            next = (next + 1) % loopCount;
+        }
+    }
+
+    /**
+     * Prints server startup details.
+     */
+    private static void printStartup() {
+        System.out.println("Game server started");
+
+        String ipAddresses = ServerUtils.getAddress();
+        System.out.println("System IP addresses: " + ipAddresses);
+    }
+
+    /**
+     * Main function.
+     *
+     * @param args - See USAGE
+     */
+    public static void main(String[] args) {
+        int outboundCapacity = Integer.parseInt(ServerUtils.getOption(args, "-queue",
+                String.valueOf(OutboundQueue.DEFAULT_CAPACITY)));
+        OutboundQueue.Policy slowConsumerPolicy = OutboundQueue.parsePolicy(
+                ServerUtils.getOption(args, "-slow", "drop"));
+        if (slowConsumerPolicy == null) {
+            System.out.println(USAGE);
+            System.exit(1);
+        }
+
+        String boardKind = ServerUtils.getOption(args, "-board", "locked");
+        if (!boardKind.equals("locked") && !boardKind.equals("cas")) {
+            System.out.println(USAGE);
+            System.exit(1);
+        }
+
+        int width = Integer.parseInt(ServerUtils.getOption(args, "-width",
+                String.valueOf(GameBoard.DEFAULT_WIDTH)));
+        int height = Integer.parseInt(ServerUtils.getOption(args, "-height",
+                String.valueOf(GameBoard.DEFAULT_HEIGHT)));
+        if (width > GameBoard.MAX_SIZE || height > GameBoard.MAX_SIZE) {
+            System.out.println("ERROR: Board width and height must be at most " + GameBoard.MAX_SIZE);
+            System.exit(1);
+        }
+        String seedOption = ServerUtils.getOption(args, "-seed", null);
+        long seed = seedOption != null ? Long.parseLong(seedOption) : ThreadLocalRandom.current().nextLong();
+
+        // Initialize game server
+        GameServer gameServer = null;
+        try {
+            gameServer = new GameServer(outboundCapacity, slowConsumerPolicy, boardKind.equals("cas"),
+                                        width, height, seed);
+        }
+        catch (IllegalArgumentException e) {
+            System.out.println("ERROR: " + e.getMessage());
+            System.exit(1);
+        }
+        System.out.println("Board seed: " + seed);
+
+        int reach = Integer.parseInt(ServerUtils.getOption(args, "-aoi", "0"));
+        if (reach > 0) {
+            gameServer.startEvents(reach);
+        }
+
+        String deltas = ServerUtils.getOption(args, "-deltas", "off");
+        if (deltas.equals("on")) {
+            gameServer.startDeltas();
+        }
+        else if (!deltas.equals("off")) {
+            System.out.println(USAGE);
+            System.exit(1);
+        }
+
+        int respawnMillis = Integer.parseInt(ServerUtils.getOption(args, "-respawn", "0"));
+        if (respawnMillis > 0) {
+            gameServer.startRespawns(respawnMillis, seed);
+        }
+
+        String engine = ServerUtils.getOption(args, "-engine", "direct");
+        if (engine.equals("sequencer")) {
+            gameServer.startSequencer(Integer.parseInt(ServerUtils.getOption(args, "-ring",
+                    String.valueOf(SequencerThread.DEFAULT_RING_SIZE))));
+        }
+        else if (engine.equals("tick")) {
+            gameServer.startTickEngine(Integer.parseInt(ServerUtils.getOption(args, "-tick",
+                    String.valueOf(TickEngineThread.DEFAULT_TICK_MILLIS))),
+                    Runtime.getRuntime().availableProcessors());
+        }
+        else if (!engine.equals("direct")) {
+            System.out.println(USAGE);
+            System.exit(1);
+        }
+
+        String mode = ServerUtils.getOption(args, "-mode", "thread");
+        switch (mode) {
+            case "thread":
+                runThreadPerClient(gameServer, false);
+                break;
+
+            case "virtual":
+                if (!ServerUtils.isVirtualThreadSupported()) {
+                    System.out.println("ERROR: Virtual threads need Java 21 or later");
+                    System.exit(1);
+                }
+                runThreadPerClient(gameServer, true);
+                break;
+
+            case "nio":
+                // Event loops must not wait a tick for every command
+                if (engine.equals("tick")) {
+                    System.out.println("ERROR: The tick engine needs a thread per client, use -mode thread or virtual");
+                    System.exit(1);
+                }
+                int loopCount = Integer.parseInt(ServerUtils.getOption(args, "-loops",
+                        String.valueOf(Runtime.getRuntime().availableProcessors())));
+                runEventLoops(gameServer, loopCount);
+                break;
+
+            default:
+                System.out.println(USAGE);
+                System.exit(1);
+        }
     }
 }
@@ -0,0 +1,147 @@
+package ipc_server.interfaces;
+
+import ipc_server.utils.BoardDetails;
+import ipc_server.utils.PlayerSnapshot;
+import ipc_server.utils.PokemonCatalog;
+import ipc_server.utils.PokemonSack;
+import ipc_server.utils.Position;
+import ipc_server.utils.ScanDetails;
+
+public interface Board {
+    /**
+     * Adds given player at a random position.
+     *
+     * @param id - Player ID
+     */
+    void addPlayer(int id);
+
+    /**
+     * Remove given player.
+     *
+     * @param id - Player ID
+     */
+    void removePlayer(int id);
+
+    /**
+     * Moves a player in given direction by spaces.
+     *
+     * @param id - Player ID
+     * @param direction - Direction to move in
+     * @param spaces - Number of spaces to move
+     * @return int - 0 - Success
+     *               1 - Player does not exist
+     *               2 - New position beyond board
+     *               3 - New position occupied by another player
+     */
+    int move(int id, String direction, int spaces);
+
+    /**
+     * Captures the pokemon at a players position and adds it to the
+     * players sack.
+     *
+     * @param id - Player ID
+     * @return int - 0 - Success
+     *               1 - Failure
+     */
+    int capturePokemon(int id);
+
+    /**
+     * Returns the locking region a players move stays within. Commands
+     * touching different regions may be applied in parallel.
+     *
+     * @param id - Player ID
+     * @param direction - Direction of a move, null for the region holding the player
+     * @param spaces - Number of spaces of a move
+     * @return int - -1 if the player does not exist or the move crosses into another region
+     */
+    int getRegion(int id, String direction, int spaces);
+
+    /**
+     * Puts a pokemon in a cell holding neither a pokemon nor a player.
+     * Boards changing cells without locks may publish the spawn to scans
+     * a little after it lands, but never leave a pokemon spawned under a
+     * player moving in alongside.
+     *
+     * @param x - x coordinate value
+     * @param y - y coordinate value
+     * @param pokemon - Catalog ID
+     * @return boolean - false if the cell is not empty or beyond board
+     */
+    boolean spawnPokemon(int x, int y, short pokemon);
+
+    /**
+     * Check if winner has been found.
+     *
+     * @return boolean
+     */
+    boolean isWinnerFound();
+
+    /**
+     * Returns a players position.
+     *
+     * @param id - Player ID
+     * @return Position - null if player does not exist
+     */
+    Position getPlayerPos(int id);
+
+    /**
+     * Returns pokemons captured by a player.
+     *
+     * @param id - Player ID
+     * @return PokemonSack
+     */
+    PokemonSack getPlayerPokemons(int id);
+
+    /**
+     * Returns version of a players state. It starts at 1 when the player
+     * joins and goes up with every move and capture of the player.
+     *
+     * @param id - Player ID
+     * @return int - 0 if the player does not exist
+     */
+    int getPlayerVersion(int id);
+
+    /**
+     * Returns immutable state of a player, safe to read alongside moves
+     * and captures of the player.
+     *
+     * @param id - Player ID
+     * @return PlayerSnapshot - null if player does not exist
+     */
+    PlayerSnapshot getPlayerSnapshot(int id);
+
+    /**
+     * Returns pokemon at given position if any.
+     *
+     * @param pos - Position on board
+     * @return int - Catalog ID, NO_POKEMON if there is none
+     */
+    int getPokemon(Position pos);
+
+    /**
+     * Returns the pokemons at most radius cells away from a position along
+     * both axes, looked up in a spatial index rather than the whole board.
+     * Boards changing cells without locks may bring the index up to date
+     * a little after a racing capture or spawn.
+     *
+     * @param x - x coordinate value
+     * @param y - y coordinate value
+     * @param radius - Greatest distance along each axis, not negative
+     * @return ScanDetails
+     */
+    ScanDetails scanPokemons(int x, int y, int radius);
+
+    /**
+     * Returns catalog of all pokemons.
+     *
+     * @return PokemonCatalog
+     */
+    PokemonCatalog getCatalog();
+
+    /**
+     * Return details of the game board.
+     *
+     * @return BoardDetails
+     */
+    BoardDetails getDetails();
+}
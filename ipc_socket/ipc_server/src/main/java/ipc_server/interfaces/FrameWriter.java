@@ -0,0 +1,17 @@
+package ipc_server.interfaces;
+
+public interface FrameWriter {
+    /**
+     * Writes an already encoded reply to the associated client.
+     *
+     * @param data - Encoded message
+     */
+    void write(byte[] data);
+
+    /**
+     * Queues an already encoded push from another player without blocking.
+     *
+     * @param data - Encoded message
+     */
+    void push(byte[] data);
+}
@@ -0,0 +1,19 @@
+package ipc_server.interfaces;
+
+import ipc_server.utils.BoardDelta;
+
+public interface PlayerConnection {
+    /**
+     * Sends given message to associated client.
+     *
+     * @param msg - Message to send
+     */
+    void sendMsg(String msg);
+
+    /**
+     * Sends given board change to associated client, if subscribed.
+     *
+     * @param delta - Board change
+     */
+    void sendDelta(BoardDelta delta);
+}
@@ -0,0 +1,223 @@
+package ipc_server.protocol;
+
+import ipc_server.utils.BoardDelta;
+import ipc_server.utils.BoardDetails;
+import ipc_server.utils.BoardSnapshot;
+import ipc_server.utils.PlayerDetails;
+import ipc_server.utils.PokemonCatalog;
+import ipc_server.utils.ScanDetails;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Length prefixed binary protocol. See Protocol for the frame layout.
+ */
+public class BinaryCodec implements Codec {
+    @Override
+    public byte[] encodeMessage(String msg) {
+        byte[] text = msg.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = Protocol.newFrame(Protocol.OP_MESSAGE, 1 + text.length);
+        Protocol.putVarInt(buffer, 0);
+        buffer.put(text);
+        return buffer.array();
+    }
+
+    @Override
+    public byte[] encodeStatus(int requestID, int status) {
+        ByteBuffer buffer = Protocol.newFrame(Protocol.OP_STATUS, Protocol.varIntSize(requestID) + 1);
+        Protocol.putVarInt(buffer, requestID);
+        buffer.put((byte) status);
+        return buffer.array();
+    }
+
+    @Override
+    public byte[] encodeDetails(int requestID, int status, PlayerDetails details) {
+        ByteBuffer buffer = Protocol.newFrame(Protocol.OP_DETAILS,
+                                              Protocol.varIntSize(requestID) + detailsSize(details));
+        Protocol.putVarInt(buffer, requestID);
+        putDetails(buffer, status, details);
+        return buffer.array();
+    }
+
+    @Override
+    public byte[] encodeJoin(int requestID, BoardDetails board, PlayerDetails details) {
+        int length = Protocol.varIntSize(requestID) +
+                     Protocol.varIntSize(board.getWidth()) +
+                     Protocol.varIntSize(board.getHeight()) +
+                     Protocol.varIntSize(board.getPokemonCount()) +
+                     Protocol.varIntSize(board.getWinnerPokemons()) +
+                     detailsSize(details);
+
+        ByteBuffer buffer = Protocol.newFrame(Protocol.OP_JOIN_REPLY, length);
+        Protocol.putVarInt(buffer, requestID);
+        Protocol.putVarInt(buffer, board.getWidth());
+        Protocol.putVarInt(buffer, board.getHeight());
+        Protocol.putVarInt(buffer, board.getPokemonCount());
+        Protocol.putVarInt(buffer, board.getWinnerPokemons());
+        putDetails(buffer, Protocol.STATUS_OK, details);
+        return buffer.array();
+    }
+
+    @Override
+    public byte[] encodeScan(int requestID, ScanDetails scan) {
+        // Position scanned around, radius, count and then position and ID of each pokemon
+        int length = Protocol.varIntSize(requestID) +
+                     Protocol.varIntSize(Protocol.packPosition(scan.getX(), scan.getY())) +
+                     Protocol.varIntSize(scan.getRadius()) +
+                     Protocol.varIntSize(scan.getCount());
+        for (int i = 0; i < scan.getCount(); i++) {
+            length += Protocol.varIntSize(Protocol.packPosition(scan.getPokemonX(i), scan.getPokemonY(i))) +
+                      Protocol.varIntSize(scan.getPokemonID(i));
+        }
+
+        ByteBuffer buffer = Protocol.newFrame(Protocol.OP_SCAN_REPLY, length);
+        Protocol.putVarInt(buffer, requestID);
+        Protocol.putVarInt(buffer, Protocol.packPosition(scan.getX(), scan.getY()));
+        Protocol.putVarInt(buffer, scan.getRadius());
+        Protocol.putVarInt(buffer, scan.getCount());
+        for (int i = 0; i < scan.getCount(); i++) {
+            Protocol.putVarInt(buffer, Protocol.packPosition(scan.getPokemonX(i), scan.getPokemonY(i)));
+            Protocol.putVarInt(buffer, scan.getPokemonID(i));
+        }
+        return buffer.array();
+    }
+
+    @Override
+    public byte[] encodeSnapshot(int requestID, BoardSnapshot snapshot) {
+        // Version, board size, position and ID of each pokemon, then ID and position of each player
+        ScanDetails pokemons = snapshot.getPokemons();
+        int length = Protocol.varIntSize(requestID) +
+                     Protocol.varLongSize(snapshot.getVersion()) +
+                     Protocol.varIntSize(snapshot.getBoard().getWidth()) +
+                     Protocol.varIntSize(snapshot.getBoard().getHeight()) +
+                     Protocol.varIntSize(pokemons.getCount()) +
+                     Protocol.varIntSize(snapshot.getPlayerCount());
+        for (int i = 0; i < pokemons.getCount(); i++) {
+            length += Protocol.varIntSize(Protocol.packPosition(pokemons.getPokemonX(i), pokemons.getPokemonY(i))) +
+                      Protocol.varIntSize(pokemons.getPokemonID(i));
+        }
+        for (int i = 0; i < snapshot.getPlayerCount(); i++) {
+            length += Protocol.varIntSize(snapshot.getPlayerID(i)) +
+                      Protocol.varIntSize(Protocol.packPosition(snapshot.getPlayerX(i), snapshot.getPlayerY(i)));
+        }
+
+        ByteBuffer buffer = Protocol.newFrame(Protocol.OP_SNAPSHOT, length);
+        Protocol.putVarInt(buffer, requestID);
+        Protocol.putVarLong(buffer, snapshot.getVersion());
+        Protocol.putVarInt(buffer, snapshot.getBoard().getWidth());
+        Protocol.putVarInt(buffer, snapshot.getBoard().getHeight());
+        Protocol.putVarInt(buffer, pokemons.getCount());
+        for (int i = 0; i < pokemons.getCount(); i++) {
+            Protocol.putVarInt(buffer, Protocol.packPosition(pokemons.getPokemonX(i), pokemons.getPokemonY(i)));
+            Protocol.putVarInt(buffer, pokemons.getPokemonID(i));
+        }
+        Protocol.putVarInt(buffer, snapshot.getPlayerCount());
+        for (int i = 0; i < snapshot.getPlayerCount(); i++) {
+            Protocol.putVarInt(buffer, snapshot.getPlayerID(i));
+            Protocol.putVarInt(buffer, Protocol.packPosition(snapshot.getPlayerX(i), snapshot.getPlayerY(i)));
+        }
+        return buffer.array();
+    }
+
+    @Override
+    public byte[] encodeDelta(BoardDelta delta) {
+        // Version and kind, then player and packed position, packed position and pokemon ID for
+        // spawns or only the player for leaves
+        int position = Protocol.packPosition(delta.getX(), delta.getY());
+        int length = 1 + Protocol.varLongSize(delta.getVersion()) + 1;
+        if (delta.getKind() == BoardDelta.SPAWNED) {
+            length += Protocol.varIntSize(position) + Protocol.varIntSize(delta.getPokemonID());
+        }
+        else if (delta.getKind() == BoardDelta.LEFT) {
+            length += Protocol.varIntSize(delta.getPlayerID());
+        }
+        else {
+            length += Protocol.varIntSize(delta.getPlayerID()) + Protocol.varIntSize(position);
+        }
+
+        ByteBuffer buffer = Protocol.newFrame(Protocol.OP_DELTA, length);
+        Protocol.putVarInt(buffer, 0);
+        Protocol.putVarLong(buffer, delta.getVersion());
+        buffer.put((byte) delta.getKind());
+        if (delta.getKind() == BoardDelta.SPAWNED) {
+            Protocol.putVarInt(buffer, position);
+            Protocol.putVarInt(buffer, delta.getPokemonID());
+        }
+        else if (delta.getKind() == BoardDelta.LEFT) {
+            Protocol.putVarInt(buffer, delta.getPlayerID());
+        }
+        else {
+            Protocol.putVarInt(buffer, delta.getPlayerID());
+            Protocol.putVarInt(buffer, position);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Encodes the pokemon catalog so clients can resolve pokemon IDs.
+     *
+     * @param requestID - ID of request replied to
+     * @param catalog - Catalog of all pokemons
+     * @return byte[]
+     */
+    public byte[] encodeCatalog(int requestID, PokemonCatalog catalog) {
+        int length = Protocol.varIntSize(requestID) + Protocol.varIntSize(catalog.size());
+        for (int i = 0; i < catalog.size(); i++) {
+            int nameLength = catalog.getNameBytes(i).length;
+            length += Protocol.varIntSize(nameLength) + nameLength;
+        }
+
+        ByteBuffer buffer = Protocol.newFrame(Protocol.OP_CATALOG_REPLY, length);
+        Protocol.putVarInt(buffer, requestID);
+        Protocol.putVarInt(buffer, catalog.size());
+        for (int i = 0; i < catalog.size(); i++) {
+            byte[] name = catalog.getNameBytes(i);
+            Protocol.putVarInt(buffer, name.length);
+            buffer.put(name);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Returns encoded size of player details.
+     *
+     * @param details - Player details
+     * @return int
+     */
+    private static int detailsSize(PlayerDetails details) {
+        int[] pokemonIDs = details.getPokemonIDs();
+        int size = 1 +
+                   Protocol.varIntSize(details.getId()) +
+                   Protocol.varIntSize(Protocol.packPosition(details.getX(), details.getY())) +
+                   Protocol.varIntSize(pokemonIDs.length) +
+                   Protocol.varIntSize(details.getPokemonAtPosID() + 1) +
+                   Protocol.varIntSize(details.getVersion());
+        for (int pokemonID : pokemonIDs) {
+            size += Protocol.varIntSize(pokemonID);
+        }
+        return size;
+    }
+
+    /**
+     * Writes status, player ID, packed position, captured pokemon IDs, the
+     * ID of pokemon at players position plus one (0 if none) and the
+     * version of the players state.
+     *
+     * @param buffer - Destination buffer
+     * @param status - Reply status
+     * @param details - Player details
+     */
+    private static void putDetails(ByteBuffer buffer, int status, PlayerDetails details) {
+        int[] pokemonIDs = details.getPokemonIDs();
+        buffer.put((byte) status);
+        Protocol.putVarInt(buffer, details.getId());
+        Protocol.putVarInt(buffer, Protocol.packPosition(details.getX(), details.getY()));
+        Protocol.putVarInt(buffer, pokemonIDs.length);
+        for (int pokemonID : pokemonIDs) {
+            Protocol.putVarInt(buffer, pokemonID);
+        }
+        Protocol.putVarInt(buffer, details.getPokemonAtPosID() + 1);
+        Protocol.putVarInt(buffer, details.getVersion());
+    }
+}
@@ -0,0 +1,74 @@
+package ipc_server.protocol;
+
+import ipc_server.utils.BoardDelta;
+import ipc_server.utils.BoardDetails;
+import ipc_server.utils.BoardSnapshot;
+import ipc_server.utils.PlayerDetails;
+import ipc_server.utils.ScanDetails;
+
+public interface Codec {
+    /**
+     * Encodes a free text message pushed outside of any request, e.g. a
+     * broadcast.
+     *
+     * @param msg - Message
+     * @return byte[]
+     */
+    byte[] encodeMessage(String msg);
+
+    /**
+     * Encodes a reply that only carries a status code.
+     *
+     * @param requestID - ID of request replied to, 0 if none
+     * @param status - One of Protocol.STATUS_*
+     * @return byte[]
+     */
+    byte[] encodeStatus(int requestID, int status);
+
+    /**
+     * Encodes a reply carrying player details.
+     *
+     * @param requestID - ID of request replied to, 0 if none
+     * @param status - Protocol.STATUS_OK or Protocol.STATUS_WINNER
+     * @param details - Player details
+     * @return byte[]
+     */
+    byte[] encodeDetails(int requestID, int status, PlayerDetails details);
+
+    /**
+     * Encodes the reply to a join.
+     *
+     * @param requestID - ID of request replied to, 0 if none
+     * @param board - Board details
+     * @param details - Details of joined player
+     * @return byte[]
+     */
+    byte[] encodeJoin(int requestID, BoardDetails board, PlayerDetails details);
+
+    /**
+     * Encodes the reply to a scan.
+     *
+     * @param requestID - ID of request replied to, 0 if none
+     * @param scan - Pokemons found
+     * @return byte[]
+     */
+    byte[] encodeScan(int requestID, ScanDetails scan);
+
+    /**
+     * Encodes the reply to a subscription.
+     *
+     * @param requestID - ID of request replied to, 0 if none
+     * @param snapshot - Board the delta stream starts from
+     * @return byte[]
+     */
+    byte[] encodeSnapshot(int requestID, BoardSnapshot snapshot);
+
+    /**
+     * Encodes a board change pushed to a subscriber. Called by the thread
+     * making the change, so it must not touch any state of the codec.
+     *
+     * @param delta - Board change
+     * @return byte[]
+     */
+    byte[] encodeDelta(BoardDelta delta);
+}
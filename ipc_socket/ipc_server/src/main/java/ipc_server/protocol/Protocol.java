@@ -0,0 +1,251 @@
+package ipc_server.protocol;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+
+/**
+ * Constants and helpers of the binary wire protocol.
+ *
+ * A client switches a connection to the binary protocol by sending the
+ * text line NEGOTIATE_LINE and waiting for the same line back. After that
+ * every message in both directions is a frame:
+ *
+ *   opcode (1 byte) | payload length (varint) | payload
+ *
+ * Integers inside payloads are unsigned LEB128 varints. Every payload
+ * starts with a varint request ID chosen by the client and echoed in the
+ * reply, so clients may pipeline requests. Pushes carry request ID 0.
+ */
+public class Protocol {
+    /**
+     * Text line used to switch a connection to the binary protocol.
+     */
+    public static final String NEGOTIATE_LINE = "protocol binary";
+
+    /**
+     * Longest request payload, or text command line, a client may send.
+     * Requests are a few bytes, so anything longer is not a client.
+     */
+    public static final int MAX_FRAME_LENGTH = 1 << 16;
+
+    /**
+     * Most bytes an int takes as varint.
+     */
+    private static final int MAX_VARINT_SIZE = 5;
+
+    /*
+     * Request opcodes.
+     */
+    public static final int OP_JOIN      = 0x01;
+    public static final int OP_LEAVE     = 0x02;
+    public static final int OP_MOVE      = 0x03;
+    public static final int OP_CAPTURE   = 0x04;
+    public static final int OP_SHOW      = 0x05;
+    public static final int OP_CATALOG   = 0x06;
+    public static final int OP_SCAN      = 0x07;
+    public static final int OP_SUBSCRIBE = 0x08;
+
+    /*
+     * Reply opcodes.
+     */
+    public static final int OP_STATUS       = 0x40;
+    public static final int OP_DETAILS      = 0x41;
+    public static final int OP_JOIN_REPLY   = 0x42;
+    public static final int OP_MESSAGE      = 0x43;
+    public static final int OP_CATALOG_REPLY = 0x44;
+    public static final int OP_SCAN_REPLY    = 0x45;
+    public static final int OP_SNAPSHOT      = 0x46;
+    public static final int OP_DELTA         = 0x47;
+
+    /*
+     * Reply status codes. The first four match the return values of
+     * GameServer.movePlayer.
+     */
+    public static final int STATUS_OK             = 0;
+    public static final int STATUS_NO_PLAYER      = 1;
+    public static final int STATUS_BEYOND_BOARD   = 2;
+    public static final int STATUS_OCCUPIED       = 3;
+    public static final int STATUS_NO_POKEMON     = 4;
+    public static final int STATUS_WINNER         = 5;
+    public static final int STATUS_NOT_JOINED     = 6;
+    public static final int STATUS_ALREADY_JOINED = 7;
+    public static final int STATUS_LEFT           = 8;
+    public static final int STATUS_GAME_OVER      = 9;
+    public static final int STATUS_UNSUPPORTED    = 10;
+    public static final int STATUS_MOVE_FAILED    = 11;
+    public static final int STATUS_NOT_MODIFIED   = 12;
+
+    /**
+     * Directions indexed by their direction byte.
+     */
+    public static final String[] DIRECTIONS = {"up", "down", "left", "right"};
+
+    /**
+     * Packs a position into a single integer.
+     *
+     * @param x - x coordinate value
+     * @param y - y coordinate value
+     * @return int
+     */
+    public static int packPosition(int x, int y) {
+        return (x << 16) | (y & 0xFFFF);
+    }
+
+    /**
+     * Returns number of bytes needed to encode value as varint.
+     *
+     * @param value - Value to encode
+     * @return int
+     */
+    public static int varIntSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * Writes value as varint.
+     *
+     * @param buffer - Destination buffer
+     * @param value - Value to write
+     */
+    public static void putVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Returns number of bytes needed to encode a long value as varint.
+     *
+     * @param value - Value to encode
+     * @return int
+     */
+    public static int varLongSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * Writes a long value as varint.
+     *
+     * @param buffer - Destination buffer
+     * @param value - Value to write
+     */
+    public static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Reads a varint.
+     *
+     * @param buffer - Source buffer
+     * @return int
+     * @throws java.nio.BufferUnderflowException - If buffer ends within the varint
+     * @throws IllegalArgumentException - If varint is longer than an int
+     */
+    public static int getVarInt(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift == 7 * MAX_VARINT_SIZE) {
+                throw new IllegalArgumentException("Malformed varint");
+            }
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        }
+        while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * Reads a varint from a stream.
+     *
+     * @param in - Source stream
+     * @return int
+     * @throws IOException - If stream ends or fails, or varint is longer than an int
+     */
+    public static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            if (shift == 7 * MAX_VARINT_SIZE) {
+                throw new ProtocolException("Malformed varint");
+            }
+            b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        }
+        while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * Returns total length of the frame starting at offset, if it has been
+     * fully received.
+     *
+     * @param data - Received bytes
+     * @param offset - Start of frame
+     * @param length - Number of received bytes from offset
+     * @return int - -1 if frame is incomplete
+     * @throws ProtocolException - If length header is malformed or above MAX_FRAME_LENGTH
+     */
+    public static int frameLength(byte[] data, int offset, int length) throws ProtocolException {
+        int payloadLength = 0;
+        int shift = 0;
+        int pos = 1;
+        while (true) {
+            if (shift == 7 * MAX_VARINT_SIZE) {
+                throw new ProtocolException("Malformed frame length");
+            }
+            if (pos >= length) {
+                return -1;
+            }
+            byte b = data[offset + pos++];
+            payloadLength |= (b & 0x7F) << shift;
+            shift += 7;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+        }
+
+        if (payloadLength < 0 || payloadLength > MAX_FRAME_LENGTH) {
+            throw new ProtocolException("Frame too long");
+        }
+
+        int total = pos + payloadLength;
+        return total <= length ? total : -1;
+    }
+
+    /**
+     * Allocates a frame buffer with opcode and length header written.
+     *
+     * @param opcode - Frame opcode
+     * @param payloadLength - Length of payload to follow
+     * @return ByteBuffer
+     */
+    public static ByteBuffer newFrame(int opcode, int payloadLength) {
+        ByteBuffer buffer = ByteBuffer.allocate(1 + varIntSize(payloadLength) + payloadLength);
+        buffer.put((byte) opcode);
+        putVarInt(buffer, payloadLength);
+        return buffer;
+    }
+}
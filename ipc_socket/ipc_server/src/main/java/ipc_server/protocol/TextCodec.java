@@ -0,0 +1,361 @@
+package ipc_server.protocol;
+
+import ipc_server.utils.BoardDelta;
+import ipc_server.utils.BoardDetails;
+import ipc_server.utils.BoardSnapshot;
+import ipc_server.utils.PlayerDetails;
+import ipc_server.utils.PokemonCatalog;
+import ipc_server.utils.ScanDetails;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Newline terminated text protocol. Multi line replies have their
+ * newlines replaced by '~'. Replies to commands sent with a "#<id> "
+ * prefix carry the same prefix.
+ *
+ * Replies are written straight into a reused buffer, so the only
+ * allocation per reply is the encoded message itself. Pokemon names are
+ * copied from their precomputed catalog encoding. Status replies
+ * without a request ID are shared constants. Replies are encoded by the
+ * thread servicing the session only, pushes from other threads go through
+ * encodeMessage and encodeDelta which do not touch the buffer. Deltas are
+ * single lines starting with "@<version> ".
+ */
+public class TextCodec implements Codec {
+    /**
+     * Initial size of the reply buffer.
+     */
+    private static final int BUFFER_SIZE = 256;
+
+    /**
+     * Encoded status replies indexed by status code, without request ID.
+     */
+    private static final byte[][] STATUS_REPLIES = new byte[Protocol.STATUS_NOT_MODIFIED + 1][];
+
+    static {
+        for (int status = 0; status < STATUS_REPLIES.length; status++) {
+            STATUS_REPLIES[status] = (statusMessage(status) + "\n").getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /*
+     * Fixed parts of multi line replies.
+     */
+    private static final byte[] PLAYER_ID       = ascii("Player ID: ");
+    private static final byte[] POSITION        = ascii("~Position: (");
+    private static final byte[] CAPTURED        = ascii(")~Captured Pokemons: [");
+    private static final byte[] AT_POSITION     = ascii("]~Pokemon at current position: ");
+    private static final byte[] VERSION_LINE    = ascii("~Version: ");
+    private static final byte[] WINNER          = ascii("~You have won the game! Congratulations!");
+    private static final byte[] BOARD_SIZE      = ascii("Board size: (");
+    private static final byte[] POKEMON_COUNT   = ascii(")~Number of pokemons: ");
+    private static final byte[] FIRST_PLAYER    = ascii("~First player to capture ");
+    private static final byte[] GOOD_LUCK       = ascii(" pokemons wins! Good luck~");
+    private static final byte[] SCAN_RADIUS     = ascii("Pokemons within ");
+    private static final byte[] SCAN_CENTER     = ascii(" of (");
+    private static final byte[] SCAN_COUNT      = ascii("): ");
+    private static final byte[] SCAN_POSITION   = ascii("~(");
+    private static final byte[] SCAN_POKEMON    = ascii(") ");
+    private static final byte[] VERSION         = ascii("Board version: ");
+    private static final byte[] SNAPSHOT_SIZE   = ascii("~Board size: (");
+    private static final byte[] POKEMONS        = ascii(")~Pokemons: ");
+    private static final byte[] PLAYERS         = ascii("~Players: ");
+    private static final byte[] PLAYER          = ascii("~Player-");
+    private static final byte[] PLAYER_POSITION = ascii(" (");
+    private static final byte[] PLAYER_END      = ascii(")");
+    private static final byte[] SEPARATOR       = ascii(", ");
+    private static final byte[] NO_POKEMON      = ascii("-");
+
+    /**
+     * Reply being encoded.
+     */
+    private byte[] buffer;
+
+    /**
+     * Number of valid bytes in buffer.
+     */
+    private int length;
+
+    /**
+     * Constructor.
+     */
+    public TextCodec() {
+        buffer = new byte[BUFFER_SIZE];
+        length = 0;
+    }
+
+    @Override
+    public byte[] encodeMessage(String msg) {
+        return (msg + "\n").getBytes();
+    }
+
+    @Override
+    public byte[] encodeStatus(int requestID, int status) {
+        if (status < 0 || status >= STATUS_REPLIES.length) {
+            status = Protocol.STATUS_MOVE_FAILED;
+        }
+        if (requestID == 0) {
+            return STATUS_REPLIES[status];
+        }
+
+        start(requestID);
+        put(STATUS_REPLIES[status]);
+        return Arrays.copyOf(buffer, length);
+    }
+
+    @Override
+    public byte[] encodeDetails(int requestID, int status, PlayerDetails details) {
+        start(requestID);
+        putDetails(details);
+        if (status == Protocol.STATUS_WINNER) {
+            put(WINNER);
+        }
+        return finish();
+    }
+
+    @Override
+    public byte[] encodeJoin(int requestID, BoardDetails board, PlayerDetails details) {
+        start(requestID);
+        put(BOARD_SIZE);
+        putInt(board.getWidth());
+        put(SEPARATOR);
+        putInt(board.getHeight());
+        put(POKEMON_COUNT);
+        putInt(board.getPokemonCount());
+        put(FIRST_PLAYER);
+        putInt(board.getWinnerPokemons());
+        put(GOOD_LUCK);
+        putDetails(details);
+        return finish();
+    }
+
+    @Override
+    public byte[] encodeScan(int requestID, ScanDetails scan) {
+        start(requestID);
+        put(SCAN_RADIUS);
+        putInt(scan.getRadius());
+        put(SCAN_CENTER);
+        putInt(scan.getX());
+        put(SEPARATOR);
+        putInt(scan.getY());
+        put(SCAN_COUNT);
+        putInt(scan.getCount());
+        PokemonCatalog catalog = scan.getCatalog();
+        for (int i = 0; i < scan.getCount(); i++) {
+            put(SCAN_POSITION);
+            putInt(scan.getPokemonX(i));
+            put(SEPARATOR);
+            putInt(scan.getPokemonY(i));
+            put(SCAN_POKEMON);
+            put(catalog.getNameBytes(scan.getPokemonID(i)));
+        }
+        return finish();
+    }
+
+    @Override
+    public byte[] encodeSnapshot(int requestID, BoardSnapshot snapshot) {
+        start(requestID);
+        put(VERSION);
+        put(ascii(Long.toString(snapshot.getVersion())));
+        put(SNAPSHOT_SIZE);
+        putInt(snapshot.getBoard().getWidth());
+        put(SEPARATOR);
+        putInt(snapshot.getBoard().getHeight());
+        put(POKEMONS);
+        ScanDetails pokemons = snapshot.getPokemons();
+        PokemonCatalog catalog = pokemons.getCatalog();
+        putInt(pokemons.getCount());
+        for (int i = 0; i < pokemons.getCount(); i++) {
+            put(SCAN_POSITION);
+            putInt(pokemons.getPokemonX(i));
+            put(SEPARATOR);
+            putInt(pokemons.getPokemonY(i));
+            put(SCAN_POKEMON);
+            put(catalog.getNameBytes(pokemons.getPokemonID(i)));
+        }
+        put(PLAYERS);
+        putInt(snapshot.getPlayerCount());
+        for (int i = 0; i < snapshot.getPlayerCount(); i++) {
+            put(PLAYER);
+            putInt(snapshot.getPlayerID(i));
+            put(PLAYER_POSITION);
+            putInt(snapshot.getPlayerX(i));
+            put(SEPARATOR);
+            putInt(snapshot.getPlayerY(i));
+            put(PLAYER_END);
+        }
+        return finish();
+    }
+
+    @Override
+    public byte[] encodeDelta(BoardDelta delta) {
+        StringBuilder ret = new StringBuilder();
+        ret.append('@').append(delta.getVersion()).append(' ');
+        String position = "(" + delta.getX() + ", " + delta.getY() + ")";
+        switch (delta.getKind()) {
+            case BoardDelta.JOINED:
+                ret.append("joined ").append(delta.getPlayerID()).append(' ').append(position);
+                break;
+
+            case BoardDelta.LEFT:
+                ret.append("left ").append(delta.getPlayerID());
+                break;
+
+            case BoardDelta.MOVED:
+                ret.append("moved ").append(delta.getPlayerID()).append(' ').append(position);
+                break;
+
+            case BoardDelta.CAPTURED:
+                ret.append("captured ").append(delta.getPlayerID()).append(' ').append(position);
+                break;
+
+            default:
+                ret.append("spawned ").append(position).append(' ')
+                   .append(delta.getCatalog().getName(delta.getPokemonID()));
+                break;
+        }
+        return ret.append('\n').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes player details, one '~' separated line per field.
+     *
+     * @param details - Player details
+     */
+    private void putDetails(PlayerDetails details) {
+        put(PLAYER_ID);
+        putInt(details.getId());
+        put(POSITION);
+        putInt(details.getX());
+        put(SEPARATOR);
+        putInt(details.getY());
+        put(CAPTURED);
+        PokemonCatalog catalog = details.getCatalog();
+        int[] pokemonIDs = details.getPokemonIDs();
+        for (int i = 0; i < pokemonIDs.length; i++) {
+            if (i > 0) {
+                put(SEPARATOR);
+            }
+            put(catalog.getNameBytes(pokemonIDs[i]));
+        }
+        put(AT_POSITION);
+        if (details.getPokemonAtPosID() != PokemonCatalog.NO_POKEMON) {
+            put(catalog.getNameBytes(details.getPokemonAtPosID()));
+        }
+        else {
+            put(NO_POKEMON);
+        }
+        put(VERSION_LINE);
+        putInt(details.getVersion());
+    }
+
+    /**
+     * Resets the buffer and writes the request ID prefix if any.
+     *
+     * @param requestID - ID of request replied to, 0 if none
+     */
+    private void start(int requestID) {
+        length = 0;
+        if (requestID != 0) {
+            ensure(1);
+            buffer[length++] = '#';
+            putInt(requestID);
+            ensure(1);
+            buffer[length++] = ' ';
+        }
+    }
+
+    /**
+     * Terminates the reply and copies it out of the buffer.
+     *
+     * @return byte[]
+     */
+    private byte[] finish() {
+        ensure(1);
+        buffer[length++] = '\n';
+        return Arrays.copyOf(buffer, length);
+    }
+
+    /**
+     * Appends bytes.
+     *
+     * @param bytes - Bytes to append
+     */
+    private void put(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    /**
+     * Appends an integer in decimal.
+     *
+     * @param value - Value to append
+     */
+    private void putInt(int value) {
+        ensure(11);
+        if (value < 0) {
+            if (value == Integer.MIN_VALUE) {
+                put(ascii(Integer.toString(value)));
+                return;
+            }
+            buffer[length++] = '-';
+            value = -value;
+        }
+
+        int digits = 1;
+        for (int v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        for (int i = length + digits - 1; i >= length; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        length += digits;
+    }
+
+    /**
+     * Grows the buffer to fit more bytes.
+     *
+     * @param more - Number of bytes about to be appended
+     */
+    private void ensure(int more) {
+        if (length + more > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + more));
+        }
+    }
+
+    /**
+     * Returns text of a status only reply.
+     *
+     * @param status - One of Protocol.STATUS_*
+     * @return String
+     */
+    private static String statusMessage(int status) {
+        switch (status) {
+            case Protocol.STATUS_NO_PLAYER: return "Player does not exist.";
+            case Protocol.STATUS_BEYOND_BOARD: return "Can't move there. Position beyond board limits.";
+            case Protocol.STATUS_OCCUPIED: return "Can't move there. Position occupied by another player.";
+            case Protocol.STATUS_NO_POKEMON: return "No pokemon at position";
+            case Protocol.STATUS_NOT_JOINED: return "Join a game before using this command";
+            case Protocol.STATUS_ALREADY_JOINED: return "Player already joined";
+            case Protocol.STATUS_LEFT: return "Player left";
+            case Protocol.STATUS_GAME_OVER: return "Games over on this server. Please wait for server to restart.";
+            case Protocol.STATUS_UNSUPPORTED: return "Server does not support this command yet";
+            case Protocol.STATUS_NOT_MODIFIED: return "Player unchanged";
+            default: return "Can't move to this position.";
+        }
+    }
+
+    /**
+     * Returns ASCII bytes of a constant.
+     *
+     * @param s - Constant
+     * @return byte[]
+     */
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,284 @@
+package ipc_server.protocol;
+
+/**
+ * Parses text protocol command lines straight from the receive buffer.
+ *
+ * A parser is reused for every line of a connection and keeps the result
+ * of the last parse in its fields, so parsing allocates nothing.
+ */
+public class TextCommandParser {
+    /**
+     * Opcode of a line that is not a supported command.
+     */
+    public static final int UNKNOWN = -1;
+
+    /**
+     * Opcode of the binary protocol negotiation line.
+     */
+    public static final int NEGOTIATE = 0;
+
+    /*
+     * Command words and arguments.
+     */
+    private static final byte[] MOVE     = bytes("move");
+    private static final byte[] CAPTURE  = bytes("capture");
+    private static final byte[] SHOW     = bytes("show");
+    private static final byte[] SCAN     = bytes("scan");
+    private static final byte[] SUBSCRIBE = bytes("subscribe");
+    private static final byte[] JOIN     = bytes("join");
+    private static final byte[] LEAVE    = bytes("leave");
+    private static final byte[] PROTOCOL = bytes("protocol");
+    private static final byte[] BINARY   = bytes("binary");
+
+    /**
+     * Directions indexed by their direction byte.
+     */
+    private static final byte[][] DIRECTIONS = {bytes("up"), bytes("down"), bytes("left"), bytes("right")};
+
+    /**
+     * One of Protocol.OP_*, NEGOTIATE or UNKNOWN.
+     */
+    private int opcode;
+
+    /**
+     * Request ID from a "#<id> " prefix, 0 if none.
+     */
+    private int requestID;
+
+    /**
+     * Direction byte of a move, -1 if direction is not known.
+     */
+    private int direction;
+
+    /**
+     * Number of spaces of a move, radius of a scan, or version known to the
+     * client of a show, 0 if none.
+     */
+    private int spaces;
+
+    /**
+     * Line being parsed.
+     */
+    private byte[] line;
+
+    /**
+     * Current parse position in line.
+     */
+    private int pos;
+
+    /**
+     * End of line.
+     */
+    private int end;
+
+    /**
+     * Parses a command line. Words after the ones a command needs are
+     * ignored, as they always were.
+     *
+     * @param line - Buffer holding the line
+     * @param offset - Start of line in buffer
+     * @param length - Length of line without the newline
+     * @return int - Opcode of the command
+     */
+    public int parse(byte[] line, int offset, int length) {
+        this.line = line;
+        this.pos = offset;
+        this.end = offset + length;
+        this.opcode = UNKNOWN;
+        this.requestID = 0;
+        this.direction = -1;
+        this.spaces = 0;
+
+        // Optional request ID prefix
+        if (pos < end && line[pos] == '#') {
+            pos++;
+            int id = parseInt();
+            if (id < 0 || !skipSpace()) {
+                return opcode;
+            }
+            requestID = id;
+        }
+
+        if (word(MOVE)) {
+            if (!skipSpace()) {
+                return opcode;
+            }
+            for (int i = 0; i < DIRECTIONS.length && direction == -1; i++) {
+                if (word(DIRECTIONS[i])) {
+                    direction = i;
+                }
+            }
+            if (direction == -1) {
+                skipWord();
+            }
+            if (!skipSpace()) {
+                return opcode;
+            }
+
+            boolean negative = pos < end && line[pos] == '-';
+            if (negative) {
+                pos++;
+            }
+            int value = parseInt();
+            if (value < 0 || (pos < end && line[pos] != ' ')) {
+                return opcode;
+            }
+            spaces = negative ? -value : value;
+            opcode = Protocol.OP_MOVE;
+        }
+        else if (word(CAPTURE)) {
+            opcode = Protocol.OP_CAPTURE;
+        }
+        else if (word(SHOW)) {
+            opcode = Protocol.OP_SHOW;
+
+            // Optional version known to the client, anything else is ignored
+            if (skipSpace()) {
+                int value = parseInt();
+                if (value > 0 && (pos == end || line[pos] == ' ')) {
+                    spaces = value;
+                }
+            }
+        }
+        else if (word(SCAN)) {
+            if (!skipSpace()) {
+                return opcode;
+            }
+            int value = parseInt();
+            if (value < 0 || (pos < end && line[pos] != ' ')) {
+                return opcode;
+            }
+            spaces = value;
+            opcode = Protocol.OP_SCAN;
+        }
+        else if (word(SUBSCRIBE)) {
+            opcode = Protocol.OP_SUBSCRIBE;
+        }
+        else if (word(JOIN)) {
+            opcode = Protocol.OP_JOIN;
+        }
+        else if (word(LEAVE)) {
+            opcode = Protocol.OP_LEAVE;
+        }
+        else if (word(PROTOCOL)) {
+            // Negotiation must be the exact line, without request ID
+            if (requestID == 0 && skipSpace() && word(BINARY) && pos == end) {
+                opcode = NEGOTIATE;
+            }
+        }
+
+        this.line = null;
+        return opcode;
+    }
+
+    /**
+     * Returns opcode of the last parsed line.
+     *
+     * @return int
+     */
+    public int getOpcode() {
+        return opcode;
+    }
+
+    /**
+     * Returns request ID of the last parsed line.
+     *
+     * @return int - 0 if none
+     */
+    public int getRequestID() {
+        return requestID;
+    }
+
+    /**
+     * Returns direction byte of the last parsed move.
+     *
+     * @return int - -1 if direction is not known
+     */
+    public int getDirection() {
+        return direction;
+    }
+
+    /**
+     * Returns number of spaces of the last parsed move, radius of the last
+     * parsed scan, or version known to the client of the last parsed show.
+     *
+     * @return int
+     */
+    public int getSpaces() {
+        return spaces;
+    }
+
+    /**
+     * Consumes given word if it is next, followed by a space or the end.
+     *
+     * @param word - Word to match
+     * @return boolean
+     */
+    private boolean word(byte[] word) {
+        int wordEnd = pos + word.length;
+        if (wordEnd > end || (wordEnd < end && line[wordEnd] != ' ')) {
+            return false;
+        }
+        for (int i = 0; i < word.length; i++) {
+            if (line[pos + i] != word[i]) {
+                return false;
+            }
+        }
+        pos = wordEnd;
+        return true;
+    }
+
+    /**
+     * Consumes the next word, whatever it is.
+     */
+    private void skipWord() {
+        while (pos < end && line[pos] != ' ') {
+            pos++;
+        }
+    }
+
+    /**
+     * Consumes a single space.
+     *
+     * @return boolean - false if next byte is not a space
+     */
+    private boolean skipSpace() {
+        if (pos < end && line[pos] == ' ') {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Consumes an unsigned decimal integer.
+     *
+     * @return int - -1 if there are no digits or the value overflows
+     */
+    private int parseInt() {
+        int start = pos;
+        long value = 0;
+        while (pos < end && line[pos] >= '0' && line[pos] <= '9') {
+            value = value * 10 + (line[pos] - '0');
+            if (value > Integer.MAX_VALUE) {
+                return -1;
+            }
+            pos++;
+        }
+        return pos == start ? -1 : (int) value;
+    }
+
+    /**
+     * Returns ASCII bytes of a constant.
+     *
+     * @param s - Constant
+     * @return byte[]
+     */
+    private static byte[] bytes(String s) {
+        byte[] ret = new byte[s.length()];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = (byte) s.charAt(i);
+        }
+        return ret;
+    }
+}
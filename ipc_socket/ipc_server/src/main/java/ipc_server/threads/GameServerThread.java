@@ -2,11 +2,23 @@ package ipc_server.threads;
 
 
 import ipc_server.GameServer;
+import ipc_server.interfaces.FrameWriter;
+import ipc_server.protocol.Protocol;
+import ipc_server.utils.OutboundQueue;
+import ipc_server.utils.ServerUtils;
 
 import java.io.*;
+import java.net.ProtocolException;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class GameServerThread implements Runnable, FrameWriter {
+    /**
+     * Initial size of the line buffer.
+     */
+    private static final int LINE_BUFFER_SIZE = 256;
 
-public class GameServerThread extends Thread {
     /**
      * Associated client socket.
      */
@@ -18,9 +30,24 @@ public class GameServerThread extends Thread {
     private final GameServer gameServer;
 
     /**
-     * Class wide buffered writer.
+     * Class wide buffered output stream, used by the writer only.
+     */
+    private BufferedOutputStream bos;
+
+    /**
+     * Buffer reused for every received command line.
+     */
+    private byte[] line;
+
+    /**
+     * Replies and pushes waiting for the writer.
      */
-    private BufferedWriter bw;
+    private final OutboundQueue outboundQueue;
+
+    /**
+     * Flag to run the writer on a virtual thread.
+     */
+    private final boolean virtual;
 
     /**
      * Constructor initializing client socket and game server.
@@ -29,8 +56,22 @@ public class GameServerThread extends Thread {
      * @param gameServer - Associated game server
      */
     public GameServerThread(Socket clientSocket, GameServer gameServer) {
+        this(clientSocket, gameServer, false);
+    }
+
+    /**
+     * Constructor initializing client socket and game server.
+     *
+     * @param clientSocket - Associated client socket
+     * @param gameServer - Associated game server
+     * @param virtual - Run the writer on a virtual thread
+     */
+    public GameServerThread(Socket clientSocket, GameServer gameServer, boolean virtual) {
         this.clientSocket = clientSocket;
         this.gameServer = gameServer;
+        this.outboundQueue = gameServer.newOutboundQueue();
+        this.virtual = virtual;
+        this.line = new byte[LINE_BUFFER_SIZE];
     }
 
     @Override
@@ -45,8 +86,7 @@ public class GameServerThread extends Thread {
             // TODO: Kill thread instead of killing the program
             System.exit(1);
         }
-        InputStreamReader isr = new InputStreamReader(is);
-        BufferedReader br = new BufferedReader(isr);
+        DataInputStream dis = new DataInputStream(new BufferedInputStream(is));
 
         // Set output streams
         OutputStream os = null;
@@ -58,152 +98,158 @@ public class GameServerThread extends Thread {
             // TODO: Kill thread instead of killing the program
             System.exit(1);
         }
-        OutputStreamWriter osw = new OutputStreamWriter(os);
-        bw = new BufferedWriter(osw);
+        bos = new BufferedOutputStream(os);
 
-        // Get ID for player
-        int playerID = -1;
+        // Start writer draining the outbound queue
+        Runnable writer = this::drainOutbound;
+        if (!virtual || !ServerUtils.startVirtualThread(writer)) {
+            new Thread(writer).start();
+        }
 
-        String command;
-        String[] commandParts = {""};
+        PlayerSession session = new PlayerSession(gameServer, this);
+        boolean active = true;
 
         do {
+            // Stop reading requests while the client is not keeping up with replies
             try {
-                command = br.readLine();
+                outboundQueue.awaitNotFull();
             }
-            catch (IOException e) {
-                System.out.println("ERROR: " + e.getMessage() + " Try again");
+            catch (InterruptedException e) {
+                active = session.handleCommand(null);
                 continue;
             }
 
-            // We are doing this because as the winner is found the server thread
-            // should not service anymore requests.
-            if (gameServer.isWinnerFound()) {
-                sendMsg("Games over on this server. Please wait for server to restart.");
-                command = "terminate";
-            }
-
-            int ret;
-            commandParts = command.split(" ");
-            switch(commandParts[0]) {
-                case "move":
-                    if (playerID != -1) {
-                        String direction = commandParts[1];
-                        int spaces = Integer.parseInt(commandParts[2]);
-
-                        ret = gameServer.movePlayer(playerID, direction, spaces);
-
-                        String msg = "";
-                        switch(ret) {
-                            case 1: msg = "Player does not exist."; break;
-                            case 2: msg = "Can't move there. Position beyond board limits."; break;
-                            case 3: msg = "Can't move there. Position occupied by another player."; break;
-                            default: msg = "Can't move to this position."; break;
-                        }
-
-                        if (ret != 0) {
-                            sendMsg(msg);
-                        } else {
-                            String playerDetails = gameServer.getPlayerDetails(playerID);
-                            playerDetails = playerDetails.replaceAll("\n", "~");
-                            sendMsg(playerDetails);
-                        }
-                    }
-                    else {
-                        sendMsg("Join a game before using this command");
-                    }
-                    break;
-
-                case "capture":
-                    if (playerID != -1) {
-                        ret = gameServer.capturePokemon(playerID);
-
-                        if (ret == 1) {
-                            sendMsg("No pokemon at position");
-                        }
-                        else if (ret == 2) {
-                            String playerDetails = gameServer.getPlayerDetails(playerID);
-                            playerDetails += "\n" + "You have won the game! Congratulations!";
-                            playerDetails = playerDetails.replaceAll("\n", "~");
-                            sendMsg(playerDetails);
-
-                            // Force thread to quit
-                            commandParts[0] = "leave";
-                        }
-                        else {
-                            String playerDetails = gameServer.getPlayerDetails(playerID);
-                            playerDetails = playerDetails.replaceAll("\n", "~");
-
-                            sendMsg(playerDetails);
-                        }
-                    }
-                    else {
-                        sendMsg("Join a game before using this command");
-                    }
-                    break;
-
-                case "show":
-                    if (playerID != -1) {
-                        String playerDetails = gameServer.getPlayerDetails(playerID);
-                        playerDetails = playerDetails.replaceAll("\n", "~");
-                        sendMsg(playerDetails);
-                    }
-                    else {
-                        sendMsg("Join a game before using this command");
-                    }
-                    break;
-
-                case "join":
-                    if (playerID == -1) {
-                        // Add player
-                        playerID = gameServer.addPlayer(this);
-
-                        // Get details of board and players
-                        String gameBoardDetails = gameServer.getBoardDetails();
-                        String playerDetails = gameServer.getPlayerDetails(playerID);
-                        String joinInfo = gameBoardDetails + "\n" + playerDetails;
-                        joinInfo = joinInfo.replaceAll("\n", "~");
-
-                        sendMsg(joinInfo);
+            if (session.isBinary()) {
+                int opcode;
+                byte[] payload;
+                try {
+                    opcode = dis.read();
+                    if (opcode == -1) {
+                        active = session.handleCommand(null);
+                        continue;
                     }
-                    else {
-                        sendMsg("Player already joined");
-                    }
-                    break;
-
-                case "leave":
-                    if (playerID != -1) {
-                        gameServer.removePlayer(playerID);
+                    int length = Protocol.readVarInt(dis);
+                    if (length < 0 || length > Protocol.MAX_FRAME_LENGTH) {
+                        throw new ProtocolException("Frame too long");
                     }
+                    payload = new byte[length];
+                    dis.readFully(payload);
+                }
+                catch (IOException e) {
+                    // Connection dropped mid frame, or client broke the protocol
+                    active = session.handleCommand(null);
+                    continue;
+                }
+
+                active = session.handleFrame(opcode, ByteBuffer.wrap(payload));
+            }
+            else {
+                int length;
+                try {
+                    length = readLine(dis);
+                }
+                catch (IOException e) {
+                    // Connection dropped or was disconnected
+                    length = -1;
+                }
+
+                if (length == -1) {
+                    active = session.handleCommand(null);
+                }
+                else {
+                    active = session.handleLine(line, 0, length);
+                }
+            }
+        }
+        while(active);
 
-                    sendMsg("Player left");
-                    break;
+        // Writer exits once queued replies are written
+        outboundQueue.close();
+    }
 
-                case "terminate":
-                    // Forces an exit when winner has been found.
-                    commandParts[0] = "leave";
-                    break;
+    /**
+     * Writes queued messages to associated client, flushing whenever the
+     * queue runs empty so pipelined replies go out together.
+     */
+    private void drainOutbound() {
+        try {
+            byte[] data;
+            while ((data = outboundQueue.take()) != null) {
+                bos.write(data);
+                if (outboundQueue.isEmpty()) {
+                    bos.flush();
+                }
+            }
+            bos.flush();
+        }
+        catch (IOException | InterruptedException e) {
+            outboundQueue.close();
+        }
+        finally {
+            // Session is over or the client is gone, either way hang up
+            try {
+                clientSocket.close();
+            }
+            catch (IOException e) { }
+        }
+    }
 
-                default:
-                    sendMsg("Server does not support this command yet");
-                    break;
+    /**
+     * Reads a text line into the reused line buffer without buffering past
+     * it, so that binary frames following protocol negotiation stay in the
+     * stream.
+     *
+     * @param dis - Input stream
+     * @return int - Length of line without newline, -1 at end of stream
+     * @throws IOException - If read fails or line runs past MAX_FRAME_LENGTH
+     */
+    private int readLine(DataInputStream dis) throws IOException {
+        int length = 0;
+        int b;
+        while ((b = dis.read()) != -1 && b != '\n') {
+            if (length == Protocol.MAX_FRAME_LENGTH) {
+                throw new ProtocolException("Line too long");
+            }
+            if (length == line.length) {
+                line = Arrays.copyOf(line, line.length * 2);
             }
+            line[length++] = (byte) b;
+        }
+        if (b == -1 && length == 0) {
+            return -1;
+        }
 
+        // Strip carriage return as BufferedReader.readLine does
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
         }
-        while(!commandParts[0].equalsIgnoreCase("leave"));
+        return length;
     }
 
     /**
-     * Sends given message to associated client.
+     * Queues given encoded reply for the writer.
      *
-     * @param msg - Message to send
+     * @param data - Encoded message
      */
-    public void sendMsg(String msg) {
-        try {
-            bw.write(msg + "\n");
-            bw.flush();
+    @Override
+    public void write(byte[] data) {
+        outboundQueue.offerReply(data);
+    }
+
+    /**
+     * Queues given encoded push for the writer, disconnecting the client
+     * if the slow consumer policy says so.
+     *
+     * @param data - Encoded message
+     */
+    @Override
+    public void push(byte[] data) {
+        if (!outboundQueue.offerPush(data)) {
+            try {
+                clientSocket.close();
+            }
+            catch (IOException e) { }
         }
-        catch (IOException e) { }
     }
 
 }
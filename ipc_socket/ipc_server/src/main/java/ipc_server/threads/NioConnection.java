@@ -0,0 +1,320 @@
+package ipc_server.threads;
+
+import ipc_server.GameServer;
+import ipc_server.interfaces.FrameWriter;
+import ipc_server.protocol.Protocol;
+import ipc_server.utils.OutboundQueue;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+
+public class NioConnection implements FrameWriter {
+    /**
+     * Size of the per connection read buffer.
+     */
+    private static final int READ_BUFFER_SIZE = 1024;
+
+    /**
+     * Maximum number of queued replies written in one gathering write.
+     */
+    private static final int GATHER_SIZE = 64;
+
+    /**
+     * Associated client channel.
+     */
+    private final SocketChannel channel;
+
+    /**
+     * Selection key of channel.
+     */
+    private final SelectionKey key;
+
+    /**
+     * Event loop owning this connection.
+     */
+    private final SelectorServerThread loop;
+
+    /**
+     * Session servicing commands received on this connection.
+     */
+    private final PlayerSession session;
+
+    /**
+     * Buffer that socket reads land in.
+     */
+    private final ByteBuffer readBuffer;
+
+    /**
+     * Bytes received but not yet serviced.
+     */
+    private byte[] input;
+
+    /**
+     * Number of valid bytes in input.
+     */
+    private int inputLength;
+
+    /**
+     * Replies and pushes waiting to be written to the channel.
+     */
+    private final OutboundQueue outboundQueue;
+
+    /**
+     * Messages taken off the queue and being written, oldest first.
+     */
+    private final ByteBuffer[] gather;
+
+    /**
+     * Number of messages in gather.
+     */
+    private int gatherCount;
+
+    /**
+     * Flag set while reads are paused because the client is not keeping
+     * up with replies.
+     */
+    private boolean readSuspended;
+
+    /**
+     * Flag to close the connection once queued messages are written.
+     */
+    private volatile boolean closing;
+
+    /**
+     * Flag to close the connection right away, set by the slow consumer
+     * policy.
+     */
+    private volatile boolean disconnecting;
+
+    /**
+     * Constructor.
+     *
+     * @param channel - Associated client channel
+     * @param key - Selection key of channel
+     * @param loop - Event loop owning this connection
+     * @param gameServer - Associated game server
+     */
+    public NioConnection(SocketChannel channel, SelectionKey key,
+                         SelectorServerThread loop, GameServer gameServer) {
+        this.channel = channel;
+        this.key = key;
+        this.loop = loop;
+        this.session = new PlayerSession(gameServer, this);
+        this.readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        this.input = new byte[READ_BUFFER_SIZE];
+        this.inputLength = 0;
+        this.outboundQueue = gameServer.newOutboundQueue();
+        this.gather = new ByteBuffer[GATHER_SIZE];
+        this.gatherCount = 0;
+        this.readSuspended = false;
+        this.closing = false;
+        this.disconnecting = false;
+    }
+
+    /**
+     * Reads available bytes and services every complete command line or
+     * binary frame. Input is only kept while it may still become a line or
+     * frame within MAX_FRAME_LENGTH, so it stays bounded.
+     *
+     * @throws IOException - If channel read fails or the client breaks the protocol
+     */
+    void read() throws IOException {
+        int n = channel.read(readBuffer);
+        if (n == -1) {
+            close();
+            return;
+        }
+
+        readBuffer.flip();
+        if (inputLength + readBuffer.remaining() > input.length) {
+            input = Arrays.copyOf(input, Math.max(input.length * 2, inputLength + readBuffer.remaining()));
+        }
+        readBuffer.get(input, inputLength, readBuffer.remaining());
+        inputLength += n;
+        readBuffer.clear();
+
+        // Protocol may switch to binary after any line, so check per message
+        int start = 0;
+        while (start < inputLength && !closing) {
+            int consumed = session.isBinary() ? nextFrame(start) : nextLine(start);
+            if (consumed == 0) {
+                break;
+            }
+            start += consumed;
+        }
+
+        // Keep the incomplete tail for the next read
+        System.arraycopy(input, start, input, 0, inputLength - start);
+        inputLength -= start;
+
+        // Stop reading requests while the client is not keeping up with replies
+        if (outboundQueue.isFull()) {
+            readSuspended = true;
+        }
+    }
+
+    /**
+     * Services the command line starting at given offset, if complete.
+     *
+     * @param start - Offset of line in input
+     * @return int - Number of bytes consumed, 0 if line is incomplete
+     * @throws ProtocolException - If line runs past MAX_FRAME_LENGTH
+     */
+    private int nextLine(int start) throws ProtocolException {
+        for (int i = start; i < inputLength; i++) {
+            if (input[i] == '\n') {
+                // Strip carriage return as BufferedReader.readLine does
+                int end = i;
+                if (end > start && input[end - 1] == '\r') {
+                    end--;
+                }
+                dispatched(session.handleLine(input, start, end - start));
+                return i + 1 - start;
+            }
+        }
+
+        // Nothing left to wait for that could be a command
+        if (inputLength - start > Protocol.MAX_FRAME_LENGTH) {
+            throw new ProtocolException("Line too long");
+        }
+        return 0;
+    }
+
+    /**
+     * Services the binary frame starting at given offset, if complete.
+     *
+     * @param start - Offset of frame in input
+     * @return int - Number of bytes consumed, 0 if frame is incomplete
+     * @throws ProtocolException - If frame header is malformed or above MAX_FRAME_LENGTH
+     */
+    private int nextFrame(int start) throws ProtocolException {
+        int length = Protocol.frameLength(input, start, inputLength - start);
+        if (length == -1) {
+            return 0;
+        }
+
+        // Skip length header, the payload runs to the end of the frame
+        ByteBuffer frame = ByteBuffer.wrap(input, start + 1, length - 1);
+        Protocol.getVarInt(frame);
+        dispatched(session.handleFrame(input[start] & 0xFF, frame.slice()));
+        return length;
+    }
+
+    /**
+     * Starts closing the connection once session is over.
+     *
+     * @param active - Result of servicing a command
+     */
+    private void dispatched(boolean active) {
+        if (!active) {
+            closing = true;
+            loop.requestWrite(this);
+        }
+    }
+
+    /**
+     * Writes as much queued output as the channel accepts, gathering
+     * pipelined replies into a single write where possible.
+     *
+     * @throws IOException - If channel write fails
+     */
+    void write() throws IOException {
+        while (true) {
+            // Top up messages being written from the queue
+            while (gatherCount < gather.length) {
+                byte[] data = outboundQueue.poll();
+                if (data == null) {
+                    break;
+                }
+                gather[gatherCount++] = ByteBuffer.wrap(data);
+            }
+            if (gatherCount == 0) {
+                break;
+            }
+
+            channel.write(gather, 0, gatherCount);
+
+            // Drop fully written messages
+            int written = 0;
+            while (written < gatherCount && !gather[written].hasRemaining()) {
+                written++;
+            }
+            System.arraycopy(gather, written, gather, 0, gatherCount - written);
+            Arrays.fill(gather, gatherCount - written, gatherCount, null);
+            gatherCount -= written;
+
+            // Socket buffer is full, wait for the next write event
+            if (gatherCount > 0) {
+                return;
+            }
+        }
+
+        readSuspended = false;
+        key.interestOps(SelectionKey.OP_READ);
+        if (closing) {
+            close();
+        }
+    }
+
+    /**
+     * Turns on write interest. Called from the event loop only.
+     */
+    void enableWrite() {
+        if (disconnecting) {
+            close();
+        }
+        else if (key.isValid()) {
+            int ops = SelectionKey.OP_WRITE;
+            if (!readSuspended) {
+                ops |= SelectionKey.OP_READ;
+            }
+            key.interestOps(ops);
+        }
+    }
+
+    /**
+     * Closes the channel, removing the player if still in the game and
+     * the subscription if any.
+     */
+    void close() {
+        if (session.getPlayerID() != -1 || session.isSubscribed()) {
+            session.handleCommand(null);
+        }
+
+        outboundQueue.close();
+        key.cancel();
+        try {
+            channel.close();
+        }
+        catch (IOException e) { }
+    }
+
+    /**
+     * Queues given encoded reply for the event loop to write.
+     *
+     * @param data - Encoded message
+     */
+    @Override
+    public void write(byte[] data) {
+        outboundQueue.offerReply(data);
+        loop.requestWrite(this);
+    }
+
+    /**
+     * Queues given encoded push for the event loop to write, disconnecting
+     * the client if the slow consumer policy says so.
+     *
+     * @param data - Encoded message
+     */
+    @Override
+    public void push(byte[] data) {
+        if (!outboundQueue.offerPush(data)) {
+            disconnecting = true;
+        }
+        loop.requestWrite(this);
+    }
+}
@@ -0,0 +1,481 @@
+package ipc_server.threads;
+
+import ipc_server.GameServer;
+import ipc_server.interfaces.FrameWriter;
+import ipc_server.interfaces.PlayerConnection;
+import ipc_server.protocol.BinaryCodec;
+import ipc_server.protocol.Codec;
+import ipc_server.protocol.Protocol;
+import ipc_server.protocol.TextCodec;
+import ipc_server.protocol.TextCommandParser;
+import ipc_server.utils.BoardDelta;
+import ipc_server.utils.BoardSnapshot;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public class PlayerSession implements PlayerConnection {
+    /**
+     * Associated game server.
+     */
+    private final GameServer gameServer;
+
+    /**
+     * Writer on which encoded replies are sent.
+     */
+    private final FrameWriter writer;
+
+    /**
+     * Codec of the protocol negotiated on this session.
+     */
+    private volatile Codec codec;
+
+    /**
+     * ID of player once joined, -1 otherwise.
+     */
+    private int playerID;
+
+    /**
+     * ID of request being serviced, 0 if client sent none.
+     */
+    private int requestID;
+
+    /**
+     * Parser reused for every text command line.
+     */
+    private final TextCommandParser parser;
+
+    /**
+     * Flag set while subscribed to the delta stream.
+     */
+    private volatile boolean subscribed;
+
+    /**
+     * Deltas held back until the snapshot has been sent, null otherwise.
+     * Guarded by the session.
+     */
+    private List<BoardDelta> pendingDeltas;
+
+    /**
+     * Version of the snapshot sent, deltas up to it are not sent.
+     * Guarded by the session.
+     */
+    private long snapshotVersion;
+
+    /**
+     * Constructor initializing game server and writer.
+     *
+     * @param gameServer - Associated game server
+     * @param writer - Writer to reply on
+     */
+    public PlayerSession(GameServer gameServer, FrameWriter writer) {
+        this.gameServer = gameServer;
+        this.writer = writer;
+        this.codec = new TextCodec();
+        this.playerID = -1;
+        this.requestID = 0;
+        this.parser = new TextCommandParser();
+        this.subscribed = false;
+        this.pendingDeltas = null;
+        this.snapshotVersion = 0;
+    }
+
+    /**
+     * Returns ID of player serviced by this session.
+     *
+     * @return int - -1 if player has not joined
+     */
+    public int getPlayerID() {
+        return playerID;
+    }
+
+    /**
+     * Checks if the binary protocol has been negotiated.
+     *
+     * @return boolean
+     */
+    public boolean isBinary() {
+        return codec instanceof BinaryCodec;
+    }
+
+    /**
+     * Checks if subscribed to the delta stream.
+     *
+     * @return boolean
+     */
+    public boolean isSubscribed() {
+        return subscribed;
+    }
+
+    /**
+     * Sends given message to associated client. Called by other players
+     * threads, so it only queues the message.
+     *
+     * @param msg - Message to send
+     */
+    @Override
+    public void sendMsg(String msg) {
+        writer.push(codec.encodeMessage(msg));
+    }
+
+    /**
+     * Sends given board change to associated client. Called by the thread
+     * making the change, so it only queues the delta, or holds it back
+     * while the snapshot is being read.
+     *
+     * @param delta - Board change
+     */
+    @Override
+    public synchronized void sendDelta(BoardDelta delta) {
+        if (pendingDeltas != null) {
+            pendingDeltas.add(delta);
+        }
+        else if (delta.getVersion() > snapshotVersion) {
+            writer.push(codec.encodeDelta(delta));
+        }
+    }
+
+    /**
+     * Services a single command line received from the client. The line
+     * may start with a "#<id> " request ID to be echoed in the reply.
+     *
+     * @param command - Command line, null if client closed the connection
+     * @return boolean - false once the session is over
+     */
+    public boolean handleCommand(String command) {
+        // A closed connection is treated as the player leaving
+        if (command == null) {
+            requestID = 0;
+            return leave();
+        }
+
+        byte[] line = command.getBytes();
+        return handleLine(line, 0, line.length);
+    }
+
+    /**
+     * Services a single command line straight from a receive buffer.
+     *
+     * @param line - Buffer holding the line
+     * @param offset - Start of line in buffer
+     * @param length - Length of line without the newline
+     * @return boolean - false once the session is over
+     */
+    public boolean handleLine(byte[] line, int offset, int length) {
+        int opcode = parser.parse(line, offset, length);
+        requestID = parser.getRequestID();
+
+        if (opcode == TextCommandParser.NEGOTIATE) {
+            if (playerID != -1 || subscribed) {
+                return unsupported();
+            }
+
+            // Acknowledge in text, everything after is binary
+            writer.write(codec.encodeMessage(Protocol.NEGOTIATE_LINE));
+            codec = new BinaryCodec();
+            return true;
+        }
+        return dispatch(opcode, parser.getDirection(), parser.getSpaces());
+    }
+
+    /**
+     * Services a single binary frame received from the client. A payload
+     * too short or malformed for its opcode is replied to as unsupported,
+     * the frame length keeps the following frames in step.
+     *
+     * @param opcode - Frame opcode
+     * @param payload - Frame payload
+     * @return boolean - false once the session is over
+     */
+    public boolean handleFrame(int opcode, ByteBuffer payload) {
+        requestID = 0;
+
+        int direction = -1;
+        int spaces = 0;
+        try {
+            requestID = Protocol.getVarInt(payload);
+            if (opcode == Protocol.OP_MOVE) {
+                direction = payload.get();
+                spaces = Protocol.getVarInt(payload);
+            }
+            else if (opcode == Protocol.OP_SCAN) {
+                spaces = Protocol.getVarInt(payload);
+            }
+            else if (opcode == Protocol.OP_SHOW && payload.hasRemaining()) {
+                spaces = Protocol.getVarInt(payload);
+            }
+        }
+        catch (BufferUnderflowException | IllegalArgumentException e) {
+            return unsupported();
+        }
+
+        if (opcode == Protocol.OP_CATALOG) {
+            writer.write(((BinaryCodec) codec).encodeCatalog(requestID, gameServer.getCatalog()));
+            return true;
+        }
+        return dispatch(opcode, direction, spaces);
+    }
+
+    /**
+     * Services a decoded command.
+     *
+     * @param opcode - One of Protocol.OP_*
+     * @param direction - Direction byte of a move
+     * @param spaces - Number of spaces of a move, radius of a scan, or version of a show
+     * @return boolean - false once the session is over
+     */
+    private boolean dispatch(int opcode, int direction, int spaces) {
+        switch (opcode) {
+            case Protocol.OP_MOVE:
+                boolean known = direction >= 0 && direction < Protocol.DIRECTIONS.length;
+                return move(known ? Protocol.DIRECTIONS[direction] : null, spaces);
+
+            case Protocol.OP_CAPTURE:
+                return capture();
+
+            case Protocol.OP_SHOW:
+                return show(spaces);
+
+            case Protocol.OP_SCAN:
+                return scan(spaces);
+
+            case Protocol.OP_SUBSCRIBE:
+                return subscribe();
+
+            case Protocol.OP_JOIN:
+                return join();
+
+            case Protocol.OP_LEAVE:
+                return leave();
+
+            default:
+                return unsupported();
+        }
+    }
+
+    /**
+     * Moves the player.
+     *
+     * @param direction - Direction to move in, null if not known
+     * @param spaces - Number of spaces to move
+     * @return boolean - false once the session is over
+     */
+    private boolean move(String direction, int spaces) {
+        if (gameOver()) {
+            return false;
+        }
+        if (playerID == -1) {
+            return reply(Protocol.STATUS_NOT_JOINED);
+        }
+        if (direction == null) {
+            return reply(Protocol.STATUS_MOVE_FAILED);
+        }
+
+        int ret = gameServer.movePlayer(playerID, direction, spaces);
+
+        if (ret != 0) {
+            return reply(ret);
+        }
+        writer.write(codec.encodeDetails(requestID, Protocol.STATUS_OK, gameServer.getPlayerState(playerID)));
+        return true;
+    }
+
+    /**
+     * Captures the pokemon at players position.
+     *
+     * @return boolean - false once the session is over
+     */
+    private boolean capture() {
+        if (gameOver()) {
+            return false;
+        }
+        if (playerID == -1) {
+            return reply(Protocol.STATUS_NOT_JOINED);
+        }
+
+        int ret = gameServer.capturePokemon(playerID);
+
+        if (ret == 1) {
+            return reply(Protocol.STATUS_NO_POKEMON);
+        }
+        else if (ret == 2) {
+            writer.write(codec.encodeDetails(requestID, Protocol.STATUS_WINNER, gameServer.getPlayerState(playerID)));
+            unsubscribe();
+
+            // Force session to end
+            return false;
+        }
+        writer.write(codec.encodeDetails(requestID, Protocol.STATUS_OK, gameServer.getPlayerState(playerID)));
+        return true;
+    }
+
+    /**
+     * Shows players current state, or only that it is unchanged if the
+     * client already knows its current version.
+     *
+     * @param version - Version known to the client, 0 if none
+     * @return boolean - false once the session is over
+     */
+    private boolean show(int version) {
+        if (gameOver()) {
+            return false;
+        }
+        if (playerID == -1) {
+            return reply(Protocol.STATUS_NOT_JOINED);
+        }
+        if (version != 0 && version == gameServer.getPlayerVersion(playerID)) {
+            return reply(Protocol.STATUS_NOT_MODIFIED);
+        }
+
+        writer.write(codec.encodeDetails(requestID, Protocol.STATUS_OK, gameServer.getPlayerState(playerID)));
+        return true;
+    }
+
+    /**
+     * Lists the pokemons around the player.
+     *
+     * @param radius - Greatest distance along each axis
+     * @return boolean - false once the session is over
+     */
+    private boolean scan(int radius) {
+        if (gameOver()) {
+            return false;
+        }
+        if (playerID == -1) {
+            return reply(Protocol.STATUS_NOT_JOINED);
+        }
+
+        writer.write(codec.encodeScan(requestID, gameServer.scanPokemons(playerID, radius)));
+        return true;
+    }
+
+    /**
+     * Subscribes to the delta stream, replying with a snapshot of the
+     * board. Deltas follow the snapshot, starting right above its version.
+     * Subscribing again sends a fresh snapshot, e.g. after missing a delta.
+     *
+     * @return boolean - false once the session is over
+     */
+    private boolean subscribe() {
+        if (gameOver()) {
+            return false;
+        }
+        unsubscribe();
+
+        // Hold deltas back until the snapshot they follow is sent
+        synchronized (this) {
+            pendingDeltas = new ArrayList<>();
+        }
+        BoardSnapshot snapshot = gameServer.subscribe(this);
+        if (snapshot == null) {
+            synchronized (this) {
+                pendingDeltas = null;
+            }
+            return reply(Protocol.STATUS_UNSUPPORTED);
+        }
+
+        subscribed = true;
+        synchronized (this) {
+            writer.write(codec.encodeSnapshot(requestID, snapshot));
+            snapshotVersion = snapshot.getVersion();
+            List<BoardDelta> deltas = pendingDeltas;
+            pendingDeltas = null;
+            for (BoardDelta delta : deltas) {
+                sendDelta(delta);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops pushing deltas, if subscribed.
+     */
+    private void unsubscribe() {
+        if (subscribed) {
+            gameServer.unsubscribe(this);
+            subscribed = false;
+        }
+    }
+
+    /**
+     * Adds the player to the game.
+     *
+     * @return boolean - false once the session is over
+     */
+    private boolean join() {
+        if (gameOver()) {
+            return false;
+        }
+        if (playerID != -1) {
+            return reply(Protocol.STATUS_ALREADY_JOINED);
+        }
+
+        // Add player
+        playerID = gameServer.addPlayer(this);
+
+        // Get details of board and players
+        writer.write(codec.encodeJoin(requestID, gameServer.getBoardState(), gameServer.getPlayerState(playerID)));
+        return true;
+    }
+
+    /**
+     * Removes the player from the game.
+     *
+     * @return boolean - always false
+     */
+    private boolean leave() {
+        unsubscribe();
+        if (gameOver()) {
+            return false;
+        }
+        if (playerID != -1) {
+            gameServer.removePlayer(playerID);
+            playerID = -1;
+        }
+
+        reply(Protocol.STATUS_LEFT);
+        return false;
+    }
+
+    /**
+     * Replies to an unsupported command.
+     *
+     * @return boolean - always true
+     */
+    private boolean unsupported() {
+        if (gameOver()) {
+            return false;
+        }
+        return reply(Protocol.STATUS_UNSUPPORTED);
+    }
+
+    /**
+     * Sends a status only reply.
+     *
+     * @param status - One of Protocol.STATUS_*
+     * @return boolean - always true
+     */
+    private boolean reply(int status) {
+        writer.write(codec.encodeStatus(requestID, status));
+        return true;
+    }
+
+    /**
+     * Checks for a winner, telling the client the game is over if so.
+     *
+     * We are doing this because as the winner is found the session
+     * should not service anymore requests.
+     *
+     * @return boolean
+     */
+    private boolean gameOver() {
+        if (gameServer.isWinnerFound()) {
+            unsubscribe();
+            reply(Protocol.STATUS_GAME_OVER);
+            return true;
+        }
+        return false;
+    }
+}
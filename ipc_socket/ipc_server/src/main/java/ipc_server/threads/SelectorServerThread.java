@@ -0,0 +1,139 @@
+package ipc_server.threads;
+
+import ipc_server.GameServer;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+public class SelectorServerThread extends Thread {
+    /**
+     * Selector multiplexing all connections of this event loop.
+     */
+    private final Selector selector;
+
+    /**
+     * Associated game server.
+     */
+    private final GameServer gameServer;
+
+    /**
+     * Accepted channels waiting to be registered with the selector.
+     */
+    private final Queue<SocketChannel> pendingChannels;
+
+    /**
+     * Connections that have queued output since the last select.
+     */
+    private final Queue<NioConnection> pendingWrites;
+
+    /**
+     * Constructor initializing selector and game server.
+     *
+     * @param gameServer - Associated game server
+     * @throws IOException - If selector could not be opened
+     */
+    public SelectorServerThread(GameServer gameServer) throws IOException {
+        this.selector = Selector.open();
+        this.gameServer = gameServer;
+        this.pendingChannels = new ConcurrentLinkedQueue<>();
+        this.pendingWrites = new ConcurrentLinkedQueue<>();
+        setDaemon(true);
+    }
+
+    /**
+     * Hands an accepted client channel over to this event loop.
+     *
+     * @param channel - Accepted client channel
+     */
+    public void register(SocketChannel channel) {
+        pendingChannels.add(channel);
+        selector.wakeup();
+    }
+
+    /**
+     * Asks the event loop to flush output queued on a connection.
+     *
+     * @param connection - Connection with queued output
+     */
+    void requestWrite(NioConnection connection) {
+        pendingWrites.add(connection);
+        if (Thread.currentThread() != this) {
+            selector.wakeup();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                selector.select();
+            }
+            catch (IOException e) {
+                System.out.println("ERROR: " + e.getMessage());
+                return;
+            }
+
+            registerPendingChannels();
+            enablePendingWrites();
+
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+
+                NioConnection connection = (NioConnection) key.attachment();
+                try {
+                    if (key.isReadable()) {
+                        connection.read();
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        connection.write();
+                    }
+                }
+                catch (IOException | RuntimeException e) {
+                    // Includes cancelled keys and malformed frames
+                    connection.close();
+                }
+            }
+
+            // Replies produced while servicing reads are flushed on the next pass
+            enablePendingWrites();
+        }
+    }
+
+    /**
+     * Registers channels accepted since the last select for reading.
+     */
+    private void registerPendingChannels() {
+        SocketChannel channel;
+        while ((channel = pendingChannels.poll()) != null) {
+            try {
+                channel.configureBlocking(false);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                key.attach(new NioConnection(channel, key, this, gameServer));
+            }
+            catch (IOException e) {
+                System.out.println("ERROR: Failed to register client connection");
+                try {
+                    channel.close();
+                }
+                catch (IOException ignored) { }
+            }
+        }
+    }
+
+    /**
+     * Turns on write interest for connections with queued output.
+     */
+    private void enablePendingWrites() {
+        NioConnection connection;
+        while ((connection = pendingWrites.poll()) != null) {
+            connection.enableWrite();
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package ipc_server.threads;
+
+import ipc_server.GameServer;
+import ipc_server.interfaces.PlayerConnection;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single writer engine applying every game board command in sequence.
+ *
+ * Connection threads, and the respawn thread, claim a slot of a
+ * preallocated ring with one atomic increment, fill it in and publish it. This thread applies published
+ * commands in sequence order on the game server, which takes no board
+ * lock while it runs here, then hands the result back in the same slot
+ * and wakes up the waiting connection thread.
+ */
+public class SequencerThread extends Thread {
+    /**
+     * Default number of slots in the ring.
+     */
+    public static final int DEFAULT_RING_SIZE = 1024;
+
+    /*
+     * Commands.
+     */
+    public static final int OP_ADD_PLAYER    = 1;
+    public static final int OP_REMOVE_PLAYER = 2;
+    public static final int OP_MOVE          = 3;
+    public static final int OP_CAPTURE       = 4;
+    public static final int OP_PLAYER_STATE  = 5;
+    public static final int OP_BOARD_STATE   = 6;
+    public static final int OP_SCAN          = 7;
+    public static final int OP_SNAPSHOT      = 8;
+    public static final int OP_PLAYER_VERSION = 9;
+    public static final int OP_SPAWN         = 10;
+
+    /**
+     * Number of spins before a waiting thread parks.
+     */
+    private static final int SPINS = 100;
+
+    /**
+     * One preallocated command and its result.
+     */
+    private static final class Slot {
+        /**
+         * Sequence the slot may next be claimed for.
+         */
+        volatile long free;
+
+        /**
+         * Sequence of the command last published in this slot.
+         */
+        volatile long published;
+
+        /**
+         * Sequence of the command last applied in this slot.
+         */
+        volatile long done;
+
+        /**
+         * Thread waiting for the result.
+         */
+        Thread waiter;
+
+        /*
+         * Command.
+         */
+        int op;
+        int id;
+        String direction;
+        int spaces;
+        PlayerConnection connection;
+
+        /*
+         * Result.
+         */
+        int result;
+        Object value;
+        RuntimeException error;
+    }
+
+    /**
+     * Associated game server.
+     */
+    private final GameServer gameServer;
+
+    /**
+     * Preallocated ring of slots.
+     */
+    private final Slot[] ring;
+
+    /**
+     * Ring size minus one, ring size is a power of two.
+     */
+    private final int mask;
+
+    /**
+     * Next sequence to be claimed by a connection thread.
+     */
+    private final AtomicLong claimed;
+
+    /**
+     * Flag set while this thread is parked waiting for commands.
+     */
+    private volatile boolean sleeping;
+
+    /**
+     * Constructor preallocating the ring.
+     *
+     * @param gameServer - Game server to apply commands on
+     * @param ringSize - Number of slots, rounded up to a power of two
+     */
+    public SequencerThread(GameServer gameServer, int ringSize) {
+        int size = Integer.highestOneBit(Math.max(ringSize - 1, 1)) << 1;
+        this.gameServer = gameServer;
+        this.ring = new Slot[size];
+        this.mask = size - 1;
+        this.claimed = new AtomicLong();
+        this.sleeping = false;
+        for (int i = 0; i < size; i++) {
+            ring[i] = new Slot();
+            ring[i].free = i;
+            ring[i].published = -1;
+            ring[i].done = -1;
+        }
+        setName("sequencer");
+        setDaemon(true);
+    }
+
+    /**
+     * Applies a command and returns its integer result, waiting for the
+     * commands sequenced before it.
+     *
+     * @param op - One of OP_*
+     * @param id - Player ID
+     * @param direction - Direction of a move
+     * @param spaces - Number of spaces of a move
+     * @param connection - Connection of a joining player
+     * @return int - Result of command
+     */
+    public int call(int op, int id, String direction, int spaces, PlayerConnection connection) {
+        long sequence = publish(op, id, direction, spaces, connection);
+        Slot slot = await(sequence);
+        int ret = slot.result;
+        release(slot, sequence);
+        return ret;
+    }
+
+    /**
+     * Applies a query and returns its result, waiting for the commands
+     * sequenced before it.
+     *
+     * @param op - One of OP_*
+     * @param id - Player ID
+     * @return Object - Result of query
+     */
+    public Object query(int op, int id) {
+        return query(op, id, 0);
+    }
+
+    /**
+     * Applies a query taking an argument and returns its result, waiting
+     * for the commands sequenced before it.
+     *
+     * @param op - One of OP_*
+     * @param id - Player ID
+     * @param value - Argument of query, e.g. radius of a scan
+     * @return Object - Result of query
+     */
+    public Object query(int op, int id, int value) {
+        long sequence = publish(op, id, null, value, null);
+        Slot slot = await(sequence);
+        Object ret = slot.value;
+        release(slot, sequence);
+        return ret;
+    }
+
+    /**
+     * Checks if the calling thread is the engine thread.
+     *
+     * @return boolean
+     */
+    public boolean isEngine() {
+        return Thread.currentThread() == this;
+    }
+
+    @Override
+    public void run() {
+        long sequence = 0;
+        while (true) {
+            Slot slot = ring[(int) sequence & mask];
+
+            // Wait for the next command to be published
+            int spins = 0;
+            while (slot.published != sequence) {
+                if (spins < SPINS) {
+                    spins++;
+                    continue;
+                }
+                sleeping = true;
+                if (slot.published != sequence) {
+                    LockSupport.park(this);
+                }
+                sleeping = false;
+            }
+
+            apply(slot);
+            Thread waiter = slot.waiter;
+            slot.done = sequence;
+            LockSupport.unpark(waiter);
+            sequence++;
+        }
+    }
+
+    /**
+     * Applies the command held in a slot and stores its result there.
+     *
+     * @param slot - Published slot
+     */
+    private void apply(Slot slot) {
+        slot.error = null;
+        slot.value = null;
+        try {
+            switch (slot.op) {
+                case OP_ADD_PLAYER:
+                    slot.result = gameServer.addPlayer(slot.connection);
+                    break;
+
+                case OP_REMOVE_PLAYER:
+                    gameServer.removePlayer(slot.id);
+                    break;
+
+                case OP_MOVE:
+                    slot.result = gameServer.movePlayer(slot.id, slot.direction, slot.spaces);
+                    break;
+
+                case OP_CAPTURE:
+                    slot.result = gameServer.capturePokemon(slot.id);
+                    break;
+
+                case OP_PLAYER_STATE:
+                    slot.value = gameServer.getPlayerState(slot.id);
+                    break;
+
+                case OP_BOARD_STATE:
+                    slot.value = gameServer.getBoardState();
+                    break;
+
+                case OP_SCAN:
+                    slot.value = gameServer.scanPokemons(slot.id, slot.spaces);
+                    break;
+
+                case OP_SNAPSHOT:
+                    slot.value = gameServer.getSnapshot();
+                    break;
+
+                case OP_PLAYER_VERSION:
+                    slot.result = gameServer.getPlayerVersion(slot.id);
+                    break;
+
+                case OP_SPAWN:
+                    // Pokemon in the ID, position packed as x << 16 | y
+                    boolean spawned = gameServer.spawnPokemon(slot.spaces >>> 16, slot.spaces & 0xFFFF, (short) slot.id);
+                    slot.result = spawned ? 1 : 0;
+                    break;
+            }
+        }
+        catch (RuntimeException e) {
+            // Rethrown on the calling thread
+            slot.error = e;
+        }
+    }
+
+    /**
+     * Claims the next slot, fills it in and publishes it.
+     *
+     * @param op - One of OP_*
+     * @param id - Player ID
+     * @param direction - Direction of a move
+     * @param spaces - Number of spaces of a move
+     * @param connection - Connection of a joining player
+     * @return long - Sequence of the command
+     */
+    private long publish(int op, int id, String direction, int spaces, PlayerConnection connection) {
+        long sequence = claimed.getAndIncrement();
+        Slot slot = ring[(int) sequence & mask];
+
+        // Ring is full until the caller one lap behind has taken its result
+        while (slot.free != sequence) {
+            Thread.yield();
+        }
+
+        slot.op = op;
+        slot.id = id;
+        slot.direction = direction;
+        slot.spaces = spaces;
+        slot.connection = connection;
+        slot.waiter = Thread.currentThread();
+        slot.published = sequence;
+
+        if (sleeping) {
+            LockSupport.unpark(this);
+        }
+        return sequence;
+    }
+
+    /**
+     * Waits for a published command to be applied.
+     *
+     * @param sequence - Sequence of the command
+     * @return Slot - Slot holding the result
+     */
+    private Slot await(long sequence) {
+        Slot slot = ring[(int) sequence & mask];
+        int spins = 0;
+        while (slot.done != sequence) {
+            if (spins < SPINS) {
+                spins++;
+            }
+            else {
+                LockSupport.park(this);
+            }
+        }
+
+        if (slot.error != null) {
+            RuntimeException e = slot.error;
+            release(slot, sequence);
+            throw e;
+        }
+        return slot;
+    }
+
+    /**
+     * Hands a slot back for the sequence one lap ahead.
+     *
+     * @param slot - Slot whose result was taken
+     * @param sequence - Sequence of the command
+     */
+    private void release(Slot slot, long sequence) {
+        slot.connection = null;
+        slot.value = null;
+        slot.free = sequence + ring.length;
+    }
+}
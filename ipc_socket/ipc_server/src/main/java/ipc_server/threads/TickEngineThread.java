@@ -0,0 +1,366 @@
+package ipc_server.threads;
+
+import ipc_server.GameServer;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed rate engine resolving moves and captures in batches.
+ *
+ * Connection threads queue their move or capture and wait. Once per tick
+ * this thread takes every command queued since the last tick and resolves
+ * them in one pass under a single exclusive board lock, then wakes all the
+ * waiting connections at once so their replies go out together. Winners
+ * are announced once the lock is released.
+ *
+ * Within a tick all moves are applied before any capture, each in
+ * ascending player ID order. Of two players moving to the same free cell
+ * the lower ID gets it and the other is told the cell is occupied. Of two
+ * players capturing the same pokemon the lower ID gets it.
+ *
+ * Commands staying within one board region are grouped by region and the
+ * groups resolved in parallel on a fork/join pool, since they touch
+ * disjoint cells. Moves crossing a region boundary are reconciled in a
+ * second phase on this thread once every region is done, so a move within
+ * a region wins a cell over a move into it from a neighbouring one.
+ */
+public class TickEngineThread extends Thread {
+    /**
+     * Default length of a tick in milliseconds.
+     */
+    public static final int DEFAULT_TICK_MILLIS = 20;
+
+    /*
+     * Commands, in the order they are resolved within a tick.
+     */
+    public static final int OP_MOVE    = 1;
+    public static final int OP_CAPTURE = 2;
+
+    /**
+     * Region of commands crossing a region boundary, sorted after all
+     * others.
+     */
+    private static final int CROSSING = Integer.MAX_VALUE;
+
+    /**
+     * Order in which commands of a tick are resolved, grouped by region.
+     */
+    private static final Comparator<Command> RESOLVE_ORDER =
+            Comparator.comparingInt((Command c) -> c.region)
+                      .thenComparingInt(c -> c.op)
+                      .thenComparingInt(c -> c.id);
+
+    /**
+     * A queued command and its result.
+     */
+    private static final class Command {
+        /*
+         * Command.
+         */
+        final int op;
+        final int id;
+        final String direction;
+        final int spaces;
+
+        /**
+         * Thread waiting for the result.
+         */
+        final Thread waiter;
+
+        /**
+         * Board region the command stays within, CROSSING if none.
+         */
+        int region;
+
+        /*
+         * Result.
+         */
+        int result;
+        RuntimeException error;
+
+        /**
+         * Flag set once the command has been resolved.
+         */
+        volatile boolean done;
+
+        /**
+         * Constructor.
+         *
+         * @param op - One of OP_*
+         * @param id - Player ID
+         * @param direction - Direction of a move
+         * @param spaces - Number of spaces of a move
+         * @param waiter - Thread waiting for the result
+         */
+        Command(int op, int id, String direction, int spaces, Thread waiter) {
+            this.op = op;
+            this.id = id;
+            this.direction = direction;
+            this.spaces = spaces;
+            this.waiter = waiter;
+        }
+    }
+
+    /**
+     * Associated game server.
+     */
+    private final GameServer gameServer;
+
+    /**
+     * Length of a tick in nanoseconds.
+     */
+    private final long tickNanos;
+
+    /**
+     * Pool resolving the regions of a tick in parallel.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Commands queued for the next tick.
+     */
+    private List<Command> pending;
+
+    /**
+     * Commands being resolved, swapped with pending every tick.
+     */
+    private List<Command> batch;
+
+    /**
+     * Lock guarding pending.
+     */
+    private final Lock pendingLock;
+
+    /**
+     * Constructor.
+     *
+     * @param gameServer - Game server to apply commands on
+     * @param tickMillis - Length of a tick in milliseconds
+     * @param parallelism - Number of threads resolving regions in parallel
+     */
+    public TickEngineThread(GameServer gameServer, int tickMillis, int parallelism) {
+        this.gameServer = gameServer;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.pending = new ArrayList<>();
+        this.batch = new ArrayList<>();
+        this.pendingLock = new ReentrantLock();
+        this.pool = new ForkJoinPool(parallelism);
+        setName("tick-engine");
+        setDaemon(true);
+    }
+
+    /**
+     * Queues a command for the next tick and waits for its result.
+     *
+     * @param op - One of OP_*
+     * @param id - Player ID
+     * @param direction - Direction of a move
+     * @param spaces - Number of spaces of a move
+     * @return int - Result of command
+     */
+    public int submit(int op, int id, String direction, int spaces) {
+        Command command = new Command(op, id, direction, spaces, Thread.currentThread());
+        pendingLock.lock();
+        try {
+            pending.add(command);
+        }
+        finally {
+            pendingLock.unlock();
+        }
+
+        while (!command.done) {
+            LockSupport.park(this);
+        }
+        if (command.error != null) {
+            throw command.error;
+        }
+        return command.result;
+    }
+
+    /**
+     * Checks if the calling thread is the engine thread or one of its
+     * pool threads.
+     *
+     * @return boolean
+     */
+    public boolean isEngine() {
+        return Thread.currentThread() == this || ForkJoinTask.getPool() == pool;
+    }
+
+    @Override
+    public void run() {
+        long nextTick = System.nanoTime() + tickNanos;
+        while (true) {
+            // Sleep until the tick is due
+            long delay;
+            while ((delay = nextTick - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, delay);
+            }
+
+            // Take everything queued since the last tick
+            List<Command> commands;
+            pendingLock.lock();
+            try {
+                commands = pending;
+                pending = batch;
+                batch = commands;
+            }
+            finally {
+                pendingLock.unlock();
+            }
+
+            if (!commands.isEmpty()) {
+                gameServer.runExclusive(() -> resolve(commands));
+
+                // Broadcasts take the players lock, never while holding the board lock
+                for (Command command : commands) {
+                    if (command.op == OP_CAPTURE && command.result == 2) {
+                        gameServer.announceWinner(command.id);
+                    }
+                }
+
+                for (Command command : commands) {
+                    command.done = true;
+                    LockSupport.unpark(command.waiter);
+                }
+                commands.clear();
+            }
+
+            // Skip ticks missed while resolving rather than bunching them up
+            nextTick += tickNanos;
+            long now = System.nanoTime();
+            if (nextTick < now) {
+                nextTick = now + tickNanos;
+            }
+        }
+    }
+
+    /**
+     * Applies a tick's commands, region by region in parallel, then the
+     * moves crossing regions. Called with the board locked exclusively.
+     *
+     * @param commands - Commands of the tick
+     */
+    private void resolve(List<Command> commands) {
+        for (Command command : commands) {
+            int region = gameServer.getRegion(command.id, command.op == OP_MOVE ? command.direction : null,
+                                              command.spaces);
+            command.region = region == -1 ? CROSSING : region;
+        }
+        commands.sort(RESOLVE_ORDER);
+
+        // Split sorted commands into runs of one region each
+        List<Integer> runs = new ArrayList<>();
+        int crossing = commands.size();
+        for (int i = 0; i < commands.size(); i++) {
+            int region = commands.get(i).region;
+            if (region == CROSSING) {
+                crossing = i;
+                break;
+            }
+            if (i == 0 || commands.get(i - 1).region != region) {
+                runs.add(i);
+            }
+        }
+        runs.add(crossing);
+
+        // Phase one, regions in parallel
+        if (runs.size() > 2) {
+            pool.invoke(new RegionTask(commands, runs, 0, runs.size() - 1));
+        }
+        else {
+            apply(commands, 0, crossing);
+        }
+
+        // Phase two, moves between regions
+        apply(commands, crossing, commands.size());
+    }
+
+    /**
+     * Applies a range of commands in order.
+     *
+     * @param commands - Commands sorted in resolve order
+     * @param from - Index of first command
+     * @param to - Index after last command
+     */
+    private void apply(List<Command> commands, int from, int to) {
+        for (int i = from; i < to; i++) {
+            Command command = commands.get(i);
+            try {
+                if (command.op == OP_MOVE) {
+                    command.result = gameServer.movePlayer(command.id, command.direction, command.spaces);
+                }
+                else {
+                    command.result = gameServer.capturePokemon(command.id);
+                }
+            }
+            catch (RuntimeException e) {
+                // Rethrown on the calling thread
+                command.error = e;
+            }
+        }
+    }
+
+    /**
+     * Fork/join task resolving a range of region runs, split in halves
+     * down to a single region.
+     */
+    private final class RegionTask extends RecursiveAction {
+        /**
+         * Never serialized, declared because RecursiveAction is Serializable.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Commands sorted in resolve order.
+         */
+        private final List<Command> commands;
+
+        /**
+         * Index of the first command of each run, followed by the index
+         * after the last run.
+         */
+        private final List<Integer> runs;
+
+        /**
+         * Range of runs to resolve.
+         */
+        private final int from;
+        private final int to;
+
+        /**
+         * Constructor.
+         *
+         * @param commands - Commands sorted in resolve order
+         * @param runs - Start of each run and end of the last one
+         * @param from - Index of first run
+         * @param to - Index after last run
+         */
+        RegionTask(List<Command> commands, List<Integer> runs, int from, int to) {
+            this.commands = commands;
+            this.runs = runs;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                apply(commands, runs.get(from), runs.get(to));
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RegionTask(commands, runs, from, middle),
+                      new RegionTask(commands, runs, middle, to));
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package ipc_server.utils;
+
+import ipc_server.interfaces.Board;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Experimental non-blocking game board. Every cell's player count and
+ * pokemon live in atomic arrays: a move claims its destination cell with
+ * a CAS before releasing its source, and a capture CASes the pokemon out
+ * of its cell. Nothing on this board ever takes a lock, so callers need
+ * not guard it.
+ *
+ * The pokemon index is brought up to date after each CAS rather than
+ * along with it, so a scan may briefly miss a spawn or still list a
+ * captured pokemon. Every update rereads its cell with the bucket locked,
+ * so once racing captures and spawns of a cell are done the index holds
+ * what the cell holds.
+ *
+ * A player's own position and pokemons are changed only by that
+ * player's commands, which are serviced one at a time. Players are
+ * looked up by primitive ID in a copy-on-write table, so moves and
+ * captures neither box the ID nor lock; only joins and leaves copy it.
+ */
+public class AtomicGameBoard implements Board {
+    /**
+     * Width of board.
+     */
+    private final int width;
+
+    /**
+     * Height of board.
+     */
+    private final int height;
+
+    /**
+     * Board the pokemon layout, catalog and player spawn positions are
+     * taken from.
+     */
+    private final GameBoard layout;
+
+    /**
+     * State of each player active on this board. The table held is never
+     * changed once published: joins and leaves swap in a changed copy.
+     */
+    private final AtomicReference<PlayerTable<PlayerState>> players;
+
+    /**
+     * Number of players on each cell of the board, indexed by cell().
+     */
+    private final AtomicIntegerArray occupancy;
+
+    /**
+     * Catalog ID of the pokemon on each cell of the board, indexed by
+     * cell(). NO_POKEMON if none.
+     */
+    private final AtomicIntegerArray pokemonPositions;
+
+    /**
+     * Spatial index of pokemonPositions, brought up to date after every
+     * change of a cell.
+     */
+    private final PokemonIndex pokemonIndex;
+
+    /**
+     * Number of pokemons left on the board, counting each copy of a
+     * pokemon spawned more than once.
+     */
+    private final AtomicInteger pokemonCount;
+
+    /**
+     * Flag to indicate winner found.
+     */
+    private volatile boolean winnerFound;
+
+    /**
+     * Constructor taking size, pokemon catalog and pokemon positions from a
+     * freshly initialized board.
+     *
+     * @param layout - Board to copy, not used for play afterwards
+     */
+    public AtomicGameBoard(GameBoard layout) {
+        BoardDetails details = layout.getDetails();
+        this.width            = details.getWidth();
+        this.height           = details.getHeight();
+        this.layout           = layout;
+        this.players          = new AtomicReference<>(new PlayerTable<PlayerState>());
+        this.occupancy        = new AtomicIntegerArray((width + 1) * (height + 1));
+        this.pokemonPositions = new AtomicIntegerArray(occupancy.length());
+        this.pokemonIndex     = new PokemonIndex(width, height);
+        this.pokemonCount     = new AtomicInteger();
+        this.winnerFound      = false;
+
+        for (int y = 0; y <= height; y++) {
+            for (int x = 0; x <= width; x++) {
+                int pokemon = layout.getPokemon(x, y);
+                pokemonPositions.set(cell(x, y), pokemon);
+                if (pokemon != PokemonCatalog.NO_POKEMON) {
+                    pokemonIndex.update(x, y, (short) pokemon);
+                    pokemonCount.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void addPlayer(int id) {
+        PlayerState player = new PlayerState(layout.getSpawnPosition(id));
+        PlayerTable<PlayerState> current;
+        PlayerTable<PlayerState> changed;
+        do {
+            current = players.get();
+            changed = copy(current);
+            changed.put(id, player);
+        } while (!players.compareAndSet(current, changed));
+        occupancy.incrementAndGet(cell(player.position.getX(), player.position.getY()));
+    }
+
+    @Override
+    public void removePlayer(int id) {
+        PlayerTable<PlayerState> current;
+        PlayerTable<PlayerState> changed;
+        PlayerState player;
+        do {
+            current = players.get();
+            changed = copy(current);
+            player = changed.remove(id);
+            if (player == null) {
+                return;
+            }
+        } while (!players.compareAndSet(current, changed));
+        occupancy.decrementAndGet(cell(player.position.getX(), player.position.getY()));
+    }
+
+    @Override
+    public int move(int id, String direction, int spaces) {
+        int dx = 0;
+        int dy = 0;
+        switch (direction) {
+            case "left":  dx = -spaces; break;
+            case "right": dx = spaces;  break;
+            case "up":    dy = spaces;  break;
+            case "down":  dy = -spaces; break;
+            default:      return 1;
+        }
+
+        PlayerState player = players.get().get(id);
+        if (player == null) {
+            return 1;
+        }
+        Position playerPos = player.position;
+
+        // Check if new position within board
+        int newX = playerPos.getX() + dx;
+        int newY = playerPos.getY() + dy;
+        if (newX < 0 || newX > width || newY < 0 || newY > height) {
+            return 2;
+        }
+
+        // Claim new position before releasing the old one, so no other
+        // player can ever take it meanwhile
+        if (!occupancy.compareAndSet(cell(newX, newY), 0, 1)) {
+            return 3;
+        }
+        occupancy.decrementAndGet(cell(playerPos.getX(), playerPos.getY()));
+        playerPos.incrementX(dx);
+        playerPos.incrementY(dy);
+        player.snapshot = player.snapshot.moved(newX, newY);
+        return 0;
+    }
+
+    @Override
+    public int capturePokemon(int id) {
+        PlayerState player = players.get().get(id);
+        if (player == null) {
+            return 1;
+        }
+        Position playerPos = player.position;
+
+        // Only one of the players sharing a cell wins the CAS
+        int cell = cell(playerPos.getX(), playerPos.getY());
+        int pokemonAtPos = pokemonPositions.get(cell);
+        if (pokemonAtPos == PokemonCatalog.NO_POKEMON
+                || !pokemonPositions.compareAndSet(cell, pokemonAtPos, PokemonCatalog.NO_POKEMON)) {
+            return 1;
+        }
+        pokemonIndex.update(playerPos.getX(), playerPos.getY(), pokemonPositions);
+        pokemonCount.decrementAndGet();
+
+        player.pokemons.add((short) pokemonAtPos);
+        if (player.pokemons.size() == GameBoard.WINNER_POKEMONS) {
+            winnerFound = true;
+        }
+        player.snapshot = player.snapshot.captured(pokemonAtPos);
+        return 0;
+    }
+
+    @Override
+    public int getRegion(int id, String direction, int spaces) {
+        PlayerState player = players.get().get(id);
+        if (player == null) {
+            return -1;
+        }
+        Position playerPos = player.position;
+
+        // Same regions as the locked board, cells hold no locks here
+        int x = playerPos.getX();
+        int y = playerPos.getY();
+        int ret = region(x, y);
+        if (direction != null) {
+            switch (direction) {
+                case "left":  x -= spaces; break;
+                case "right": x += spaces; break;
+                case "up":    y += spaces; break;
+                case "down":  y -= spaces; break;
+            }
+            if (x >= 0 && x <= width && y >= 0 && y <= height && region(x, y) != ret) {
+                ret = -1;
+            }
+        }
+        return ret;
+    }
+
+    @Override
+    public boolean spawnPokemon(int x, int y, short pokemon) {
+        if (x < 0 || x > width || y < 0 || y > height) {
+            return false;
+        }
+
+        int cell = cell(x, y);
+        if (occupancy.get(cell) != 0 || !pokemonPositions.compareAndSet(cell, PokemonCatalog.NO_POKEMON, pokemon)) {
+            return false;
+        }
+
+        // A player moving in between the check and the CAS would share the
+        // cell, so the pokemon is taken back unless the player captured it
+        // already. The index rereads the cell either way, in case a racing
+        // update saw the pokemon meanwhile
+        if (occupancy.get(cell) != 0 && pokemonPositions.compareAndSet(cell, pokemon, PokemonCatalog.NO_POKEMON)) {
+            pokemonIndex.update(x, y, pokemonPositions);
+            return false;
+        }
+        pokemonIndex.update(x, y, pokemonPositions);
+        pokemonCount.incrementAndGet();
+        return true;
+    }
+
+    @Override
+    public boolean isWinnerFound() {
+        return winnerFound;
+    }
+
+    @Override
+    public Position getPlayerPos(int id) {
+        PlayerState player = players.get().get(id);
+        return player != null ? player.position : null;
+    }
+
+    @Override
+    public PokemonSack getPlayerPokemons(int id) {
+        PlayerState player = players.get().get(id);
+        return player != null ? player.pokemons : new PokemonSack();
+    }
+
+    @Override
+    public int getPlayerVersion(int id) {
+        PlayerSnapshot ret = getPlayerSnapshot(id);
+        return ret != null ? ret.getVersion() : 0;
+    }
+
+    @Override
+    public PlayerSnapshot getPlayerSnapshot(int id) {
+        PlayerState player = players.get().get(id);
+        return player != null ? player.snapshot : null;
+    }
+
+    @Override
+    public int getPokemon(Position pos) {
+        int x = pos.getX();
+        int y = pos.getY();
+        int ret = PokemonCatalog.NO_POKEMON;
+        if (x >= 0 && x <= width && y >= 0 && y <= height) {
+            ret = pokemonPositions.get(cell(x, y));
+        }
+        return ret;
+    }
+
+    @Override
+    public ScanDetails scanPokemons(int x, int y, int radius) {
+        ScanDetails ret = new ScanDetails(x, y, radius, layout.getCatalog());
+        pokemonIndex.scan(x, y, radius, ret::add);
+        return ret;
+    }
+
+    @Override
+    public PokemonCatalog getCatalog() {
+        return layout.getCatalog();
+    }
+
+    @Override
+    public BoardDetails getDetails() {
+        return new BoardDetails(width, height, pokemonCount.get(), GameBoard.WINNER_POKEMONS);
+    }
+
+    /**
+     * Returns a changeable copy of a player table.
+     *
+     * @param table - Table to copy, left unchanged
+     * @return PlayerTable<PlayerState>
+     */
+    private static PlayerTable<PlayerState> copy(PlayerTable<PlayerState> table) {
+        PlayerTable<PlayerState> ret = new PlayerTable<>(table.size() + 1);
+        table.forEach(ret::put);
+        return ret;
+    }
+
+    /**
+     * Returns index of the region holding given position.
+     *
+     * @param x - x coordinate value
+     * @param y - y coordinate value
+     * @return int
+     */
+    private int region(int x, int y) {
+        return (y / GameBoard.REGION_SIZE) * (width / GameBoard.REGION_SIZE + 1) + x / GameBoard.REGION_SIZE;
+    }
+
+    /**
+     * Returns index of given position in the cell arrays.
+     *
+     * @param x - x coordinate value
+     * @param y - y coordinate value
+     * @return int
+     */
+    private int cell(int x, int y) {
+        return y * (width + 1) + x;
+    }
+
+    /**
+     * Return details of the game board.
+     *
+     * @return String
+     */
+    @Override
+    public String toString() {
+        return getDetails().toString();
+    }
+
+    /**
+     * State of one player active on this board.
+     */
+    private static final class PlayerState {
+        /**
+         * Position of player.
+         */
+        private final Position position;
+
+        /**
+         * List of pokemons captured by player.
+         */
+        private final PokemonSack pokemons;
+
+        /**
+         * Immutable state of player, swapped for a new version by the
+         * players own moves and captures.
+         */
+        private volatile PlayerSnapshot snapshot;
+
+        /**
+         * Constructor of a player without pokemons.
+         *
+         * @param position - Spawn position of player
+         */
+        private PlayerState(Position position) {
+            this.position = position;
+            this.pokemons = new PokemonSack();
+            this.snapshot = new PlayerSnapshot(position.getX(), position.getY());
+        }
+    }
+}
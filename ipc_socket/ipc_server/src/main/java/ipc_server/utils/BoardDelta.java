@@ -0,0 +1,137 @@
+package ipc_server.utils;
+
+/**
+ * One change of the board, as streamed to subscribers. Every delta states
+ * the new value of what it changed rather than the difference, so a
+ * delta already reflected in a subscribers snapshot can be applied again
+ * without harm.
+ */
+public class BoardDelta {
+    /*
+     * Kinds of change.
+     */
+    public static final int JOINED   = 0;
+    public static final int LEFT     = 1;
+    public static final int MOVED    = 2;
+    public static final int CAPTURED = 3;
+    public static final int SPAWNED  = 4;
+
+    /**
+     * Board version this change brought the board to.
+     */
+    private final long version;
+
+    /**
+     * One of the kinds of change.
+     */
+    private final int kind;
+
+    /**
+     * Player causing the change, 0 for spawns.
+     */
+    private final int playerID;
+
+    /**
+     * X coordinate of the player or cell changed.
+     */
+    private final int x;
+
+    /**
+     * Y coordinate of the player or cell changed.
+     */
+    private final int y;
+
+    /**
+     * Catalog ID of the pokemon spawned, NO_POKEMON for other kinds.
+     */
+    private final int pokemonID;
+
+    /**
+     * Catalog the pokemon ID refers to.
+     */
+    private final PokemonCatalog catalog;
+
+    /**
+     * Constructor.
+     *
+     * @param version - Board version this change brought the board to
+     * @param kind - One of the kinds of change
+     * @param playerID - Player causing the change, 0 for spawns
+     * @param x - x coordinate of the player or cell changed
+     * @param y - y coordinate of the player or cell changed
+     * @param pokemonID - Catalog ID of the pokemon spawned
+     * @param catalog - Catalog the pokemon ID refers to
+     */
+    public BoardDelta(long version, int kind, int playerID, int x, int y, int pokemonID, PokemonCatalog catalog) {
+        this.version = version;
+        this.kind = kind;
+        this.playerID = playerID;
+        this.x = x;
+        this.y = y;
+        this.pokemonID = pokemonID;
+        this.catalog = catalog;
+    }
+
+    /**
+     * Returns board version this change brought the board to.
+     *
+     * @return long
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns kind of change.
+     *
+     * @return int
+     */
+    public int getKind() {
+        return kind;
+    }
+
+    /**
+     * Returns player causing the change.
+     *
+     * @return int - 0 for spawns
+     */
+    public int getPlayerID() {
+        return playerID;
+    }
+
+    /**
+     * Returns x coordinate of the player or cell changed.
+     *
+     * @return int
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * Returns y coordinate of the player or cell changed.
+     *
+     * @return int
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * Returns catalog ID of the pokemon spawned.
+     *
+     * @return int - NO_POKEMON for other kinds
+     */
+    public int getPokemonID() {
+        return pokemonID;
+    }
+
+    /**
+     * Returns catalog the pokemon ID refers to.
+     *
+     * @return PokemonCatalog
+     */
+    public PokemonCatalog getCatalog() {
+        return catalog;
+    }
+}
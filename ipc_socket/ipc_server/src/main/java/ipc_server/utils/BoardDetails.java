@@ -0,0 +1,86 @@
+package ipc_server.utils;
+
+public class BoardDetails {
+    /**
+     * Width of board.
+     */
+    private final int width;
+
+    /**
+     * Height of board.
+     */
+    private final int height;
+
+    /**
+     * Number of pokemons left on board.
+     */
+    private final int pokemonCount;
+
+    /**
+     * Number of pokemons to capture to win.
+     */
+    private final int winnerPokemons;
+
+    /**
+     * Constructor.
+     *
+     * @param width - Width of board
+     * @param height - Height of board
+     * @param pokemonCount - Number of pokemons left on board
+     * @param winnerPokemons - Number of pokemons to capture to win
+     */
+    public BoardDetails(int width, int height, int pokemonCount, int winnerPokemons) {
+        this.width = width;
+        this.height = height;
+        this.pokemonCount = pokemonCount;
+        this.winnerPokemons = winnerPokemons;
+    }
+
+    /**
+     * Returns width of board.
+     *
+     * @return int
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns height of board.
+     *
+     * @return int
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns number of pokemons left on board.
+     *
+     * @return int
+     */
+    public int getPokemonCount() {
+        return pokemonCount;
+    }
+
+    /**
+     * Returns number of pokemons to capture to win.
+     *
+     * @return int
+     */
+    public int getWinnerPokemons() {
+        return winnerPokemons;
+    }
+
+    /**
+     * Return details of the game board.
+     *
+     * @return String
+     */
+    @Override
+    public String toString() {
+        return "Board size: (" + width + ", " + height + ")\n" +
+               "Number of pokemons: " + pokemonCount + "\n" +
+               "First player to capture " + winnerPokemons + " pokemons wins! Good luck";
+    }
+}
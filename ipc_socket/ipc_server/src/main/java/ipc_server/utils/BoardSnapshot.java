@@ -0,0 +1,112 @@
+package ipc_server.utils;
+
+public class BoardSnapshot {
+    /**
+     * Board version the delta stream of the subscriber starts from.
+     */
+    private final long version;
+
+    /**
+     * Board details.
+     */
+    private final BoardDetails board;
+
+    /**
+     * Every pokemon on the board.
+     */
+    private final ScanDetails pokemons;
+
+    /**
+     * IDs of the players on the board.
+     */
+    private final int[] playerIDs;
+
+    /**
+     * Positions of the players, packed as x << 16 | y, parallel to playerIDs.
+     */
+    private final int[] playerPositions;
+
+    /**
+     * Constructor.
+     *
+     * @param version - Board version the delta stream starts from
+     * @param board - Board details
+     * @param pokemons - Every pokemon on the board
+     * @param playerIDs - IDs of the players on the board
+     * @param playerPositions - Packed positions of the players
+     */
+    public BoardSnapshot(long version, BoardDetails board, ScanDetails pokemons, int[] playerIDs,
+                         int[] playerPositions) {
+        this.version = version;
+        this.board = board;
+        this.pokemons = pokemons;
+        this.playerIDs = playerIDs;
+        this.playerPositions = playerPositions;
+    }
+
+    /**
+     * Returns board version the delta stream starts from.
+     *
+     * @return long
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns board details.
+     *
+     * @return BoardDetails
+     */
+    public BoardDetails getBoard() {
+        return board;
+    }
+
+    /**
+     * Returns every pokemon on the board.
+     *
+     * @return ScanDetails
+     */
+    public ScanDetails getPokemons() {
+        return pokemons;
+    }
+
+    /**
+     * Returns number of players on the board.
+     *
+     * @return int
+     */
+    public int getPlayerCount() {
+        return playerIDs.length;
+    }
+
+    /**
+     * Returns ID of a player.
+     *
+     * @param i - Index of player, below getPlayerCount()
+     * @return int
+     */
+    public int getPlayerID(int i) {
+        return playerIDs[i];
+    }
+
+    /**
+     * Returns x coordinate of a player.
+     *
+     * @param i - Index of player, below getPlayerCount()
+     * @return int
+     */
+    public int getPlayerX(int i) {
+        return playerPositions[i] >>> 16;
+    }
+
+    /**
+     * Returns y coordinate of a player.
+     *
+     * @param i - Index of player, below getPlayerCount()
+     * @return int
+     */
+    public int getPlayerY(int i) {
+        return playerPositions[i] & 0xFFFF;
+    }
+}
@@ -0,0 +1,237 @@
+package ipc_server.utils;
+
+import ipc_server.interfaces.PlayerConnection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Versioned stream of board changes. Every change published bumps the
+ * board version by one and is pushed to every subscriber, in version
+ * order, so a subscriber missing a version knows it missed a delta.
+ *
+ * Publishers take their version from a counter and drop the delta in a
+ * ring slot, never waiting on each other. Whichever publisher finds the
+ * push lock free pushes every delta ready in version order, stopping at
+ * a slot still empty; its own publisher pushes it once filled.
+ *
+ * A subscriber is registered before its snapshot of the board is read,
+ * so it hears of every change the snapshot may not show. Changes the
+ * snapshot already shows are repeated harmlessly, deltas carry new values.
+ * Changes of a player follow one another through that players own
+ * commands, but a pokemon cell is changed by captures and respawns alike,
+ * so those are committed through commit, serialized per cell only, to
+ * publish in the order they were applied.
+ */
+public class DeltaStream {
+    /**
+     * Number of deltas published ahead of the last one pushed before
+     * publishers wait for a free slot.
+     */
+    private static final int RING_SIZE = 1024;
+
+    /**
+     * Number of locks cells are committed under.
+     */
+    private static final int CELL_STRIPES = 64;
+
+    /**
+     * Version of the last delta published.
+     */
+    private final AtomicLong version;
+
+    /**
+     * Deltas published but not yet pushed, indexed by slot(). A slot is
+     * emptied once its delta is pushed.
+     */
+    private final AtomicReferenceArray<BoardDelta> ring;
+
+    /**
+     * Version of the last delta pushed.
+     */
+    private volatile long pushed;
+
+    /**
+     * Connections of subscribers.
+     */
+    private final List<PlayerConnection> subscribers;
+
+    /**
+     * Lock guarding subscribers, held while deltas are pushed.
+     */
+    private final Lock pushLock;
+
+    /**
+     * Locks serializing changes of the same cell, indexed by stripe().
+     */
+    private final Lock[] cellLocks;
+
+    /**
+     * Catalog the pokemon IDs of deltas refer to.
+     */
+    private final PokemonCatalog catalog;
+
+    /**
+     * Constructor of a stream without subscribers, at version 0.
+     *
+     * @param catalog - Catalog the pokemon IDs of deltas refer to
+     */
+    public DeltaStream(PokemonCatalog catalog) {
+        this.catalog = catalog;
+        version = new AtomicLong();
+        ring = new AtomicReferenceArray<>(RING_SIZE);
+        pushed = 0;
+        subscribers = new ArrayList<>();
+        pushLock = new ReentrantLock();
+        cellLocks = new Lock[CELL_STRIPES];
+        for (int i = 0; i < cellLocks.length; i++) {
+            cellLocks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Adds a subscriber.
+     *
+     * @param connection - Connection deltas are pushed on
+     * @return long - Current version, the next delta pushed is one above it
+     */
+    public long subscribe(PlayerConnection connection) {
+        long ret;
+        pushLock.lock();
+        try {
+            subscribers.add(connection);
+            ret = pushed;
+        }
+        finally {
+            pushLock.unlock();
+        }
+
+        // Deltas published while the lock was held wait for a push
+        push();
+        return ret;
+    }
+
+    /**
+     * Returns current version, the version of the last delta pushed. Every
+     * change published at or below it is applied to the board.
+     *
+     * @return long
+     */
+    public long getVersion() {
+        return pushed;
+    }
+
+    /**
+     * Removes a subscriber.
+     *
+     * @param connection - Connection deltas were pushed on
+     */
+    public void unsubscribe(PlayerConnection connection) {
+        pushLock.lock();
+        try {
+            subscribers.remove(connection);
+        }
+        finally {
+            pushLock.unlock();
+        }
+        push();
+    }
+
+    /**
+     * Applies a change of a cell and publishes its delta before any other
+     * change of the same cell. Changes of other cells run alongside.
+     *
+     * @param x - x coordinate of cell changed
+     * @param y - y coordinate of cell changed
+     * @param change - Change of the board, publishing its delta if any
+     * @return T - Result of change
+     */
+    public <T> T commit(int x, int y, Supplier<T> change) {
+        Lock lock = cellLocks[stripe(x, y)];
+        lock.lock();
+        try {
+            return change.get();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Publishes a change of the board to every subscriber. Pushes only
+     * queue the delta.
+     *
+     * @param kind - One of the BoardDelta kinds
+     * @param playerID - Player causing the change, 0 for spawns
+     * @param x - x coordinate of the player or cell changed
+     * @param y - y coordinate of the player or cell changed
+     * @param pokemonID - Catalog ID of the pokemon spawned, NO_POKEMON otherwise
+     */
+    public void publish(int kind, int playerID, int x, int y, int pokemonID) {
+        long next = version.incrementAndGet();
+        BoardDelta delta = new BoardDelta(next, kind, playerID, x, y, pokemonID, catalog);
+
+        // The slot is free once the delta a whole ring below is pushed,
+        // and the lowest delta not pushed always has its slot
+        while (next - pushed > RING_SIZE) {
+            push();
+            Thread.yield();
+        }
+        ring.set(slot(next), delta);
+        push();
+    }
+
+    /**
+     * Pushes every delta ready in version order, unless another thread
+     * is pushing already. A delta whose publisher found the lock taken is
+     * picked up by the check after the lock is released.
+     */
+    private void push() {
+        while (pushLock.tryLock()) {
+            try {
+                long next = pushed + 1;
+                BoardDelta delta;
+                while ((delta = ring.get(slot(next))) != null) {
+                    ring.set(slot(next), null);
+                    for (PlayerConnection subscriber : subscribers) {
+                        subscriber.sendDelta(delta);
+                    }
+                    pushed = next++;
+                }
+            }
+            finally {
+                pushLock.unlock();
+            }
+
+            if (ring.get(slot(pushed + 1)) == null) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns ring slot of a version.
+     *
+     * @param version - Delta version
+     * @return int
+     */
+    private static int slot(long version) {
+        return (int) (version & (RING_SIZE - 1));
+    }
+
+    /**
+     * Returns index of the lock a cell is committed under.
+     *
+     * @param x - x coordinate value
+     * @param y - y coordinate value
+     * @return int
+     */
+    private static int stripe(int x, int y) {
+        return (x * 31 + y) & (CELL_STRIPES - 1);
+    }
+}
@@ -0,0 +1,252 @@
+package ipc_server.utils;
+
+import ipc_server.interfaces.PlayerConnection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Players grouped by the block of cells they stand in, so events on the
+ * board are pushed only to the players near them. A player is interested
+ * in events up to reach blocks away from its own block along both axes.
+ *
+ * Publishing an event visits the few blocks within reach of it, so its
+ * cost follows the number of players close by rather than the number of
+ * players on the board. Each block has its own ReentrantLock, so players
+ * may be tracked and events published from any thread, virtual threads
+ * included, without pinning their carrier. A move between blocks locks
+ * both, and publishing locks every block it visits, always in index
+ * order, so no player is ever missed while moving and none deadlock.
+ */
+public class InterestGrid {
+    /**
+     * Width and height in cells of a block.
+     */
+    public static final int BLOCK_SIZE = GameBoard.REGION_SIZE;
+
+    /**
+     * Number of blocks away from its own a player hears events from.
+     */
+    private final int reach;
+
+    /**
+     * Number of blocks across the board.
+     */
+    private final int blockColumns;
+
+    /**
+     * Number of blocks down the board.
+     */
+    private final int blockRows;
+
+    /**
+     * Connections of the players in each block, indexed by block(). Read
+     * through blockAt(), as Java has no generic arrays.
+     */
+    private final PlayerTable<?>[] blocks;
+
+    /**
+     * Lock guarding each block, parallel to blocks.
+     */
+    private final Lock[] blockLocks;
+
+    /**
+     * Constructor of a grid without players.
+     *
+     * @param width - Width of board
+     * @param height - Height of board
+     * @param reach - Number of blocks away from its own a player hears events from
+     */
+    public InterestGrid(int width, int height, int reach) {
+        this.reach = reach;
+        this.blockColumns = width / BLOCK_SIZE + 1;
+        this.blockRows = height / BLOCK_SIZE + 1;
+        this.blocks = new PlayerTable<?>[blockColumns * blockRows];
+        this.blockLocks = new Lock[blocks.length];
+        for (int i = 0; i < blocks.length; i++) {
+            blocks[i] = new PlayerTable<PlayerConnection>();
+            blockLocks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Starts tracking a player.
+     *
+     * @param id - Player ID
+     * @param x - x coordinate of player
+     * @param y - y coordinate of player
+     * @param connection - Connection events are pushed on
+     */
+    public void add(int id, int x, int y, PlayerConnection connection) {
+        int index = block(x, y);
+        blockLocks[index].lock();
+        try {
+            blockAt(index).put(id, connection);
+        }
+        finally {
+            blockLocks[index].unlock();
+        }
+    }
+
+    /**
+     * Stops tracking a player.
+     *
+     * @param id - Player ID
+     * @param x - x coordinate of player
+     * @param y - y coordinate of player
+     */
+    public void remove(int id, int x, int y) {
+        int index = block(x, y);
+        blockLocks[index].lock();
+        try {
+            blockAt(index).remove(id);
+        }
+        finally {
+            blockLocks[index].unlock();
+        }
+    }
+
+    /**
+     * Follows a player to a new position. Only moves into another block
+     * touch the grid. Both blocks are locked in index order, so the player
+     * is in one of them throughout and moves crossing each other cannot
+     * deadlock.
+     *
+     * @param id - Player ID
+     * @param oldX - x coordinate moved from
+     * @param oldY - y coordinate moved from
+     * @param newX - x coordinate moved to
+     * @param newY - y coordinate moved to
+     */
+    public void move(int id, int oldX, int oldY, int newX, int newY) {
+        int from = block(oldX, oldY);
+        int to = block(newX, newY);
+        if (from == to) {
+            return;
+        }
+
+        Lock first = blockLocks[Math.min(from, to)];
+        Lock second = blockLocks[Math.max(from, to)];
+        first.lock();
+        second.lock();
+        try {
+            PlayerConnection connection = blockAt(from).remove(id);
+            if (connection != null) {
+                blockAt(to).put(id, connection);
+            }
+        }
+        finally {
+            second.unlock();
+            first.unlock();
+        }
+    }
+
+    /**
+     * Pushes a message to every player interested in a position, except
+     * the one causing it.
+     *
+     * @param excludeID - Player not to send to
+     * @param x - x coordinate of event
+     * @param y - y coordinate of event
+     * @param msg - Message to send
+     */
+    public void publish(int excludeID, int x, int y, String msg) {
+        publish(excludeID, x, y, x, y, msg);
+    }
+
+    /**
+     * Pushes a message to every player interested in either of two
+     * positions, e.g. both ends of a move, except the one causing it.
+     * Players interested in both hear it once.
+     *
+     * @param excludeID - Player not to send to
+     * @param x1 - x coordinate of first position
+     * @param y1 - y coordinate of first position
+     * @param x2 - x coordinate of second position
+     * @param y2 - y coordinate of second position
+     * @param msg - Message to send
+     */
+    public void publish(int excludeID, int x1, int y1, int x2, int y2, String msg) {
+        int column1 = x1 / BLOCK_SIZE;
+        int row1 = y1 / BLOCK_SIZE;
+        int column2 = x2 / BLOCK_SIZE;
+        int row2 = y2 / BLOCK_SIZE;
+
+        // Blocks within reach of either position, each visited once. All
+        // stay locked until every one is read, in index order as moves
+        // take them, so a player moving between two of them is seen once
+        final List<PlayerConnection> connections = new ArrayList<>();
+        int minRow = Math.max(0, Math.min(row1, row2) - reach);
+        int maxRow = Math.min(blockRows - 1, Math.max(row1, row2) + reach);
+        int minColumn = Math.max(0, Math.min(column1, column2) - reach);
+        int maxColumn = Math.min(blockColumns - 1, Math.max(column1, column2) + reach);
+        int[] locked = new int[(maxRow - minRow + 1) * (maxColumn - minColumn + 1)];
+        int lockedCount = 0;
+        try {
+            for (int row = minRow; row <= maxRow; row++) {
+                for (int column = minColumn; column <= maxColumn; column++) {
+                    if (!inReach(column, row, column1, row1) && !inReach(column, row, column2, row2)) {
+                        continue;
+                    }
+
+                    int index = row * blockColumns + column;
+                    blockLocks[index].lock();
+                    locked[lockedCount++] = index;
+                    blockAt(index).forEach((id, connection) -> {
+                        if (id != excludeID) {
+                            connections.add(connection);
+                        }
+                    });
+                }
+            }
+        }
+        finally {
+            for (int i = 0; i < lockedCount; i++) {
+                blockLocks[locked[i]].unlock();
+            }
+        }
+
+        // Pushes only queue messages, but stay outside the block locks anyway
+        for (PlayerConnection connection : connections) {
+            connection.sendMsg(msg);
+        }
+    }
+
+    /**
+     * Checks if a block is within reach of another.
+     *
+     * @param column - Column of block
+     * @param row - Row of block
+     * @param centerColumn - Column of other block
+     * @param centerRow - Row of other block
+     * @return boolean
+     */
+    private boolean inReach(int column, int row, int centerColumn, int centerRow) {
+        return Math.abs(column - centerColumn) <= reach && Math.abs(row - centerRow) <= reach;
+    }
+
+    /**
+     * Returns index of the block holding given position.
+     *
+     * @param x - x coordinate value
+     * @param y - y coordinate value
+     * @return int
+     */
+    private int block(int x, int y) {
+        return (y / BLOCK_SIZE) * blockColumns + x / BLOCK_SIZE;
+    }
+
+    /**
+     * Block of connections at an index. Every block is created holding
+     * connections, so the cast always holds.
+     *
+     * @param index - Block index
+     * @return PlayerTable<PlayerConnection> - Connections in block
+     */
+    @SuppressWarnings("unchecked")
+    private PlayerTable<PlayerConnection> blockAt(int index) {
+        return (PlayerTable<PlayerConnection>) blocks[index];
+    }
+}
@@ -0,0 +1,283 @@
+package ipc_server.utils;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Queue of encoded messages waiting to be written to one client.
+ *
+ * Replies are always accepted, the connection stops reading requests
+ * while the queue is full. Pushes from other players never block: once
+ * the queue holds capacity messages the slow consumer policy decides
+ * what happens to them.
+ */
+public class OutboundQueue {
+    /**
+     * What to do with a push to a client whose queue is full.
+     */
+    public enum Policy {
+        /**
+         * Discard the push.
+         */
+        DROP,
+
+        /**
+         * Disconnect the client.
+         */
+        DISCONNECT,
+
+        /**
+         * Keep only the latest push that did not fit, delivered once the
+         * client catches up.
+         */
+        COALESCE
+    }
+
+    /**
+     * Default number of queued messages per client.
+     */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    /**
+     * Queued messages.
+     */
+    private final ArrayDeque<byte[]> queue;
+
+    /**
+     * Number of queued messages above which pushes are subject to policy.
+     */
+    private final int capacity;
+
+    /**
+     * Slow consumer policy.
+     */
+    private final Policy policy;
+
+    /**
+     * Latest push that did not fit, COALESCE policy only.
+     */
+    private byte[] coalesced;
+
+    /**
+     * Flag set once the connection is closed.
+     */
+    private boolean closed;
+
+    /**
+     * Lock guarding the queue.
+     */
+    private final Lock lock;
+
+    /**
+     * Signalled when a message is queued or the queue is closed.
+     */
+    private final Condition notEmpty;
+
+    /**
+     * Signalled when the queue drops below capacity or is closed.
+     */
+    private final Condition notFull;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity - Number of queued messages per client
+     * @param policy - Slow consumer policy
+     */
+    public OutboundQueue(int capacity, Policy policy) {
+        this.queue = new ArrayDeque<>();
+        this.capacity = capacity;
+        this.policy = policy;
+        this.coalesced = null;
+        this.closed = false;
+        this.lock = new ReentrantLock();
+        this.notEmpty = lock.newCondition();
+        this.notFull = lock.newCondition();
+    }
+
+    /**
+     * Queues a reply. Never blocks or fails.
+     *
+     * @param data - Encoded message
+     */
+    public void offerReply(byte[] data) {
+        lock.lock();
+        try {
+            if (!closed) {
+                queue.add(data);
+                notEmpty.signal();
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queues a push from another player. Never blocks.
+     *
+     * @param data - Encoded message
+     * @return boolean - false if the client should be disconnected
+     */
+    public boolean offerPush(byte[] data) {
+        lock.lock();
+        try {
+            if (closed) {
+                return true;
+            }
+
+            if (queue.size() < capacity) {
+                queue.add(data);
+                notEmpty.signal();
+                return true;
+            }
+
+            switch (policy) {
+                case DISCONNECT:
+                    return false;
+
+                case COALESCE:
+                    coalesced = data;
+                    return true;
+
+                default:
+                    return true;
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the next message without blocking.
+     *
+     * @return byte[] - null if queue is empty
+     */
+    public byte[] poll() {
+        lock.lock();
+        try {
+            return next();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the next message, waiting for one if needed.
+     *
+     * @return byte[] - null once the queue is closed
+     * @throws InterruptedException - If interrupted while waiting
+     */
+    public byte[] take() throws InterruptedException {
+        lock.lock();
+        try {
+            byte[] ret;
+            while ((ret = next()) == null && !closed) {
+                notEmpty.await();
+            }
+            return ret;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the queue is below capacity.
+     *
+     * @throws InterruptedException - If interrupted while waiting
+     */
+    public void awaitNotFull() throws InterruptedException {
+        lock.lock();
+        try {
+            while (queue.size() >= capacity && !closed) {
+                notFull.await();
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checks if the queue has reached capacity.
+     *
+     * @return boolean
+     */
+    public boolean isFull() {
+        lock.lock();
+        try {
+            return queue.size() >= capacity;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checks if there is nothing left to write.
+     *
+     * @return boolean
+     */
+    public boolean isEmpty() {
+        lock.lock();
+        try {
+            return queue.isEmpty() && coalesced == null;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes the queue, waking up any waiting writer or reader. Messages
+     * already queued are still handed out.
+     */
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the next message. Caller must hold the lock.
+     *
+     * @return byte[] - null if queue is empty
+     */
+    private byte[] next() {
+        byte[] ret = queue.poll();
+        if (ret == null && coalesced != null) {
+            ret = coalesced;
+            coalesced = null;
+        }
+        if (ret != null && queue.size() < capacity) {
+            notFull.signalAll();
+        }
+        return ret;
+    }
+
+    /**
+     * Parses a slow consumer policy name.
+     *
+     * @param name - drop|disconnect|coalesce
+     * @return Policy - null if name is unknown
+     */
+    public static Policy parsePolicy(String name) {
+        switch (name) {
+            case "drop": return Policy.DROP;
+            case "disconnect": return Policy.DISCONNECT;
+            case "coalesce": return Policy.COALESCE;
+            default: return null;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package ipc_server.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class PlayerDetails {
+    /**
+     * Player ID.
+     */
+    private final int id;
+
+    /**
+     * X coordinate of player.
+     */
+    private final int x;
+
+    /**
+     * Y coordinate of player.
+     */
+    private final int y;
+
+    /**
+     * Catalog IDs of pokemons captured by player.
+     */
+    private final int[] pokemonIDs;
+
+    /**
+     * Catalog ID of pokemon at players position, -1 if none.
+     */
+    private final int pokemonAtPosID;
+
+    /**
+     * Catalog the pokemon IDs refer to.
+     */
+    private final PokemonCatalog catalog;
+
+    /**
+     * Version of the players state these details show.
+     */
+    private final int version;
+
+    /**
+     * Constructor.
+     *
+     * @param id - Player ID
+     * @param x - x coordinate of player
+     * @param y - y coordinate of player
+     * @param pokemonIDs - Catalog IDs of captured pokemons
+     * @param pokemonAtPosID - Catalog ID of pokemon at players position
+     * @param catalog - Catalog the pokemon IDs refer to
+     * @param version - Version of the players state
+     */
+    public PlayerDetails(int id, int x, int y, int[] pokemonIDs, int pokemonAtPosID, PokemonCatalog catalog,
+                         int version) {
+        this.id = id;
+        this.x = x;
+        this.y = y;
+        this.pokemonIDs = pokemonIDs;
+        this.pokemonAtPosID = pokemonAtPosID;
+        this.catalog = catalog;
+        this.version = version;
+    }
+
+    /**
+     * Returns player ID.
+     *
+     * @return int
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns x coordinate of player.
+     *
+     * @return int
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * Returns y coordinate of player.
+     *
+     * @return int
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * Returns names of captured pokemons.
+     *
+     * @return List<String>
+     */
+    public List<String> getPokemons() {
+        List<String> ret = new ArrayList<>(pokemonIDs.length);
+        for (int pokemonID : pokemonIDs) {
+            ret.add(catalog.getName(pokemonID));
+        }
+        return ret;
+    }
+
+    /**
+     * Returns catalog IDs of captured pokemons.
+     *
+     * @return int[]
+     */
+    public int[] getPokemonIDs() {
+        return pokemonIDs;
+    }
+
+    /**
+     * Returns name of pokemon at players position.
+     *
+     * @return String
+     */
+    public String getPokemonAtPos() {
+        return catalog.getName(pokemonAtPosID);
+    }
+
+    /**
+     * Returns catalog ID of pokemon at players position.
+     *
+     * @return int
+     */
+    public int getPokemonAtPosID() {
+        return pokemonAtPosID;
+    }
+
+    /**
+     * Returns catalog the pokemon IDs refer to.
+     *
+     * @return PokemonCatalog
+     */
+    public PokemonCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * Returns version of the players state these details show.
+     *
+     * @return int
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns player details in the text protocol format.
+     *
+     * @return String
+     */
+    @Override
+    public String toString() {
+        return "Player ID: " + id + "\n" +
+               "Position: (" + x + ", " + y + ")\n" +
+               "Captured Pokemons: " + getPokemons().toString() + "\n" +
+               "Pokemon at current position: " + getPokemonAtPos() + "\n" +
+               "Version: " + version;
+    }
+}
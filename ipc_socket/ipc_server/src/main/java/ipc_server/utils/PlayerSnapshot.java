@@ -0,0 +1,111 @@
+package ipc_server.utils;
+
+import java.util.Arrays;
+
+/**
+ * Immutable state of a player at one version. Boards swap in a new
+ * snapshot with every move and capture of the player, so readers holding
+ * no lock always see a position and pokemons that belong together.
+ */
+public final class PlayerSnapshot {
+    /**
+     * Position of player.
+     */
+    private final int x;
+    private final int y;
+
+    /**
+     * Catalog IDs of the pokemons captured, in capture order. Never changed.
+     */
+    private final int[] pokemonIDs;
+
+    /**
+     * Version of the players state.
+     */
+    private final int version;
+
+    /**
+     * Constructor of a player just joined, at version 1.
+     *
+     * @param x - x coordinate of spawn position
+     * @param y - y coordinate of spawn position
+     */
+    public PlayerSnapshot(int x, int y) {
+        this(x, y, new int[0], 1);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param x - x coordinate of player
+     * @param y - y coordinate of player
+     * @param pokemonIDs - Catalog IDs of the pokemons captured, never changed afterwards
+     * @param version - Version of the players state
+     */
+    private PlayerSnapshot(int x, int y, int[] pokemonIDs, int version) {
+        this.x = x;
+        this.y = y;
+        this.pokemonIDs = pokemonIDs;
+        this.version = version;
+    }
+
+    /**
+     * Returns state of the player after a move, at the next version.
+     *
+     * @param newX - x coordinate moved to
+     * @param newY - y coordinate moved to
+     * @return PlayerSnapshot
+     */
+    public PlayerSnapshot moved(int newX, int newY) {
+        return new PlayerSnapshot(newX, newY, pokemonIDs, version + 1);
+    }
+
+    /**
+     * Returns state of the player after a capture, at the next version.
+     *
+     * @param pokemonID - Catalog ID of the pokemon captured
+     * @return PlayerSnapshot
+     */
+    public PlayerSnapshot captured(int pokemonID) {
+        int[] captured = Arrays.copyOf(pokemonIDs, pokemonIDs.length + 1);
+        captured[pokemonIDs.length] = pokemonID;
+        return new PlayerSnapshot(x, y, captured, version + 1);
+    }
+
+    /**
+     * Returns x coordinate of player.
+     *
+     * @return int
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * Returns y coordinate of player.
+     *
+     * @return int
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * Returns catalog IDs of the pokemons captured, shared and not to be
+     * changed.
+     *
+     * @return int[]
+     */
+    public int[] getPokemonIDs() {
+        return pokemonIDs;
+    }
+
+    /**
+     * Returns version of the players state.
+     *
+     * @return int
+     */
+    public int getVersion() {
+        return version;
+    }
+}
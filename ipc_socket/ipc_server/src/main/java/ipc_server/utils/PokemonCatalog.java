@@ -0,0 +1,441 @@
+package ipc_server.utils;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Table of every pokemon, loaded once. Boards and players hold pokemons
+ * as short catalog IDs, running from 0 in csv order, and look names and
+ * stats up here. Each name is also kept UTF-8 encoded so replies copy it
+ * instead of encoding it again.
+ *
+ * The build compiles the pokemon csv into a binary catalog on the
+ * classpath by running main. The binary catalog is a header, one array of
+ * ints per stat column and then the length prefixed UTF-8 names, so
+ * loading it is a straight read without any parsing. The csv is only
+ * parsed if the binary catalog is missing, e.g. when running unbuilt
+ * sources.
+ */
+public class PokemonCatalog {
+    /**
+     * Path of csv holding list of pokemons.
+     */
+    public static final String POKEMON_CSV_FILEPATH = "src/main/resources/ipc_server/pokemon.csv";
+
+    /**
+     * Classpath resource holding the binary catalog.
+     */
+    public static final String POKEMON_CATALOG_RESOURCE = "/ipc_server/pokemon.bin";
+
+    /**
+     * Tag opening a binary catalog, "PKCT".
+     */
+    private static final int CATALOG_MAGIC = 0x504B4354;
+
+    /**
+     * Version of the binary catalog layout.
+     */
+    private static final int CATALOG_VERSION = 1;
+
+    /**
+     * Catalog ID standing for no pokemon.
+     */
+    public static final short NO_POKEMON = -1;
+
+    /*
+     * Columns of the pokemon csv.
+     */
+    private static final int COLUMN_IDENTIFIER      = 1;
+    private static final int COLUMN_SPECIES_ID      = 2;
+    private static final int COLUMN_HEIGHT          = 3;
+    private static final int COLUMN_WEIGHT          = 4;
+    private static final int COLUMN_BASE_EXPERIENCE = 5;
+
+    /**
+     * Catalog loaded from POKEMON_CSV_FILEPATH, null until first used.
+     */
+    private static PokemonCatalog instance;
+
+    /**
+     * Name of each pokemon, indexed by catalog ID.
+     */
+    private final String[] names;
+
+    /**
+     * UTF-8 encoded name of each pokemon, indexed by catalog ID.
+     */
+    private final byte[][] nameBytes;
+
+    /**
+     * Species of each pokemon, indexed by catalog ID.
+     */
+    private final int[] speciesIDs;
+
+    /**
+     * Height of each pokemon in decimetres, indexed by catalog ID.
+     */
+    private final int[] heights;
+
+    /**
+     * Weight of each pokemon in hectograms, indexed by catalog ID.
+     */
+    private final int[] weights;
+
+    /**
+     * Experience gained for each pokemon, indexed by catalog ID.
+     */
+    private final int[] baseExperience;
+
+    /**
+     * Catalog ID of each pokemon name.
+     */
+    private final Map<String, Short> ids;
+
+    /**
+     * Weighted choice of the pokemon to spawn.
+     */
+    private final SpawnTable spawnTable;
+
+    /**
+     * Constructor taking every column, indexed by catalog ID.
+     *
+     * @param names - Pokemon names
+     * @param speciesIDs - Species of each pokemon
+     * @param heights - Height of each pokemon
+     * @param weights - Weight of each pokemon
+     * @param baseExperience - Experience gained for each pokemon
+     */
+    private PokemonCatalog(String[] names, int[] speciesIDs, int[] heights, int[] weights, int[] baseExperience) {
+        this.names          = names;
+        this.nameBytes      = new byte[names.length][];
+        this.speciesIDs     = speciesIDs;
+        this.heights        = heights;
+        this.weights        = weights;
+        this.baseExperience = baseExperience;
+        this.ids            = new HashMap<>();
+
+        for (int i = 0; i < names.length; i++) {
+            nameBytes[i] = names[i].getBytes(StandardCharsets.UTF_8);
+            ids.put(names[i], (short) i);
+        }
+        this.spawnTable = new SpawnTable(this);
+    }
+
+    /**
+     * Returns the catalog, loading it on first use from the binary catalog
+     * resource, or from POKEMON_CSV_FILEPATH if there is none.
+     *
+     * @return PokemonCatalog - null if the catalog could not be read
+     */
+    public static synchronized PokemonCatalog getInstance() {
+        if (instance == null) {
+            InputStream in = PokemonCatalog.class.getResourceAsStream(POKEMON_CATALOG_RESOURCE);
+            instance = in != null ? read(in) : load(POKEMON_CSV_FILEPATH);
+        }
+        return instance;
+    }
+
+    /**
+     * Reads a binary catalog written by write.
+     *
+     * @param in - Stream holding the binary catalog, closed afterwards
+     * @return PokemonCatalog - null if the catalog could not be read
+     */
+    public static PokemonCatalog read(InputStream in) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            byte[] chunk = new byte[8192];
+            int count;
+            while ((count = in.read(chunk)) != -1) {
+                bytes.write(chunk, 0, count);
+            }
+        }
+        catch (IOException e) {
+            System.out.println("ERROR: " + e.getMessage());
+            return null;
+        }
+        finally {
+            try {
+                in.close();
+            }
+            catch (IOException e) {
+                System.out.println("ERROR: " + e.getMessage());
+            }
+        }
+        return read(ByteBuffer.wrap(bytes.toByteArray()));
+    }
+
+    /**
+     * Reads a binary catalog written by write.
+     *
+     * @param buffer - Buffer holding the binary catalog
+     * @return PokemonCatalog - null if the catalog is malformed
+     */
+    public static PokemonCatalog read(ByteBuffer buffer) {
+        try {
+            if (buffer.getInt() != CATALOG_MAGIC || buffer.getInt() != CATALOG_VERSION) {
+                System.out.println("ERROR: Unknown pokemon catalog format");
+                return null;
+            }
+
+            int count = buffer.getInt();
+            int[] speciesIDs = readColumn(buffer, count);
+            int[] heights = readColumn(buffer, count);
+            int[] weights = readColumn(buffer, count);
+            int[] baseExperience = readColumn(buffer, count);
+
+            String[] names = new String[count];
+            for (int i = 0; i < count; i++) {
+                byte[] name = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(name);
+                names[i] = new String(name, StandardCharsets.UTF_8);
+            }
+            return new PokemonCatalog(names, speciesIDs, heights, weights, baseExperience);
+        }
+        catch (BufferUnderflowException | NegativeArraySizeException e) {
+            System.out.println("ERROR: Truncated pokemon catalog");
+            return null;
+        }
+    }
+
+    /**
+     * Reads one stat column of a binary catalog.
+     *
+     * @param buffer - Buffer holding the binary catalog
+     * @param count - Number of pokemons
+     * @return int[]
+     */
+    private static int[] readColumn(ByteBuffer buffer, int count) {
+        int[] ret = new int[count];
+        buffer.asIntBuffer().get(ret);
+        buffer.position(buffer.position() + count * 4);
+        return ret;
+    }
+
+    /**
+     * Writes this catalog in the binary format read by read.
+     *
+     * @param out - Stream to write to
+     * @throws IOException - If write fails
+     */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(CATALOG_MAGIC);
+        out.writeInt(CATALOG_VERSION);
+        out.writeInt(names.length);
+        for (int[] column : new int[][] { speciesIDs, heights, weights, baseExperience }) {
+            for (int value : column) {
+                out.writeInt(value);
+            }
+        }
+        for (byte[] name : nameBytes) {
+            out.writeShort(name.length);
+            out.write(name);
+        }
+    }
+
+    /**
+     * Parses a catalog from given csv file, skipping its header line.
+     *
+     * @param filePath - Path to csv file
+     * @return PokemonCatalog - null if the file could not be read
+     */
+    public static PokemonCatalog load(String filePath) {
+        List<String[]> rows = new ArrayList<>();
+        BufferedReader br = null;
+        try {
+            br = new BufferedReader(new FileReader(filePath));
+            // Skip header
+            String line = br.readLine();
+            while ((line = br.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty()) {
+                    rows.add(line.split(","));
+                }
+            }
+        }
+        catch (IOException e) {
+            System.out.println("ERROR: " + e.getMessage());
+            return null;
+        }
+        finally {
+            if (br != null) {
+                try {
+                    br.close();
+                }
+                catch (IOException e) {
+                    System.out.println("ERROR: " + e.getMessage());
+                }
+            }
+        }
+
+        int count = rows.size();
+        if (count > Short.MAX_VALUE) {
+            System.out.println("ERROR: Too many pokemons in " + filePath);
+            return null;
+        }
+
+        String[] names = new String[count];
+        int[] speciesIDs = new int[count];
+        int[] heights = new int[count];
+        int[] weights = new int[count];
+        int[] baseExperience = new int[count];
+        for (int i = 0; i < count; i++) {
+            String[] row = rows.get(i);
+            names[i]          = row[COLUMN_IDENTIFIER];
+            speciesIDs[i]     = Integer.parseInt(row[COLUMN_SPECIES_ID]);
+            heights[i]        = Integer.parseInt(row[COLUMN_HEIGHT]);
+            weights[i]        = Integer.parseInt(row[COLUMN_WEIGHT]);
+            baseExperience[i] = Integer.parseInt(row[COLUMN_BASE_EXPERIENCE]);
+        }
+        return new PokemonCatalog(names, speciesIDs, heights, weights, baseExperience);
+    }
+
+    /**
+     * Returns number of pokemons in catalog.
+     *
+     * @return int
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Returns name of a pokemon.
+     *
+     * @param id - Catalog ID
+     * @return String - "-" for NO_POKEMON
+     */
+    public String getName(int id) {
+        return id == NO_POKEMON ? "-" : names[id];
+    }
+
+    /**
+     * Returns UTF-8 encoded name of a pokemon. Must not be modified.
+     *
+     * @param id - Catalog ID
+     * @return byte[]
+     */
+    public byte[] getNameBytes(int id) {
+        return nameBytes[id];
+    }
+
+    /**
+     * Returns names of all pokemons, indexed by catalog ID.
+     *
+     * @return List<String>
+     */
+    public List<String> getNames() {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    /**
+     * Returns catalog ID of given pokemon.
+     *
+     * @param name - Pokemon name
+     * @return int - -1 if pokemon is unknown
+     */
+    public int getID(String name) {
+        Short ret = ids.get(name);
+        return ret != null ? ret : -1;
+    }
+
+    /**
+     * Returns weighted choice of the pokemon to spawn.
+     *
+     * @return SpawnTable
+     */
+    public SpawnTable getSpawnTable() {
+        return spawnTable;
+    }
+
+    /**
+     * Returns species of a pokemon.
+     *
+     * @param id - Catalog ID
+     * @return int
+     */
+    public int getSpeciesID(int id) {
+        return speciesIDs[id];
+    }
+
+    /**
+     * Returns height of a pokemon in decimetres.
+     *
+     * @param id - Catalog ID
+     * @return int
+     */
+    public int getHeight(int id) {
+        return heights[id];
+    }
+
+    /**
+     * Returns weight of a pokemon in hectograms.
+     *
+     * @param id - Catalog ID
+     * @return int
+     */
+    public int getWeight(int id) {
+        return weights[id];
+    }
+
+    /**
+     * Returns experience gained for capturing a pokemon.
+     *
+     * @param id - Catalog ID
+     * @return int
+     */
+    public int getBaseExperience(int id) {
+        return baseExperience[id];
+    }
+
+    /**
+     * Compiles the pokemon csv into a binary catalog. Run by the build.
+     *
+     * @param args - csv file path, binary catalog file path
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.out.println("Usage: PokemonCatalog <csv file> <catalog file>");
+            System.exit(1);
+        }
+
+        PokemonCatalog catalog = load(args[0]);
+        if (catalog == null) {
+            System.exit(1);
+        }
+
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new FileOutputStream(args[1]));
+            catalog.write(out);
+        }
+        catch (IOException e) {
+            System.out.println("ERROR: " + e.getMessage());
+            System.exit(1);
+        }
+        finally {
+            if (out != null) {
+                try {
+                    out.close();
+                }
+                catch (IOException e) {
+                    System.out.println("ERROR: " + e.getMessage());
+                }
+            }
+        }
+    }
+}
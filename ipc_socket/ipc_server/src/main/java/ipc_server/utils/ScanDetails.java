@@ -0,0 +1,172 @@
+package ipc_server.utils;
+
+import java.util.Arrays;
+
+public class ScanDetails {
+    /**
+     * Initial number of pokemons held before growing.
+     */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * X coordinate scanned around.
+     */
+    private final int x;
+
+    /**
+     * Y coordinate scanned around.
+     */
+    private final int y;
+
+    /**
+     * Greatest distance scanned along each axis.
+     */
+    private final int radius;
+
+    /**
+     * Positions of the pokemons found, packed as x << 16 | y.
+     */
+    private int[] positions;
+
+    /**
+     * Catalog IDs of the pokemons found, parallel to positions.
+     */
+    private short[] pokemonIDs;
+
+    /**
+     * Number of pokemons found.
+     */
+    private int count;
+
+    /**
+     * Catalog the pokemon IDs refer to.
+     */
+    private final PokemonCatalog catalog;
+
+    /**
+     * Constructor of a scan that found nothing yet.
+     *
+     * @param x - x coordinate scanned around
+     * @param y - y coordinate scanned around
+     * @param radius - Greatest distance scanned along each axis
+     * @param catalog - Catalog the pokemon IDs refer to
+     */
+    public ScanDetails(int x, int y, int radius, PokemonCatalog catalog) {
+        this.x = x;
+        this.y = y;
+        this.radius = radius;
+        this.positions = new int[DEFAULT_CAPACITY];
+        this.pokemonIDs = new short[DEFAULT_CAPACITY];
+        this.count = 0;
+        this.catalog = catalog;
+    }
+
+    /**
+     * Adds a pokemon found. Matches PokemonIndex.Visitor.
+     *
+     * @param x - x coordinate value
+     * @param y - y coordinate value
+     * @param pokemon - Catalog ID
+     */
+    void add(int x, int y, short pokemon) {
+        if (count == positions.length) {
+            positions = Arrays.copyOf(positions, count * 2);
+            pokemonIDs = Arrays.copyOf(pokemonIDs, count * 2);
+        }
+        positions[count] = (x << 16) | y;
+        pokemonIDs[count] = pokemon;
+        count++;
+    }
+
+    /**
+     * Returns x coordinate scanned around.
+     *
+     * @return int
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * Returns y coordinate scanned around.
+     *
+     * @return int
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * Returns greatest distance scanned along each axis.
+     *
+     * @return int
+     */
+    public int getRadius() {
+        return radius;
+    }
+
+    /**
+     * Returns number of pokemons found.
+     *
+     * @return int
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns x coordinate of a pokemon found.
+     *
+     * @param i - Index of pokemon, below getCount()
+     * @return int
+     */
+    public int getPokemonX(int i) {
+        return positions[i] >>> 16;
+    }
+
+    /**
+     * Returns y coordinate of a pokemon found.
+     *
+     * @param i - Index of pokemon, below getCount()
+     * @return int
+     */
+    public int getPokemonY(int i) {
+        return positions[i] & 0xFFFF;
+    }
+
+    /**
+     * Returns catalog ID of a pokemon found.
+     *
+     * @param i - Index of pokemon, below getCount()
+     * @return int
+     */
+    public int getPokemonID(int i) {
+        return pokemonIDs[i];
+    }
+
+    /**
+     * Returns catalog the pokemon IDs refer to.
+     *
+     * @return PokemonCatalog
+     */
+    public PokemonCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * Returns scan details in the text protocol format.
+     *
+     * @return String
+     */
+    @Override
+    public String toString() {
+        StringBuilder ret = new StringBuilder();
+        ret.append("Pokemons within ").append(radius).append(" of (").append(x).append(", ").append(y)
+           .append("): ").append(count);
+        for (int i = 0; i < count; i++) {
+            ret.append("\n(").append(getPokemonX(i)).append(", ").append(getPokemonY(i)).append(") ")
+               .append(catalog.getName(pokemonIDs[i]));
+        }
+        return ret.toString();
+    }
+}
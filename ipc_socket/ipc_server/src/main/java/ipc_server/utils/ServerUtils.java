@@ -1,54 +1,79 @@
 package ipc_server.utils;
 
-import java.io.*;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.net.InterfaceAddress;
 import java.net.NetworkInterface;
-import java.util.ArrayList;
 import java.util.Enumeration;
-import java.util.List;
 
 public class ServerUtils {
     /**
-     * Reads a list of pokemons from give file path.
+     * Thread.startVirtualThread, null on runtimes without virtual threads.
+     * Looked up reflectively so the server still builds for older targets.
+     */
+    private static final Method START_VIRTUAL_THREAD = findStartVirtualThread();
+
+    /**
+     * Returns value following option name in command line arguments.
      *
-     * @param filePath - Path to file containing pokemon list.
-     * @return List<String>
+     * @param args - Command line arguments
+     * @param name - Option name, e.g. -mode
+     * @param defaultValue - Value returned when option is absent
+     * @return String
      */
-    public static List<String> readPokemons(String filePath) {
-        FileReader fr = null;
+    public static String getOption(String[] args, String name, String defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(name)) {
+                return args[i + 1];
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Looks up Thread.startVirtualThread.
+     *
+     * @return Method - null if not available
+     */
+    private static Method findStartVirtualThread() {
         try {
-            fr = new FileReader(filePath);
+            return Thread.class.getMethod("startVirtualThread", Runnable.class);
         }
-        catch (IOException e) {
-            System.out.println("ERROR: " + e.getMessage());
+        catch (NoSuchMethodException e) {
+            return null;
         }
+    }
 
-        List<String> pokemons = null;
-
-        if (fr != null) {
-            pokemons = new ArrayList<>();
-            BufferedReader br = new BufferedReader(fr);
-
-            String line = "";
-            do {
-                try {
-                    line = br.readLine();
-                } catch (IOException e) {
-                    System.out.println("ERROR: " + e.getMessage());
-                }
+    /**
+     * Checks if the running JVM supports virtual threads.
+     *
+     * @return boolean
+     */
+    public static boolean isVirtualThreadSupported() {
+        return START_VIRTUAL_THREAD != null;
+    }
 
-                if (line != null) {
-                    line = line.trim();
-                    String pokemonName = line.split(",")[1];
-                    pokemons.add(pokemonName);
-                }
-            }
-            while (line != null);
+    /**
+     * Starts given task on a new virtual thread.
+     *
+     * @param task - Task to run
+     * @return boolean - false if virtual threads are not supported
+     */
+    public static boolean startVirtualThread(Runnable task) {
+        if (START_VIRTUAL_THREAD == null) {
+            return false;
         }
 
-        return pokemons;
+        try {
+            START_VIRTUAL_THREAD.invoke(null, task);
+        }
+        catch (IllegalAccessException | InvocationTargetException e) {
+            System.out.println("ERROR: " + e.getMessage());
+            return false;
+        }
+        return true;
     }
 
     /**
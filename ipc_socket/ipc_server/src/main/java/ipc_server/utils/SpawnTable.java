@@ -0,0 +1,90 @@
+package ipc_server.utils;
+
+import java.util.SplittableRandom;
+
+/**
+ * Weighted random choice of the pokemon to spawn, using Walker's alias
+ * method. Each pokemon is weighted by the inverse of its base experience,
+ * so strong pokemons are rare and weak ones common.
+ *
+ * Every column of the table holds one pokemon with its share of the
+ * column and an alias pokemon taking the rest, so a sample is one column
+ * pick and one coin flip however many pokemons there are.
+ */
+public class SpawnTable {
+    /**
+     * Share of each column that goes to the pokemon of that column.
+     */
+    private final double[] shares;
+
+    /**
+     * Catalog ID of the pokemon taking the rest of each column.
+     */
+    private final short[] aliases;
+
+    /**
+     * Constructor building the table from a catalog.
+     *
+     * @param catalog - Catalog of all pokemons
+     */
+    public SpawnTable(PokemonCatalog catalog) {
+        int count = catalog.size();
+        shares = new double[count];
+        aliases = new short[count];
+
+        double total = 0;
+        double[] weights = new double[count];
+        for (int i = 0; i < count; i++) {
+            weights[i] = 1.0 / Math.max(catalog.getBaseExperience(i), 1);
+            total += weights[i];
+        }
+
+        // Scale weights so the average column is exactly full
+        int[] small = new int[count];
+        int[] large = new int[count];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < count; i++) {
+            shares[i] = weights[i] * count / total;
+            if (shares[i] < 1.0) {
+                small[smallCount++] = i;
+            }
+            else {
+                large[largeCount++] = i;
+            }
+        }
+
+        // Top up every underfull column from an overfull one
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            aliases[less] = (short) more;
+            shares[more] -= 1.0 - shares[less];
+            if (shares[more] < 1.0) {
+                small[smallCount++] = more;
+            }
+            else {
+                large[largeCount++] = more;
+            }
+        }
+
+        // Whatever is left is full up to rounding errors
+        while (smallCount > 0) {
+            shares[small[--smallCount]] = 1.0;
+        }
+        while (largeCount > 0) {
+            shares[large[--largeCount]] = 1.0;
+        }
+    }
+
+    /**
+     * Picks a pokemon to spawn.
+     *
+     * @param random - Random source
+     * @return short - Catalog ID
+     */
+    public short sample(SplittableRandom random) {
+        int column = random.nextInt(shares.length);
+        return random.nextDouble() < shares[column] ? (short) column : aliases[column];
+    }
+}
@@ -0,0 +1,114 @@
+package ipc_server;
+
+import ipc_server.interfaces.PlayerConnection;
+import ipc_server.utils.BoardDelta;
+import ipc_server.utils.BoardSnapshot;
+import ipc_server.utils.OutboundQueue;
+import ipc_server.utils.ScanDetails;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GameServerTest {
+    /**
+     * Connection discarding every push.
+     */
+    private static final PlayerConnection SILENT = new PlayerConnection() {
+        @Override
+        public void sendMsg(String msg) {
+        }
+
+        @Override
+        public void sendDelta(BoardDelta delta) {
+        }
+    };
+
+    @Test(timeout = 60000)
+    public void subscribesAlongsideLeavesComplete() throws InterruptedException {
+        final GameServer gameServer = new GameServer();
+        gameServer.startDeltas();
+
+        // Leaves force snapshots off the optimistic read onto the read lock
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread leaver = new Thread(() -> {
+                try {
+                    start.await();
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+                for (int n = 0; n < 2000; n++) {
+                    gameServer.removePlayer(gameServer.addPlayer(SILENT));
+                }
+            });
+            Thread subscriber = new Thread(() -> {
+                try {
+                    start.await();
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+                for (int n = 0; n < 2000; n++) {
+                    gameServer.subscribe(SILENT);
+                    gameServer.unsubscribe(SILENT);
+                }
+            });
+            leaver.start();
+            subscriber.start();
+            threads.add(leaver);
+            threads.add(subscriber);
+        }
+
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    @Test
+    public void sequencedRespawnsGoThroughTheEngine() {
+        GameServer gameServer = new GameServer(OutboundQueue.DEFAULT_CAPACITY, OutboundQueue.Policy.DROP, false,
+                                               200, 200, 1);
+        gameServer.startDeltas();
+        gameServer.startSequencer(16);
+
+        // First empty cell of the board, 807 pokemons leave most empty
+        BoardSnapshot snapshot = gameServer.getSnapshot();
+        ScanDetails pokemons = snapshot.getPokemons();
+        boolean[] taken = new boolean[200 * 200];
+        for (int i = 0; i < pokemons.getCount(); i++) {
+            taken[(pokemons.getPokemonY(i) - 1) * 200 + pokemons.getPokemonX(i) - 1] = true;
+        }
+        int cell = 0;
+        while (taken[cell]) {
+            cell++;
+        }
+        int x = cell % 200 + 1;
+        int y = cell / 200 + 1;
+
+        // Called off the engine thread like the respawn thread does
+        int before = gameServer.getBoardState().getPokemonCount();
+        assertTrue(gameServer.spawnPokemon(x, y, (short) 1));
+        assertFalse(gameServer.spawnPokemon(x, y, (short) 2));
+        assertEquals(before + 1, gameServer.getBoardState().getPokemonCount());
+
+        ScanDetails spawned = gameServer.getSnapshot().getPokemons();
+        boolean found = false;
+        for (int i = 0; i < spawned.getCount(); i++) {
+            if (spawned.getPokemonX(i) == x && spawned.getPokemonY(i) == y) {
+                assertEquals(1, spawned.getPokemonID(i));
+                found = true;
+            }
+        }
+        assertTrue(found);
+        assertFalse(gameServer.spawnPokemon(201, 1, (short) 1));
+    }
+}
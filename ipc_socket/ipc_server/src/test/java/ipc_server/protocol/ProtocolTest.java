@@ -0,0 +1,71 @@
+package ipc_server.protocol;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+
+public class ProtocolTest {
+    /**
+     * Six continuation bytes, longer than any int varint.
+     */
+    private static final byte[] OVERLONG = {(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80,
+                                            (byte) 0x80, 1};
+
+    @Test
+    public void varIntRoundTrip() throws IOException {
+        int[] values = {0, 1, 127, 128, 16384, Integer.MAX_VALUE, -1};
+        for (int value : values) {
+            ByteBuffer buffer = ByteBuffer.allocate(Protocol.varIntSize(value));
+            Protocol.putVarInt(buffer, value);
+            buffer.flip();
+            assertEquals(value, Protocol.getVarInt(buffer));
+            assertEquals(value, Protocol.readVarInt(new DataInputStream(new ByteArrayInputStream(buffer.array()))));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getVarIntRejectsOverlong() {
+        Protocol.getVarInt(ByteBuffer.wrap(OVERLONG));
+    }
+
+    @Test(expected = ProtocolException.class)
+    public void readVarIntRejectsOverlong() throws IOException {
+        Protocol.readVarInt(new DataInputStream(new ByteArrayInputStream(OVERLONG)));
+    }
+
+    @Test
+    public void frameLengthWaitsForWholeFrame() throws ProtocolException {
+        byte[] frame = {Protocol.OP_MOVE, 3, 1, 0, 2};
+        assertEquals(-1, Protocol.frameLength(frame, 0, 1));
+        assertEquals(-1, Protocol.frameLength(frame, 0, 4));
+        assertEquals(5, Protocol.frameLength(frame, 0, 5));
+    }
+
+    @Test(expected = ProtocolException.class)
+    public void frameLengthRejectsTooLong() throws ProtocolException {
+        ByteBuffer header = ByteBuffer.allocate(8);
+        header.put((byte) Protocol.OP_MOVE);
+        Protocol.putVarInt(header, Protocol.MAX_FRAME_LENGTH + 1);
+        Protocol.frameLength(header.array(), 0, header.position());
+    }
+
+    @Test(expected = ProtocolException.class)
+    public void frameLengthRejectsNegative() throws ProtocolException {
+        byte[] header = {Protocol.OP_MOVE, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F};
+        Protocol.frameLength(header, 0, header.length);
+    }
+
+    @Test(expected = ProtocolException.class)
+    public void frameLengthRejectsOverlong() throws ProtocolException {
+        byte[] header = new byte[OVERLONG.length + 1];
+        header[0] = Protocol.OP_MOVE;
+        System.arraycopy(OVERLONG, 0, header, 1, OVERLONG.length);
+        Protocol.frameLength(header, 0, header.length);
+    }
+}
@@ -0,0 +1,160 @@
+package ipc_server.protocol;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TextCommandParserTest {
+    /**
+     * Parses per measured loop, enough that any per parse allocation
+     * would show well above the measuring noise.
+     */
+    private static final int PARSES = 100000;
+
+    private final TextCommandParser parser = new TextCommandParser();
+
+    @Test
+    public void parsesMove() {
+        assertEquals(Protocol.OP_MOVE, parse("move up 3"));
+        assertEquals(0, parser.getDirection());
+        assertEquals(3, parser.getSpaces());
+        assertEquals(0, parser.getRequestID());
+
+        assertEquals(Protocol.OP_MOVE, parse("move right -2"));
+        assertEquals(3, parser.getDirection());
+        assertEquals(-2, parser.getSpaces());
+
+        // Unknown direction is left to the session to reject
+        assertEquals(Protocol.OP_MOVE, parse("move north 1"));
+        assertEquals(-1, parser.getDirection());
+    }
+
+    @Test
+    public void rejectsMalformedMove() {
+        assertEquals(TextCommandParser.UNKNOWN, parse("move"));
+        assertEquals(TextCommandParser.UNKNOWN, parse("move up"));
+        assertEquals(TextCommandParser.UNKNOWN, parse("move up x"));
+        assertEquals(TextCommandParser.UNKNOWN, parse("move up 3x"));
+        assertEquals(TextCommandParser.UNKNOWN, parse("move up 2147483648"));
+        assertEquals(TextCommandParser.UNKNOWN, parse("move up --1"));
+    }
+
+    @Test
+    public void parsesShowVersion() {
+        assertEquals(Protocol.OP_SHOW, parse("show"));
+        assertEquals(0, parser.getSpaces());
+
+        assertEquals(Protocol.OP_SHOW, parse("show 7"));
+        assertEquals(7, parser.getSpaces());
+
+        // Anything but a positive version is ignored, as extra words always were
+        assertEquals(Protocol.OP_SHOW, parse("show 0"));
+        assertEquals(0, parser.getSpaces());
+        assertEquals(Protocol.OP_SHOW, parse("show -3"));
+        assertEquals(0, parser.getSpaces());
+        assertEquals(Protocol.OP_SHOW, parse("show 99999999999"));
+        assertEquals(0, parser.getSpaces());
+    }
+
+    @Test
+    public void parsesScan() {
+        assertEquals(Protocol.OP_SCAN, parse("scan 5"));
+        assertEquals(5, parser.getSpaces());
+
+        assertEquals(TextCommandParser.UNKNOWN, parse("scan"));
+        assertEquals(TextCommandParser.UNKNOWN, parse("scan -1"));
+        assertEquals(TextCommandParser.UNKNOWN, parse("scan 2147483648"));
+    }
+
+    @Test
+    public void parsesRequestID() {
+        assertEquals(Protocol.OP_CAPTURE, parse("#42 capture"));
+        assertEquals(42, parser.getRequestID());
+
+        // Request ID is reset by every parse
+        assertEquals(Protocol.OP_CAPTURE, parse("capture"));
+        assertEquals(0, parser.getRequestID());
+
+        assertEquals(TextCommandParser.UNKNOWN, parse("#-1 capture"));
+        assertEquals(TextCommandParser.UNKNOWN, parse("#x capture"));
+        assertEquals(TextCommandParser.UNKNOWN, parse("#2147483648 capture"));
+        assertEquals(TextCommandParser.UNKNOWN, parse("#3"));
+    }
+
+    @Test
+    public void parsesOtherCommands() {
+        assertEquals(Protocol.OP_JOIN, parse("join"));
+        assertEquals(Protocol.OP_LEAVE, parse("leave"));
+        assertEquals(Protocol.OP_SUBSCRIBE, parse("subscribe"));
+        assertEquals(TextCommandParser.NEGOTIATE, parse(Protocol.NEGOTIATE_LINE));
+        assertEquals(TextCommandParser.UNKNOWN, parse("#1 " + Protocol.NEGOTIATE_LINE));
+        assertEquals(TextCommandParser.UNKNOWN, parse("joint"));
+        assertEquals(TextCommandParser.UNKNOWN, parse(""));
+    }
+
+    @Test
+    public void parsesWithinBuffer() {
+        byte[] buffer = "xxmove down 4\nshow".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(Protocol.OP_MOVE, parser.parse(buffer, 2, 11));
+        assertEquals(1, parser.getDirection());
+        assertEquals(4, parser.getSpaces());
+    }
+
+    @Test
+    public void parsingAllocatesNothing() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assertTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        byte[][] lines = {
+            "#17 move left 12".getBytes(StandardCharsets.US_ASCII),
+            "show 3".getBytes(StandardCharsets.US_ASCII),
+            "scan 4".getBytes(StandardCharsets.US_ASCII),
+            "capture".getBytes(StandardCharsets.US_ASCII),
+        };
+
+        // Warm up so the loop is compiled before it is measured
+        int sum = parseAll(lines);
+        sum += parseAll(lines);
+
+        long threadID = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadID);
+        sum += parseAll(lines);
+        long allocated = threads.getThreadAllocatedBytes(threadID) - before;
+
+        assertTrue(sum != 0);
+        assertTrue("Parsing allocated " + allocated + " bytes over " + PARSES + " parses",
+                   allocated < 1024);
+    }
+
+    /**
+     * Parses every line over and over.
+     *
+     * @param lines - Lines to parse
+     * @return int - Sum of opcodes, so the parses are not optimized away
+     */
+    private int parseAll(byte[][] lines) {
+        int sum = 0;
+        for (int i = 0; i < PARSES; i++) {
+            byte[] line = lines[i % lines.length];
+            sum += parser.parse(line, 0, line.length) + parser.getSpaces();
+        }
+        return sum;
+    }
+
+    /**
+     * Parses a whole line.
+     *
+     * @param line - Command line without newline
+     * @return int - Opcode
+     */
+    private int parse(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.US_ASCII);
+        return parser.parse(bytes, 0, bytes.length);
+    }
+}
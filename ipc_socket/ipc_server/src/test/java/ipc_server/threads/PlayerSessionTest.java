@@ -0,0 +1,107 @@
+package ipc_server.threads;
+
+import ipc_server.GameServer;
+import ipc_server.interfaces.FrameWriter;
+import ipc_server.protocol.Protocol;
+import ipc_server.utils.PlayerDetails;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PlayerSessionTest {
+    /**
+     * Writer keeping every reply and push sent.
+     */
+    private static class RecordingWriter implements FrameWriter {
+        final List<byte[]> sent = new ArrayList<>();
+
+        @Override
+        public void write(byte[] data) {
+            sent.add(data);
+        }
+
+        @Override
+        public void push(byte[] data) {
+            sent.add(data);
+        }
+
+        byte[] last() {
+            return sent.get(sent.size() - 1);
+        }
+    }
+
+    private GameServer gameServer;
+    private RecordingWriter writer;
+    private PlayerSession session;
+
+    @Before
+    public void setUp() {
+        gameServer = new GameServer();
+        writer = new RecordingWriter();
+        session = new PlayerSession(gameServer, writer);
+
+        byte[] negotiate = Protocol.NEGOTIATE_LINE.getBytes();
+        assertTrue(session.handleLine(negotiate, 0, negotiate.length));
+        assertTrue(session.isBinary());
+        assertTrue(session.handleFrame(Protocol.OP_JOIN, ByteBuffer.wrap(new byte[] {1})));
+        assertEquals(Protocol.OP_JOIN_REPLY, writer.last()[0]);
+    }
+
+    @Test
+    public void truncatedMoveIsUnsupported() {
+        PlayerDetails before = gameServer.getPlayerState(session.getPlayerID());
+
+        // Request ID only, direction and spaces missing
+        assertTrue(session.handleFrame(Protocol.OP_MOVE, ByteBuffer.wrap(new byte[] {7})));
+        assertStatus(7, Protocol.STATUS_UNSUPPORTED);
+
+        // Player stays in the game, where it was
+        PlayerDetails after = gameServer.getPlayerState(session.getPlayerID());
+        assertEquals(before.getX(), after.getX());
+        assertEquals(before.getY(), after.getY());
+        assertEquals(before.getVersion(), after.getVersion());
+
+        // Session keeps servicing well formed frames
+        assertTrue(session.handleFrame(Protocol.OP_SHOW, ByteBuffer.wrap(new byte[] {8})));
+        assertEquals(Protocol.OP_DETAILS, writer.last()[0]);
+    }
+
+    @Test
+    public void emptyPayloadIsUnsupported() {
+        assertTrue(session.handleFrame(Protocol.OP_SCAN, ByteBuffer.allocate(0)));
+        assertStatus(0, Protocol.STATUS_UNSUPPORTED);
+    }
+
+    @Test
+    public void overlongVarIntIsUnsupported() {
+        byte[] payload = {(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 1};
+        assertTrue(session.handleFrame(Protocol.OP_SHOW, ByteBuffer.wrap(payload)));
+        assertStatus(0, Protocol.STATUS_UNSUPPORTED);
+    }
+
+    @Test
+    public void unknownOpcodeIsUnsupported() {
+        assertTrue(session.handleFrame(0x3F, ByteBuffer.wrap(new byte[] {9})));
+        assertStatus(9, Protocol.STATUS_UNSUPPORTED);
+    }
+
+    /**
+     * Checks the last frame sent is a status reply.
+     *
+     * @param requestID - Expected request ID, below 128
+     * @param status - Expected status
+     */
+    private void assertStatus(int requestID, int status) {
+        byte[] frame = writer.last();
+        assertEquals(Protocol.OP_STATUS, frame[0]);
+        assertEquals(2, frame[1]);
+        assertEquals(requestID, frame[2]);
+        assertEquals(status, frame[3]);
+    }
+}
@@ -0,0 +1,32 @@
+package ipc_server.threads;
+
+import ipc_server.GameServer;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RespawnThreadTest {
+    @Test(timeout = 60000)
+    public void respawnsGoOnAfterAFailure() throws InterruptedException {
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch spawned = new CountDownLatch(2);
+        GameServer gameServer = new GameServer() {
+            @Override
+            public boolean spawnPokemon(int x, int y, short pokemon) {
+                if (calls.getAndIncrement() == 0) {
+                    throw new IllegalStateException("first spawn fails");
+                }
+                spawned.countDown();
+                return true;
+            }
+        };
+
+        // The failed respawn is retried, the other one still runs
+        RespawnThread respawner = new RespawnThread(gameServer, RespawnThread.TICK_MILLIS, 1);
+        respawner.schedule();
+        respawner.schedule();
+        respawner.start();
+        spawned.await();
+    }
+}
@@ -0,0 +1,334 @@
+package ipc_server.threads;
+
+import ipc_server.GameServer;
+import ipc_server.interfaces.PlayerConnection;
+import ipc_server.utils.BoardDelta;
+import ipc_server.utils.GameBoard;
+import ipc_server.utils.OutboundQueue;
+import ipc_server.utils.PokemonCatalog;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntSupplier;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TickEngineThreadTest {
+    /**
+     * Blocks of area of interest events, covering a default board from
+     * anywhere on it.
+     */
+    private static final int REACH = 4;
+
+    /**
+     * Connection discarding every push.
+     */
+    private static final PlayerConnection SILENT = new PlayerConnection() {
+        @Override
+        public void sendMsg(String msg) {
+        }
+
+        @Override
+        public void sendDelta(BoardDelta delta) {
+        }
+    };
+
+    @Test(timeout = 60000)
+    public void lowerIDWinsCell() throws InterruptedException {
+        GameServer gameServer = newTickedServer(1);
+        Gate gate = new Gate();
+        gameServer.startEvents(REACH);
+        gameServer.addPlayer(gate);
+        int mover = gameServer.addPlayer(SILENT);
+        int lower = gameServer.addPlayer(SILENT);
+        int higher = gameServer.addPlayer(SILENT);
+        walkTo(gameServer, lower, 3, 4);
+        walkTo(gameServer, higher, 5, 4);
+
+        // Higher ID queued first, both into (4, 4)
+        int[] results = runInOneTick(gameServer, gate, mover, Arrays.asList(
+                () -> gameServer.movePlayer(higher, "left", 1),
+                () -> gameServer.movePlayer(lower, "right", 1)));
+        assertArrayEquals(new int[] {3, 0}, results);
+        assertEquals(4, gameServer.getPlayerState(lower).getX());
+        assertEquals(5, gameServer.getPlayerState(higher).getX());
+    }
+
+    @Test(timeout = 60000)
+    public void movesGoBeforeCaptures() throws InterruptedException {
+        GameServer gameServer = newTickedServer(1);
+        Gate gate = new Gate();
+        gameServer.startEvents(REACH);
+        gameServer.addPlayer(gate);
+        int mover = gameServer.addPlayer(SILENT);
+        int id = gameServer.addPlayer(SILENT);
+
+        // Pokemon 25 on (4, 12), none on (3, 12)
+        walkTo(gameServer, id, 4, 12);
+        gameServer.capturePokemon(id);
+        walkTo(gameServer, id, 3, 12);
+        gameServer.capturePokemon(id);
+        assertTrue(gameServer.spawnPokemon(4, 12, (short) 25));
+
+        // Capture queued first, still resolved on the cell moved to
+        int[] results = runInOneTick(gameServer, gate, mover, Arrays.asList(
+                () -> gameServer.capturePokemon(id),
+                () -> gameServer.movePlayer(id, "right", 1)));
+        assertArrayEquals(new int[] {0, 0}, results);
+        assertEquals(4, gameServer.getPlayerState(id).getX());
+        int[] captured = gameServer.getPlayerState(id).getPokemonIDs();
+        assertEquals(25, captured[captured.length - 1]);
+        assertEquals(PokemonCatalog.NO_POKEMON, gameServer.getPlayerState(id).getPokemonAtPosID());
+    }
+
+    @Test(timeout = 60000)
+    public void moveWithinRegionWinsCellOverCrossing() throws InterruptedException {
+        GameServer gameServer = newTickedServer(1);
+        Gate gate = new Gate();
+        gameServer.startEvents(REACH);
+        gameServer.addPlayer(gate);
+        int mover = gameServer.addPlayer(SILENT);
+        int crossing = gameServer.addPlayer(SILENT);
+        int within = gameServer.addPlayer(SILENT);
+
+        // Regions are 8 cells wide, (8, 4) is in the region of (9, 4) only
+        walkTo(gameServer, crossing, 7, 4);
+        walkTo(gameServer, within, 9, 4);
+
+        // Lower ID crossing loses to the higher ID staying in its region
+        int[] results = runInOneTick(gameServer, gate, mover, Arrays.asList(
+                () -> gameServer.movePlayer(crossing, "right", 1),
+                () -> gameServer.movePlayer(within, "left", 1)));
+        assertArrayEquals(new int[] {3, 0}, results);
+        assertEquals(7, gameServer.getPlayerState(crossing).getX());
+        assertEquals(8, gameServer.getPlayerState(within).getX());
+    }
+
+    @Test(timeout = 60000)
+    public void winnerOfBatchIsAnnounced() throws InterruptedException {
+        GameServer gameServer = newTickedServer(1);
+        Gate gate = new Gate();
+        gameServer.startEvents(REACH);
+        gameServer.addPlayer(gate);
+        int mover = gameServer.addPlayer(SILENT);
+        int winner = gameServer.addPlayer(SILENT);
+        int other = gameServer.addPlayer(SILENT);
+        while (gameServer.getPlayerState(winner).getPokemonIDs().length < GameBoard.WINNER_POKEMONS - 1) {
+            if (gameServer.capturePokemon(winner) != 0) {
+                step(gameServer, winner);
+            }
+        }
+        while (gameServer.getPlayerState(winner).getPokemonAtPosID() == PokemonCatalog.NO_POKEMON) {
+            step(gameServer, winner);
+        }
+
+        // Batch moves and captures along with the winning capture
+        int[] results = runInOneTick(gameServer, gate, mover, Arrays.asList(
+                () -> gameServer.movePlayer(other, towardsMiddle(gameServer, other), 1),
+                () -> gameServer.capturePokemon(winner),
+                () -> gameServer.capturePokemon(other)));
+        assertEquals(0, results[0]);
+        assertEquals(2, results[1]);
+        assertTrue(gameServer.isWinnerFound());
+        assertTrue(gate.messages.contains("Player-" + winner + " has won the game. Thank you for playing!"));
+    }
+
+    @Test(timeout = 60000)
+    public void winningCaptureAlongsideLeavesCompletes() throws InterruptedException {
+        for (int round = 0; round < 20; round++) {
+            final GameServer gameServer = newTickedServer(round);
+            int winner = gameServer.addPlayer(SILENT);
+            while (gameServer.getPlayerState(winner).getPokemonIDs().length < GameBoard.WINNER_POKEMONS - 1) {
+                if (gameServer.capturePokemon(winner) != 0) {
+                    step(gameServer, winner);
+                }
+            }
+            while (gameServer.getPlayerState(winner).getPokemonAtPosID() == PokemonCatalog.NO_POKEMON) {
+                step(gameServer, winner);
+            }
+
+            // Leaves race the tick announcing the winner
+            final CountDownLatch start = new CountDownLatch(1);
+            List<Thread> leavers = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                final int id = gameServer.addPlayer(SILENT);
+                Thread leaver = new Thread(() -> {
+                    try {
+                        start.await();
+                    }
+                    catch (InterruptedException e) {
+                        return;
+                    }
+                    gameServer.removePlayer(id);
+                });
+                leaver.start();
+                leavers.add(leaver);
+            }
+
+            start.countDown();
+            assertEquals(2, gameServer.capturePokemon(winner));
+            for (Thread leaver : leavers) {
+                leaver.join();
+            }
+            assertTrue(gameServer.isWinnerFound());
+        }
+    }
+
+    /**
+     * Creates a game server resolving moves and captures every millisecond.
+     *
+     * @param seed - Seed of pokemon layout and spawn positions
+     * @return GameServer
+     */
+    private static GameServer newTickedServer(long seed) {
+        GameServer ret = new GameServer(OutboundQueue.DEFAULT_CAPACITY, OutboundQueue.Policy.DROP, false,
+                                        GameBoard.DEFAULT_WIDTH, GameBoard.DEFAULT_HEIGHT, seed);
+        ret.startTickEngine(1, 2);
+        return ret;
+    }
+
+    /**
+     * Moves a player one cell along a row, going up a row at either edge.
+     *
+     * @param gameServer - Game server
+     * @param id - Player ID
+     */
+    private static void step(GameServer gameServer, int id) {
+        String direction = (gameServer.getPlayerState(id).getY() & 1) == 0 ? "right" : "left";
+        if (gameServer.movePlayer(id, direction, 1) != 0 && gameServer.movePlayer(id, "up", 1) != 0) {
+            gameServer.movePlayer(id, "down", 1);
+        }
+    }
+
+    /**
+     * Moves a player to a position, along the row first.
+     *
+     * @param gameServer - Game server
+     * @param id - Player ID
+     * @param x - x coordinate value
+     * @param y - y coordinate value
+     */
+    private static void walkTo(GameServer gameServer, int id, int x, int y) {
+        int dx = x - gameServer.getPlayerState(id).getX();
+        int dy = y - gameServer.getPlayerState(id).getY();
+        if (dx != 0) {
+            assertEquals(0, gameServer.movePlayer(id, dx > 0 ? "right" : "left", Math.abs(dx)));
+        }
+        if (dy != 0) {
+            assertEquals(0, gameServer.movePlayer(id, dy > 0 ? "up" : "down", Math.abs(dy)));
+        }
+    }
+
+    /**
+     * Returns the direction towards the middle column of the board.
+     *
+     * @param gameServer - Game server
+     * @param id - Player ID
+     * @return String
+     */
+    private static String towardsMiddle(GameServer gameServer, int id) {
+        return gameServer.getPlayerState(id).getX() < GameBoard.DEFAULT_WIDTH / 2 ? "right" : "left";
+    }
+
+    /**
+     * Resolves commands in one tick. A move of another player goes first
+     * and the gate holds the tick engine up on hearing of it, so every
+     * command is queued before the next tick takes them all at once.
+     *
+     * @param gameServer - Game server with events reaching the gate
+     * @param gate - Gate connection of a player
+     * @param mover - Player whose move holds the engine up
+     * @param commands - Commands, queued in order
+     * @return int[] - Result of each command
+     * @throws InterruptedException - If interrupted while waiting
+     */
+    private static int[] runInOneTick(GameServer gameServer, Gate gate, int mover, List<IntSupplier> commands)
+            throws InterruptedException {
+        gate.arm();
+        Thread barrier = new Thread(() -> assertEquals(0, gameServer.movePlayer(mover, towardsMiddle(gameServer, mover), 1)));
+        barrier.start();
+        gate.blocked.await();
+
+        int[] ret = new int[commands.size()];
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < commands.size(); i++) {
+            final IntSupplier command = commands.get(i);
+            final int index = i;
+            Thread thread = new Thread(() -> ret[index] = command.getAsInt());
+            thread.start();
+
+            // Parked in submit once its command is queued
+            while (thread.getState() != Thread.State.WAITING) {
+                Thread.yield();
+            }
+            threads.add(thread);
+        }
+
+        gate.release.countDown();
+        barrier.join();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return ret;
+    }
+
+    /**
+     * Connection recording every message pushed to it, which once armed
+     * holds up the thread pushing the next one until released.
+     */
+    private static final class Gate implements PlayerConnection {
+        /**
+         * Messages pushed so far.
+         */
+        final List<String> messages = new CopyOnWriteArrayList<>();
+
+        /**
+         * Flag set until the next message is held up.
+         */
+        final AtomicBoolean armed = new AtomicBoolean();
+
+        /**
+         * Counted down once a message is held up.
+         */
+        volatile CountDownLatch blocked;
+
+        /**
+         * Counted down to let the held up message through.
+         */
+        volatile CountDownLatch release;
+
+        /**
+         * Holds up the next message pushed.
+         */
+        void arm() {
+            blocked = new CountDownLatch(1);
+            release = new CountDownLatch(1);
+            armed.set(true);
+        }
+
+        @Override
+        public void sendMsg(String msg) {
+            messages.add(msg);
+            if (armed.compareAndSet(true, false)) {
+                blocked.countDown();
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        public void sendDelta(BoardDelta delta) {
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package ipc_server.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AtomicGameBoardTest {
+    /**
+     * Size of the boards played on, leaving most cells empty.
+     */
+    private static final int SIZE = 200;
+
+    @Test
+    public void spawnsOnlyIntoEmptyCells() {
+        AtomicGameBoard board = new AtomicGameBoard(new GameBoard(SIZE, SIZE, 1));
+        board.addPlayer(1);
+        Position playerPos = board.getPlayerPos(1);
+        int x = playerPos.getX();
+        int y = playerPos.getY();
+        String away = x < SIZE / 2 ? "right" : "left";
+        int next = x < SIZE / 2 ? x + 1 : x - 1;
+
+        board.capturePokemon(1);
+        assertEquals(1, board.capturePokemon(1));
+        assertFalse(board.spawnPokemon(x, y, (short) 1));
+        assertFalse(board.spawnPokemon(SIZE + 1, y, (short) 1));
+        assertFalse(board.spawnPokemon(x, -1, (short) 1));
+
+        assertEquals(0, board.move(1, away, 1));
+        board.capturePokemon(1);
+        assertEquals(0, board.move(1, away.equals("right") ? "left" : "right", 1));
+        int count = board.getDetails().getPokemonCount();
+        assertTrue(board.spawnPokemon(next, y, (short) 1));
+        assertFalse(board.spawnPokemon(next, y, (short) 2));
+        assertEquals(count + 1, board.getDetails().getPokemonCount());
+        assertIndexMatchesCells(board);
+    }
+
+    @Test(timeout = 60000)
+    public void racingCapturesTakeAPokemonOnce() throws InterruptedException {
+        AtomicGameBoard board = new AtomicGameBoard(new GameBoard(SIZE, SIZE, 1));
+        board.addPlayer(1);
+        int x = board.getPlayerPos(1).getX();
+        int y = board.getPlayerPos(1).getY();
+        String away = x < SIZE / 2 ? "right" : "left";
+        String back = x < SIZE / 2 ? "left" : "right";
+        board.capturePokemon(1);
+        int sack = board.getPlayerPokemons(1).size();
+
+        for (int round = 0; round < 200; round++) {
+            assertEquals(0, board.move(1, away, 1));
+            assertTrue(board.spawnPokemon(x, y, (short) 1));
+            assertEquals(0, board.move(1, back, 1));
+
+            final CountDownLatch start = new CountDownLatch(1);
+            final AtomicInteger captured = new AtomicInteger();
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                Thread thread = new Thread(() -> {
+                    try {
+                        start.await();
+                    }
+                    catch (InterruptedException e) {
+                        return;
+                    }
+                    if (board.capturePokemon(1) == 0) {
+                        captured.incrementAndGet();
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertEquals(1, captured.get());
+        }
+        assertEquals(sack + 200, board.getPlayerPokemons(1).size());
+        assertIndexMatchesCells(board);
+    }
+
+    @Test(timeout = 60000)
+    public void racingSpawnsAndCapturesKeepIndexAndCount() throws InterruptedException {
+        final AtomicGameBoard board = new AtomicGameBoard(new GameBoard(SIZE, SIZE, 1));
+        board.addPlayer(1);
+        final int x = board.getPlayerPos(1).getX();
+        final int y = board.getPlayerPos(1).getY();
+        final String away = x < SIZE / 2 ? "right" : "left";
+        final String back = x < SIZE / 2 ? "left" : "right";
+        board.capturePokemon(1);
+        int before = board.getDetails().getPokemonCount();
+        int sack = board.getPlayerPokemons(1).size();
+
+        // Player steps on and off the cell capturing, the spawner refills it
+        final AtomicInteger captures = new AtomicInteger();
+        final AtomicInteger spawns = new AtomicInteger();
+        Thread player = new Thread(() -> {
+            for (int i = 0; i < 20000; i++) {
+                board.move(1, away, 1);
+                board.move(1, back, 1);
+                if (board.capturePokemon(1) == 0) {
+                    captures.incrementAndGet();
+                }
+            }
+        });
+        Thread spawner = new Thread(() -> {
+            while (player.isAlive()) {
+                if (board.spawnPokemon(x, y, (short) 1)) {
+                    spawns.incrementAndGet();
+                }
+            }
+        });
+        player.start();
+        spawner.start();
+        player.join();
+        spawner.join();
+
+        assertEquals(before + spawns.get() - captures.get(), board.getDetails().getPokemonCount());
+        assertEquals(sack + captures.get(), board.getPlayerPokemons(1).size());
+        assertIndexMatchesCells(board);
+    }
+
+    /**
+     * Checks a scan of the whole board lists exactly the pokemons on its
+     * cells, and as many as the board counts.
+     *
+     * @param board - Board no longer changed
+     */
+    private static void assertIndexMatchesCells(AtomicGameBoard board) {
+        Set<String> cells = new HashSet<>();
+        for (int y = 0; y <= SIZE; y++) {
+            for (int x = 0; x <= SIZE; x++) {
+                int pokemon = board.getPokemon(new Position(x, y));
+                if (pokemon != PokemonCatalog.NO_POKEMON) {
+                    cells.add(x + "," + y + "," + pokemon);
+                }
+            }
+        }
+
+        ScanDetails scan = board.scanPokemons(0, 0, SIZE);
+        Set<String> indexed = new HashSet<>();
+        for (int i = 0; i < scan.getCount(); i++) {
+            indexed.add(scan.getPokemonX(i) + "," + scan.getPokemonY(i) + "," + scan.getPokemonID(i));
+        }
+        assertEquals(cells, indexed);
+        assertEquals(cells.size(), board.getDetails().getPokemonCount());
+    }
+}
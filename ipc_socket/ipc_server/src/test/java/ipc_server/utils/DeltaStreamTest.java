@@ -0,0 +1,118 @@
+package ipc_server.utils;
+
+import ipc_server.interfaces.PlayerConnection;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+
+public class DeltaStreamTest {
+    /**
+     * Threads publishing at once.
+     */
+    private static final int PUBLISHERS = 8;
+
+    /**
+     * Deltas published by each thread, enough to wrap the ring many times.
+     */
+    private static final int DELTAS = 20000;
+
+    /**
+     * Connection recording the versions pushed to it.
+     */
+    private static class RecordingConnection implements PlayerConnection {
+        /**
+         * Versions pushed, in push order.
+         */
+        private final List<Long> versions = new ArrayList<>();
+
+        @Override
+        public void sendMsg(String msg) {
+        }
+
+        @Override
+        public synchronized void sendDelta(BoardDelta delta) {
+            versions.add(delta.getVersion());
+        }
+
+        /**
+         * Returns versions pushed so far.
+         *
+         * @return List<Long>
+         */
+        public synchronized List<Long> getVersions() {
+            return new ArrayList<>(versions);
+        }
+    }
+
+    @Test
+    public void pushesConcurrentPublishesInVersionOrder() throws InterruptedException {
+        final DeltaStream stream = new DeltaStream(null);
+        RecordingConnection early = new RecordingConnection();
+        assertEquals(0, stream.subscribe(early));
+
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < PUBLISHERS; i++) {
+            final int id = i + 1;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+                for (int n = 0; n < DELTAS; n++) {
+                    stream.publish(BoardDelta.MOVED, id, n, n, PokemonCatalog.NO_POKEMON);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        // Joins partway through hear every delta above the version returned
+        RecordingConnection late = new RecordingConnection();
+        start.countDown();
+        long lateVersion = stream.subscribe(late);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        long total = (long) PUBLISHERS * DELTAS;
+        assertEquals(total, stream.getVersion());
+        assertInOrder(early.getVersions(), 1, total);
+        assertInOrder(late.getVersions(), lateVersion + 1, total);
+    }
+
+    @Test
+    public void commitRunsChangeUnderCellLock() {
+        DeltaStream stream = new DeltaStream(null);
+        RecordingConnection connection = new RecordingConnection();
+        stream.subscribe(connection);
+
+        boolean ret = stream.commit(3, 4, () -> {
+            stream.publish(BoardDelta.SPAWNED, 0, 3, 4, 1);
+            return true;
+        });
+        assertEquals(true, ret);
+        assertEquals(1, stream.getVersion());
+        assertInOrder(connection.getVersions(), 1, 1);
+    }
+
+    /**
+     * Checks versions run one by one over a range.
+     *
+     * @param versions - Versions pushed
+     * @param first - Version expected first
+     * @param last - Version expected last
+     */
+    private static void assertInOrder(List<Long> versions, long first, long last) {
+        assertEquals(last - first + 1, versions.size());
+        for (int i = 0; i < versions.size(); i++) {
+            assertEquals(first + i, (long) versions.get(i));
+        }
+    }
+}
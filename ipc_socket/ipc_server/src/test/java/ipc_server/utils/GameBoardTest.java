@@ -0,0 +1,363 @@
+package ipc_server.utils;
+
+import ipc_server.interfaces.Board;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GameBoardTest {
+    /**
+     * Checksum of the default board built from seed 42.
+     */
+    private static final long SEED_42_CHECKSUM = 4764452040032635724L;
+
+    @Test
+    public void snapshotsFollowMovesAndCaptures() {
+        checkSnapshots(new GameBoard(GameBoard.DEFAULT_WIDTH, GameBoard.DEFAULT_HEIGHT, 1));
+    }
+
+    @Test
+    public void atomicSnapshotsFollowMovesAndCaptures() {
+        checkSnapshots(new AtomicGameBoard(new GameBoard(GameBoard.DEFAULT_WIDTH, GameBoard.DEFAULT_HEIGHT, 1)));
+    }
+
+    @Test
+    public void layoutCountsEveryCopyOfAPokemon() {
+        GameBoard board = new GameBoard(GameBoard.DEFAULT_WIDTH, GameBoard.DEFAULT_HEIGHT, 1);
+        int pokemons = PokemonCatalog.getInstance().size();
+        int placed = 0;
+        Set<Integer> distinct = new HashSet<>();
+        for (int y = 1; y <= GameBoard.DEFAULT_HEIGHT; y++) {
+            for (int x = 1; x <= GameBoard.DEFAULT_WIDTH; x++) {
+                int pokemon = board.getPokemon(new Position(x, y));
+                if (pokemon != PokemonCatalog.NO_POKEMON) {
+                    placed++;
+                    distinct.add(pokemon);
+                }
+            }
+        }
+
+        // Weighted draws repeat common pokemons, each copy is on the board
+        assertEquals(pokemons, placed);
+        assertEquals(pokemons, board.getDetails().getPokemonCount());
+        assertTrue(distinct.size() < placed);
+    }
+
+    @Test
+    public void capturingCopiesOfOnePokemonWins() {
+        checkCopiesWin(new GameBoard(200, 200, 1));
+    }
+
+    @Test
+    public void atomicCapturingCopiesOfOnePokemonWins() {
+        checkCopiesWin(new AtomicGameBoard(new GameBoard(200, 200, 1)));
+    }
+
+    @Test
+    public void sameSeedBuildsSameBoard() {
+        GameBoard board = new GameBoard(GameBoard.DEFAULT_WIDTH, GameBoard.DEFAULT_HEIGHT, 42);
+        GameBoard again = new GameBoard(GameBoard.DEFAULT_WIDTH, GameBoard.DEFAULT_HEIGHT, 42);
+        GameBoard other = new GameBoard(GameBoard.DEFAULT_WIDTH, GameBoard.DEFAULT_HEIGHT, 43);
+        assertEquals(checksum(board), checksum(again));
+        assertNotEquals(checksum(board), checksum(other));
+        for (int id = 1; id <= 100; id++) {
+            assertEquals(board.getSpawnPosition(id).toString(), again.getSpawnPosition(id).toString());
+        }
+    }
+
+    @Test
+    public void seedLayoutMatchesRMIServer() {
+        // The RMI server tests pin the same value for its copy of the board
+        assertEquals(SEED_42_CHECKSUM, checksum(new GameBoard(GameBoard.DEFAULT_WIDTH, GameBoard.DEFAULT_HEIGHT, 42)));
+    }
+
+    @Test
+    public void playersNeverShareACell() {
+        checkOccupancy(new GameBoard(GameBoard.DEFAULT_WIDTH, GameBoard.DEFAULT_HEIGHT, 1));
+    }
+
+    @Test
+    public void atomicPlayersNeverShareACell() {
+        checkOccupancy(new AtomicGameBoard(new GameBoard(GameBoard.DEFAULT_WIDTH, GameBoard.DEFAULT_HEIGHT, 1)));
+    }
+
+    @Test
+    public void pokemonsAreKeptPerCell() {
+        checkCells(new GameBoard(200, 100, 1));
+    }
+
+    @Test
+    public void atomicPokemonsAreKeptPerCell() {
+        checkCells(new AtomicGameBoard(new GameBoard(200, 100, 1)));
+    }
+
+    @Test(timeout = 60000)
+    public void racingMovesAcrossRegionsKeepCellsConsistent() throws InterruptedException {
+        checkRacingMoves(new GameBoard(GameBoard.DEFAULT_WIDTH, GameBoard.DEFAULT_HEIGHT, 1));
+    }
+
+    @Test(timeout = 60000)
+    public void atomicRacingMovesAcrossRegionsKeepCellsConsistent() throws InterruptedException {
+        checkRacingMoves(new AtomicGameBoard(new GameBoard(GameBoard.DEFAULT_WIDTH, GameBoard.DEFAULT_HEIGHT, 1)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsBoardWithoutCells() {
+        new GameBoard(0, 30, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsBoardTooSmallForPokemons() {
+        new GameBoard(10, 10, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsBoardTooLarge() {
+        new GameBoard(GameBoard.MAX_SIZE, GameBoard.MAX_SIZE, 1);
+    }
+
+    /**
+     * Moves players at random from several threads, each thread owning a
+     * few of them, then checks no two players ended up on one cell and no
+     * cell stayed claimed once every player left.
+     *
+     * @param board - Board of the default size to play on
+     * @throws InterruptedException - If interrupted while waiting
+     */
+    private static void checkRacingMoves(final Board board) throws InterruptedException {
+        final String[] directions = { "left", "right", "up", "down" };
+        for (int id = 1; id <= 64; id++) {
+            board.addPlayer(id);
+        }
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            final int first = t * 8 + 1;
+            final SplittableRandom random = new SplittableRandom(t);
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 200000; i++) {
+                    board.move(first + random.nextInt(8), directions[random.nextInt(4)], 1);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Set<String> cells = new HashSet<>();
+        for (int id = 1; id <= 64; id++) {
+            Position playerPos = board.getPlayerPos(id);
+            PlayerSnapshot snapshot = board.getPlayerSnapshot(id);
+            assertEquals(playerPos.getX(), snapshot.getX());
+            assertEquals(playerPos.getY(), snapshot.getY());
+            assertTrue(playerPos.toString(), cells.add(playerPos.toString()));
+            if (id > 1) {
+                board.removePlayer(id);
+            }
+        }
+
+        // The last player left walks every cell
+        walkTo(board, 1, 0, 0);
+        for (int y = 0; y <= GameBoard.DEFAULT_HEIGHT; y++) {
+            for (int x = 0; x < GameBoard.DEFAULT_WIDTH; x++) {
+                assertEquals(0, board.move(1, y % 2 == 0 ? "right" : "left", 1));
+            }
+            if (y < GameBoard.DEFAULT_HEIGHT) {
+                assertEquals(0, board.move(1, "up", 1));
+            }
+        }
+    }
+
+    /**
+     * Spawns a different pokemon on the cells at either end of the first
+     * row and column of a 200x100 board, where the initial layout never
+     * puts any, checking each cell keeps its own.
+     *
+     * @param board - Board of 200x100 cells
+     */
+    private static void checkCells(Board board) {
+        int[][] cells = { {0, 0}, {1, 0}, {200, 0}, {0, 1}, {0, 100} };
+        for (int i = 0; i < cells.length; i++) {
+            assertEquals(PokemonCatalog.NO_POKEMON, board.getPokemon(new Position(cells[i][0], cells[i][1])));
+            assertTrue(board.spawnPokemon(cells[i][0], cells[i][1], (short) (i + 1)));
+        }
+        for (int i = 0; i < cells.length; i++) {
+            assertEquals(i + 1, board.getPokemon(new Position(cells[i][0], cells[i][1])));
+        }
+
+        // Beyond the board there is nothing to find or spawn on
+        assertEquals(PokemonCatalog.NO_POKEMON, board.getPokemon(new Position(201, 0)));
+        assertEquals(PokemonCatalog.NO_POKEMON, board.getPokemon(new Position(0, 101)));
+        assertEquals(PokemonCatalog.NO_POKEMON, board.getPokemon(new Position(-1, 0)));
+        assertFalse(board.spawnPokemon(0, 101, (short) 1));
+    }
+
+    /**
+     * Moves players into each other, checking a cell holds one player at
+     * most and is freed once its player moves away or leaves.
+     *
+     * @param board - Board to play on
+     */
+    private static void checkOccupancy(Board board) {
+        board.addPlayer(1);
+        board.addPlayer(2);
+        walkTo(board, 1, 3, 3);
+        walkTo(board, 2, 4, 3);
+        assertEquals(3, board.move(1, "right", 1));
+        assertEquals(3, board.move(2, "left", 1));
+
+        // Moving away frees the cell for the other player
+        assertEquals(0, board.move(1, "up", 1));
+        assertEquals(0, board.move(2, "left", 1));
+        assertEquals(3, board.move(1, "down", 1));
+
+        // Leaving frees it as well
+        board.removePlayer(2);
+        assertEquals(0, board.move(1, "down", 1));
+        assertEquals(3, board.getPlayerPos(1).getX());
+        assertEquals(3, board.getPlayerPos(1).getY());
+
+        // Cells run from 0 to width and height inclusive
+        walkTo(board, 1, 0, 0);
+        assertEquals(2, board.move(1, "left", 1));
+        assertEquals(2, board.move(1, "down", 1));
+        walkTo(board, 1, GameBoard.DEFAULT_WIDTH, GameBoard.DEFAULT_HEIGHT);
+        assertEquals(2, board.move(1, "right", 1));
+        assertEquals(2, board.move(1, "up", 1));
+    }
+
+    /**
+     * Moves a player to a position, along the row first.
+     *
+     * @param board - Board to play on
+     * @param id - Player ID
+     * @param x - x coordinate value
+     * @param y - y coordinate value
+     */
+    private static void walkTo(Board board, int id, int x, int y) {
+        int dx = x - board.getPlayerPos(id).getX();
+        int dy = y - board.getPlayerPos(id).getY();
+        if (dx != 0) {
+            assertEquals(0, board.move(id, dx > 0 ? "right" : "left", Math.abs(dx)));
+        }
+        if (dy != 0) {
+            assertEquals(0, board.move(id, dy > 0 ? "up" : "down", Math.abs(dy)));
+        }
+    }
+
+    /**
+     * Captures WINNER_POKEMONS copies of the same pokemon, spawned on two
+     * empty cells the player steps between, checking only the last one
+     * wins.
+     *
+     * @param board - Board of at least a few pokemon free pairs of cells
+     */
+    private static void checkCopiesWin(Board board) {
+        board.addPlayer(1);
+        int y = board.getPlayerPos(1).getY();
+        String ahead = "right";
+        String behind = "left";
+        int dx = 1;
+        if (board.getPlayerPos(1).getX() > board.getDetails().getWidth() / 2) {
+            ahead = "left";
+            behind = "right";
+            dx = -1;
+        }
+
+        // Walk on until the cell stood on and the next one are both empty
+        while (board.getPokemon(board.getPlayerPos(1)) != PokemonCatalog.NO_POKEMON ||
+               board.getPokemon(new Position(board.getPlayerPos(1).getX() + dx, y)) != PokemonCatalog.NO_POKEMON) {
+            assertEquals(0, board.move(1, ahead, 1));
+        }
+
+        for (int i = 1; i <= GameBoard.WINNER_POKEMONS; i++) {
+            assertFalse(board.isWinnerFound());
+            int step = i % 2 == 1 ? dx : -dx;
+            assertTrue(board.spawnPokemon(board.getPlayerPos(1).getX() + step, y, (short) 1));
+            assertEquals(0, board.move(1, i % 2 == 1 ? ahead : behind, 1));
+            assertEquals(0, board.capturePokemon(1));
+        }
+        assertTrue(board.isWinnerFound());
+        assertArrayEquals(new int[] {1, 1, 1, 1, 1}, board.getPlayerSnapshot(1).getPokemonIDs());
+    }
+
+    /**
+     * Moves a player onto a pokemon and captures it, checking every
+     * change swaps in a new snapshot and leaves earlier ones as they were.
+     *
+     * @param board - Board to play on
+     */
+    private static void checkSnapshots(Board board) {
+        assertNull(board.getPlayerSnapshot(1));
+        board.addPlayer(1);
+        PlayerSnapshot joined = board.getPlayerSnapshot(1);
+        int spawnX = board.getPlayerPos(1).getX();
+        int spawnY = board.getPlayerPos(1).getY();
+        assertEquals(spawnX, joined.getX());
+        assertEquals(spawnY, joined.getY());
+        assertEquals(0, joined.getPokemonIDs().length);
+        assertEquals(1, joined.getVersion());
+
+        // Make sure the cell moved to holds a pokemon
+        int dx = spawnX > 0 ? -1 : 1;
+        Position target = new Position(spawnX + dx, spawnY);
+        board.spawnPokemon(target.getX(), target.getY(), (short) 1);
+        int pokemon = board.getPokemon(target);
+
+        assertEquals(0, board.move(1, dx < 0 ? "left" : "right", 1));
+        PlayerSnapshot moved = board.getPlayerSnapshot(1);
+        assertEquals(target.getX(), moved.getX());
+        assertEquals(target.getY(), moved.getY());
+        assertEquals(2, moved.getVersion());
+        assertEquals(2, board.getPlayerVersion(1));
+
+        assertEquals(0, board.capturePokemon(1));
+        PlayerSnapshot captured = board.getPlayerSnapshot(1);
+        assertArrayEquals(new int[] {pokemon}, captured.getPokemonIDs());
+        assertEquals(3, captured.getVersion());
+
+        // Earlier snapshots are never changed
+        assertEquals(spawnX, joined.getX());
+        assertEquals(1, joined.getVersion());
+        assertEquals(0, moved.getPokemonIDs().length);
+
+        board.removePlayer(1);
+        assertNull(board.getPlayerSnapshot(1));
+        assertEquals(0, board.getPlayerVersion(1));
+    }
+
+    /**
+     * Returns a checksum of the pokemon on every cell of a board and the
+     * spawn positions of its first players.
+     *
+     * @param board - Board, as laid out by its seed
+     * @return long
+     */
+    private static long checksum(GameBoard board) {
+        long ret = 0;
+        for (int y = 0; y <= board.getDetails().getHeight(); y++) {
+            for (int x = 0; x <= board.getDetails().getWidth(); x++) {
+                ret = ret * 31 + board.getPokemon(x, y);
+            }
+        }
+        for (int id = 1; id <= 10; id++) {
+            Position spawn = board.getSpawnPosition(id);
+            ret = ret * 31 + spawn.getX();
+            ret = ret * 31 + spawn.getY();
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,83 @@
+package ipc_server.utils;
+
+import ipc_server.interfaces.PlayerConnection;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class InterestGridTest {
+    /**
+     * Connection counting the messages pushed to it.
+     */
+    private static class CountingConnection implements PlayerConnection {
+        final AtomicInteger messages = new AtomicInteger();
+
+        @Override
+        public void sendMsg(String msg) {
+            messages.incrementAndGet();
+        }
+
+        @Override
+        public void sendDelta(BoardDelta delta) {
+        }
+    }
+
+    @Test
+    public void publishesWithinReachOnly() {
+        InterestGrid grid = new InterestGrid(GameBoard.DEFAULT_WIDTH, GameBoard.DEFAULT_HEIGHT, 1);
+        CountingConnection near = new CountingConnection();
+        CountingConnection far = new CountingConnection();
+        CountingConnection self = new CountingConnection();
+        grid.add(1, 0, 0, near);
+        grid.add(2, 3 * InterestGrid.BLOCK_SIZE, 0, far);
+        grid.add(3, InterestGrid.BLOCK_SIZE, 0, self);
+
+        grid.publish(3, InterestGrid.BLOCK_SIZE, 0, "event");
+        assertEquals(1, near.messages.get());
+        assertEquals(0, far.messages.get());
+        assertEquals(0, self.messages.get());
+
+        // Moving within reach of the event
+        grid.move(2, 3 * InterestGrid.BLOCK_SIZE, 0, 2 * InterestGrid.BLOCK_SIZE, 0);
+        grid.publish(3, InterestGrid.BLOCK_SIZE, 0, "event");
+        assertEquals(1, far.messages.get());
+
+        grid.remove(1, 0, 0);
+        grid.publish(3, InterestGrid.BLOCK_SIZE, 0, "event");
+        assertEquals(2, near.messages.get());
+        assertEquals(2, far.messages.get());
+    }
+
+    @Test
+    public void playerMovingBetweenBlocksHearsEveryEvent() throws InterruptedException {
+        final InterestGrid grid = new InterestGrid(GameBoard.DEFAULT_WIDTH, GameBoard.DEFAULT_HEIGHT, 0);
+        final int left = InterestGrid.BLOCK_SIZE - 1;
+        final int right = InterestGrid.BLOCK_SIZE;
+        CountingConnection mover = new CountingConnection();
+        grid.add(1, left, 0, mover);
+
+        final int moves = 200000;
+        Thread thread = new Thread(() -> {
+            for (int i = 0; i < moves; i++) {
+                if ((i & 1) == 0) {
+                    grid.move(1, left, 0, right, 0);
+                }
+                else {
+                    grid.move(1, right, 0, left, 0);
+                }
+            }
+        });
+        thread.start();
+
+        // Events at both ends of the move reach the player wherever it is
+        int events = 0;
+        while (thread.isAlive()) {
+            grid.publish(2, left, 0, right, 0, "event");
+            events++;
+        }
+        thread.join();
+        assertEquals(events, mover.messages.get());
+    }
+}
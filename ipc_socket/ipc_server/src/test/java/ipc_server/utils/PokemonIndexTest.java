@@ -0,0 +1,56 @@
+package ipc_server.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class PokemonIndexTest {
+    @Test
+    public void scansOnlyWithinSquare() {
+        PokemonIndex index = new PokemonIndex(30, 30);
+        index.update(0, 0, (short) 1);
+        index.update(5, 5, (short) 2);
+        index.update(9, 9, (short) 3);
+        index.update(30, 30, (short) 4);
+
+        assertEquals("(5, 5) 2,(9, 9) 3", scan(index, 7, 7, 2));
+        assertEquals("(0, 0) 1,(5, 5) 2", scan(index, 0, 0, 5));
+        assertEquals("(0, 0) 1,(30, 30) 4,(5, 5) 2,(9, 9) 3", scan(index, 0, 0, Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void removesAndReplacesPokemons() {
+        PokemonIndex index = new PokemonIndex(30, 30);
+        index.update(1, 1, (short) 1);
+        index.update(2, 1, (short) 2);
+        index.update(3, 1, (short) 3);
+
+        // Removing the first moves the last of its bucket into its slot
+        index.update(1, 1, PokemonCatalog.NO_POKEMON);
+        index.update(2, 1, (short) 5);
+        assertEquals("(2, 1) 5,(3, 1) 3", scan(index, 0, 0, 7));
+
+        index.update(3, 1, PokemonCatalog.NO_POKEMON);
+        index.update(3, 1, PokemonCatalog.NO_POKEMON);
+        assertEquals("(2, 1) 5", scan(index, 0, 0, 7));
+    }
+
+    /**
+     * Scans an index.
+     *
+     * @param index - Index to scan
+     * @param x - x coordinate of center
+     * @param y - y coordinate of center
+     * @param radius - Greatest distance along each axis
+     * @return String - Pokemons found, sorted by position
+     */
+    private static String scan(PokemonIndex index, int x, int y, int radius) {
+        List<String> found = new ArrayList<>();
+        index.scan(x, y, radius, (px, py, pokemon) -> found.add("(" + px + ", " + py + ") " + pokemon));
+        found.sort(null);
+        return String.join(",", found);
+    }
+}
@@ -0,0 +1,77 @@
+package ipc_server.utils;
+
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.assertTrue;
+
+public class SpawnTableTest {
+    /**
+     * Samples drawn by the frequency test.
+     */
+    private static final int SAMPLES = 2_000_000;
+
+    @Test
+    public void samplesFollowBaseExperienceWeights() {
+        PokemonCatalog catalog = PokemonCatalog.getInstance();
+        int count = catalog.size();
+
+        double total = 0;
+        double[] weights = new double[count];
+        for (int i = 0; i < count; i++) {
+            weights[i] = 1.0 / Math.max(catalog.getBaseExperience(i), 1);
+            total += weights[i];
+        }
+
+        long[] drawn = new long[count];
+        SpawnTable spawnTable = catalog.getSpawnTable();
+        SplittableRandom random = new SplittableRandom(1);
+        for (int i = 0; i < SAMPLES; i++) {
+            drawn[spawnTable.sample(random)]++;
+        }
+
+        // Pearson's chi-square against the expected counts, allowing six
+        // standard deviations of the statistic over its mean
+        double chiSquare = 0;
+        for (int i = 0; i < count; i++) {
+            double expected = SAMPLES * weights[i] / total;
+            assertTrue("pokemon " + i + " expected too rarely for the test", expected >= 5);
+            double diff = drawn[i] - expected;
+            chiSquare += diff * diff / expected;
+        }
+        int freedom = count - 1;
+        double limit = freedom + 6 * Math.sqrt(2.0 * freedom);
+        assertTrue("chi-square " + chiSquare + " over " + limit, chiSquare < limit);
+    }
+
+    @Test
+    public void lowerBaseExperienceSpawnsMoreOften() {
+        PokemonCatalog catalog = PokemonCatalog.getInstance();
+        int common = 0;
+        int rare = 0;
+        for (int i = 1; i < catalog.size(); i++) {
+            if (catalog.getBaseExperience(i) < catalog.getBaseExperience(common)) {
+                common = i;
+            }
+            if (catalog.getBaseExperience(i) > catalog.getBaseExperience(rare)) {
+                rare = i;
+            }
+        }
+
+        int commonDrawn = 0;
+        int rareDrawn = 0;
+        SpawnTable spawnTable = catalog.getSpawnTable();
+        SplittableRandom random = new SplittableRandom(1);
+        for (int i = 0; i < SAMPLES; i++) {
+            short pokemon = spawnTable.sample(random);
+            if (pokemon == common) {
+                commonDrawn++;
+            }
+            else if (pokemon == rare) {
+                rareDrawn++;
+            }
+        }
+        assertTrue(commonDrawn + " <= " + rareDrawn, commonDrawn > rareDrawn);
+    }
+}
@@ -0,0 +1,74 @@
+package ipc_server.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class TimerWheelTest {
+    @Test
+    public void timersBeyondOneRevolutionWaitForTheirDeadline() {
+        TimerWheel wheel = new TimerWheel(8);
+        List<Long> ran = new ArrayList<>();
+        long[] tick = new long[1];
+
+        // All three hash to slot 4
+        wheel.schedule(4, () -> ran.add(tick[0]));
+        wheel.schedule(20, () -> ran.add(tick[0]));
+        wheel.schedule(36, () -> ran.add(tick[0]));
+        for (tick[0] = 1; tick[0] <= 40; tick[0]++) {
+            wheel.advance();
+        }
+        assertEquals(Arrays.asList(4L, 20L, 36L), ran);
+    }
+
+    @Test
+    public void tasksMayRescheduleThemselves() {
+        final TimerWheel wheel = new TimerWheel(8);
+        final List<Long> ran = new ArrayList<>();
+        final long[] tick = new long[1];
+
+        // Every other delay is a whole revolution, landing in the slot being run
+        wheel.schedule(3, new Runnable() {
+            @Override
+            public void run() {
+                ran.add(tick[0]);
+                if (ran.size() < 4) {
+                    wheel.schedule(ran.size() % 2 == 1 ? 8 : 3, this);
+                }
+            }
+        });
+        for (tick[0] = 1; tick[0] <= 30; tick[0]++) {
+            wheel.advance();
+        }
+        assertEquals(Arrays.asList(3L, 11L, 14L, 22L), ran);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void sizeCountsPendingTimers() {
+        TimerWheel wheel = new TimerWheel(4);
+        assertEquals(0, wheel.size());
+        wheel.schedule(1, () -> { });
+        wheel.schedule(2, () -> { });
+        wheel.schedule(9, () -> { });
+
+        // Delays below one tick still wait for the next advance
+        wheel.schedule(0, () -> { });
+        assertEquals(4, wheel.size());
+
+        assertEquals(2, wheel.advance());
+        assertEquals(2, wheel.size());
+        assertEquals(1, wheel.advance());
+        assertEquals(1, wheel.size());
+        for (int i = 3; i < 9; i++) {
+            assertEquals(0, wheel.advance());
+        }
+        assertEquals(1, wheel.size());
+        assertEquals(1, wheel.advance());
+        assertEquals(0, wheel.size());
+    }
+}